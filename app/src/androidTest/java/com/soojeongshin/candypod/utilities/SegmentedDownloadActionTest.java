@@ -0,0 +1,327 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.utilities;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.exoplayer2.ext.okhttp.OkHttpDataSourceFactory;
+import com.google.android.exoplayer2.offline.DownloadAction;
+import com.google.android.exoplayer2.offline.DownloadManager;
+import com.google.android.exoplayer2.offline.DownloadManager.TaskState;
+import com.google.android.exoplayer2.offline.DownloaderConstructorHelper;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.soojeongshin.candypod.data.CandyPodDatabase;
+import com.soojeongshin.candypod.data.DownloadEntry;
+import com.soojeongshin.candypod.service.DownloadRecorder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumented tests for the bookkeeping of the downloaded episodes, which run many downloads at
+ * the same time against a local HTTP server and check that every completed download is recorded
+ * with its own episode, also when the downloads are restored from the action file.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SegmentedDownloadActionTest {
+
+    private static final int EPISODE_COUNT = 24;
+    private static final int EPISODE_LENGTH = 64 * 1024;
+    private static final int MAX_SIMULTANEOUS_DOWNLOADS = 4;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private Context mContext;
+    private File mDirectory;
+    private MockWebServer mServer;
+    private SimpleCache mCache;
+    private DataSource.Factory mUpstreamFactory;
+    private CandyPodDatabase mDb;
+    private ExecutorService mDiskIO;
+
+    @Before
+    public void setUp() throws Exception {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mDirectory = new File(mContext.getCacheDir(), "segmented_download_test");
+        deleteRecursively(mDirectory);
+
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new EpisodeDispatcher());
+        mServer.start();
+
+        mCache = new SimpleCache(new File(mDirectory, "cache"), new NoOpCacheEvictor());
+        mUpstreamFactory = new OkHttpDataSourceFactory(new OkHttpClient(), "CandyPodTest");
+        DownloadUtil.setSegmentFetching(mUpstreamFactory, new File(mDirectory, "segments"));
+
+        mDb = Room.inMemoryDatabaseBuilder(mContext, CandyPodDatabase.class).build();
+        mDiskIO = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+        mDiskIO.shutdownNow();
+        mDb.close();
+        mCache.release();
+        deleteRecursively(mDirectory);
+    }
+
+    @Test
+    public void serializedAction_keepsDownloadEntry() throws Exception {
+        DownloadEntry downloadEntry = createDownloadEntry(0);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        DownloadAction.serializeToStream(
+                SegmentedDownloadAction.createDownloadAction(downloadEntry), output);
+
+        DownloadAction action = DownloadAction.deserializeFromStream(
+                new DownloadAction.Deserializer[] {SegmentedDownloadAction.DESERIALIZER},
+                new ByteArrayInputStream(output.toByteArray()));
+
+        DownloadEntry restored = ((SegmentedDownloadAction) action).getDownloadEntry();
+        assertNotNull(restored);
+        assertEquals(downloadEntry.getPodcastId(), restored.getPodcastId());
+        assertEquals(downloadEntry.getTitle(), restored.getTitle());
+        assertEquals(downloadEntry.getItemTitle(), restored.getItemTitle());
+        assertEquals(downloadEntry.getItemDescription(), restored.getItemDescription());
+        assertEquals(downloadEntry.getItemEnclosureUrl(), restored.getItemEnclosureUrl());
+        assertNull(restored.getItemImageUrl());
+        assertEquals(Uri.parse(downloadEntry.getItemEnclosureUrl()), action.uri);
+    }
+
+    @Test
+    public void concurrentDownloads_recordTheirOwnEpisodes() throws Exception {
+        DownloadRecorder recorder = new DownloadRecorder(mDb.podcastDao(), mDiskIO);
+        CountDownLatch completed = new CountDownLatch(EPISODE_COUNT);
+        File actionFile = new File(mDirectory, "actions");
+
+        DownloadManager downloadManager = createDownloadManager(actionFile, recorder, completed);
+        addDownloads(downloadManager);
+
+        assertTrue(completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        releaseDownloadManager(downloadManager);
+        assertDownloadsRecorded();
+    }
+
+    @Test
+    public void restoredDownloads_recordTheirOwnEpisodes() throws Exception {
+        DownloadRecorder recorder = new DownloadRecorder(mDb.podcastDao(), mDiskIO);
+        CountDownLatch completed = new CountDownLatch(EPISODE_COUNT);
+        File actionFile = new File(mDirectory, "actions");
+
+        // The responses are slow, so the downloads are stopped while in progress, like when the
+        // app is killed. The downloads which completed before are recorded by the first manager.
+        mServer.setDispatcher(new EpisodeDispatcher(EPISODE_LENGTH / 8));
+        DownloadManager downloadManager = createDownloadManager(actionFile, recorder, completed);
+        addDownloads(downloadManager);
+        releaseDownloadManager(downloadManager);
+        assertTrue(completed.getCount() > 0);
+
+        // A new manager restores the remaining downloads from the action file
+        mServer.setDispatcher(new EpisodeDispatcher());
+        downloadManager = createDownloadManager(actionFile, recorder, completed);
+
+        assertTrue(completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        releaseDownloadManager(downloadManager);
+        assertDownloadsRecorded();
+    }
+
+    /**
+     * Creates a DownloadManager on the main thread, whose listener records the completed
+     * downloads and counts down the latch, and waits for it to restore the action file.
+     */
+    private DownloadManager createDownloadManager(final File actionFile,
+                                                  final DownloadRecorder recorder,
+                                                  final CountDownLatch completed)
+            throws InterruptedException {
+        final CountDownLatch initialized = new CountDownLatch(1);
+        final DownloadManager[] downloadManager = new DownloadManager[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                downloadManager[0] = new DownloadManager(
+                        new DownloaderConstructorHelper(mCache, mUpstreamFactory),
+                        MAX_SIMULTANEOUS_DOWNLOADS,
+                        1,
+                        actionFile,
+                        SegmentedDownloadAction.DESERIALIZER);
+                downloadManager[0].addListener(new DownloadManager.Listener() {
+                    @Override
+                    public void onInitialized(DownloadManager downloadManager) {
+                        initialized.countDown();
+                    }
+
+                    @Override
+                    public void onTaskStateChanged(DownloadManager downloadManager,
+                                                   TaskState taskState) {
+                        if (recorder.onTaskStateChanged(taskState)) {
+                            completed.countDown();
+                        }
+                    }
+
+                    @Override
+                    public void onIdle(DownloadManager downloadManager) {
+                    }
+                });
+            }
+        });
+        assertTrue(initialized.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        return downloadManager[0];
+    }
+
+    private void addDownloads(final DownloadManager downloadManager) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < EPISODE_COUNT; i++) {
+                    downloadManager.handleAction(
+                            SegmentedDownloadAction.createDownloadAction(createDownloadEntry(i)));
+                }
+            }
+        });
+    }
+
+    /**
+     * Releases the DownloadManager, which stops the running downloads and saves the actions.
+     */
+    private void releaseDownloadManager(final DownloadManager downloadManager) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                downloadManager.release();
+            }
+        });
+    }
+
+    /**
+     * Waits for the pending inserts and checks that every episode is recorded once, with the
+     * metadata of the episode of its enclosure URL.
+     */
+    private void assertDownloadsRecorded() throws InterruptedException {
+        mDiskIO.shutdown();
+        assertTrue(mDiskIO.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals(EPISODE_COUNT, mDb.podcastDao().syncLoadDownloads().size());
+        for (int i = 0; i < EPISODE_COUNT; i++) {
+            DownloadEntry expected = createDownloadEntry(i);
+            DownloadEntry recorded = mDb.podcastDao().syncLoadDownload(
+                    expected.getItemEnclosureUrl());
+            assertNotNull(recorded);
+            assertEquals(expected.getPodcastId(), recorded.getPodcastId());
+            assertEquals(expected.getItemTitle(), recorded.getItemTitle());
+            assertEquals(expected.getItemPubDate(), recorded.getItemPubDate());
+            assertEquals(EPISODE_LENGTH, mCache.getCachedLength(
+                    expected.getItemEnclosureUrl(), 0, EPISODE_LENGTH));
+        }
+    }
+
+    private DownloadEntry createDownloadEntry(int index) {
+        String url = mServer.url("/episode/" + index + ".mp3").toString();
+        return new DownloadEntry("podcast" + (index % 3), "Podcast " + (index % 3), null,
+                "Episode " + index, "Description of episode " + index,
+                "Mon, 0" + (1 + index % 9) + " Jul 2019 10:00:00 GMT", "00:30:00", url,
+                "audio/mpeg", String.valueOf(EPISODE_LENGTH), null);
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Serves an episode body for every path, the bytes of which depend on the path, and supports
+     * the Range requests the segments are fetched with.
+     */
+    private static class EpisodeDispatcher extends Dispatcher {
+
+        /** The bytes sent every 100 ms, or 0 to send the body at once */
+        private final long mBytesPerPeriod;
+
+        EpisodeDispatcher() {
+            this(0);
+        }
+
+        EpisodeDispatcher(long bytesPerPeriod) {
+            mBytesPerPeriod = bytesPerPeriod;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            byte[] body = new byte[EPISODE_LENGTH];
+            int seed = request.getPath().hashCode();
+            for (int i = 0; i < body.length; i++) {
+                body[i] = (byte) (seed + i);
+            }
+
+            MockResponse response = new MockResponse().setHeader("Accept-Ranges", "bytes");
+            String range = request.getHeader("Range");
+            Matcher matcher = range != null ? RANGE_PATTERN.matcher(range) : null;
+            if (matcher != null && matcher.matches()) {
+                int start = Integer.parseInt(matcher.group(1));
+                int end = matcher.group(2).isEmpty()
+                        ? body.length - 1 : Math.min(Integer.parseInt(matcher.group(2)),
+                        body.length - 1);
+                response.setResponseCode(206)
+                        .setHeader("Content-Range",
+                                "bytes " + start + "-" + end + "/" + body.length)
+                        .setBody(new Buffer().write(body, start, end - start + 1));
+            } else {
+                response.setBody(new Buffer().write(body));
+            }
+            if (mBytesPerPeriod > 0) {
+                response.throttleBody(mBytesPerPeriod, 100, TimeUnit.MILLISECONDS);
+            }
+            return response;
+        }
+    }
+}
@@ -29,6 +29,18 @@ public class Analytics {
 
     private static FirebaseAnalytics sFirebaseAnalytics;
 
+    /** Custom event and parameters for the background feed refresh */
+    private static final String EVENT_FEED_REFRESH = "feed_refresh";
+    private static final String PARAM_FEED_COUNT = "feed_count";
+    private static final String PARAM_CHANGED_COUNT = "changed_count";
+    private static final String PARAM_ELAPSED_MILLIS = "elapsed_millis";
+
+    /** Custom event and parameters for the time to the start of playback */
+    private static final String EVENT_PLAYBACK_START = "playback_start";
+    private static final String PARAM_LATENCY_MILLIS = "latency_millis";
+    private static final String PARAM_PLAYER_REUSED = "player_reused";
+    private static final String PARAM_BUFFER_PROFILE = "buffer_profile";
+
     /**
      * Creates analytics instance.
      */
@@ -76,4 +88,37 @@ public class Analytics {
         sFirebaseAnalytics.logEvent(FirebaseAnalytics.Event.SELECT_CONTENT, params);
     }
 
+    /**
+     * This method is triggered when the feeds of the subscribed podcasts were refreshed in
+     * the background.
+     * @param feedCount The number of feeds checked
+     * @param changedCount The number of feeds that had new episodes
+     * @param elapsedMillis The time the refresh took in milliseconds
+     */
+    public static void logEventFeedRefresh(int feedCount, int changedCount, long elapsedMillis) {
+        Bundle params = new Bundle();
+        params.putLong(PARAM_FEED_COUNT, feedCount);
+        params.putLong(PARAM_CHANGED_COUNT, changedCount);
+        params.putLong(PARAM_ELAPSED_MILLIS, elapsedMillis);
+
+        sFirebaseAnalytics.logEvent(EVENT_FEED_REFRESH, params);
+    }
+
+    /**
+     * This method is triggered when the playback of an episode has started.
+     * @param latencyMillis The time from the request of the episode to the start of playback
+     *                      in milliseconds
+     * @param playerReused True if the player of a previous episode was reused
+     * @param bufferProfile The name of the buffer profile of the episode
+     */
+    public static void logEventPlaybackStart(long latencyMillis, boolean playerReused,
+                                             String bufferProfile) {
+        Bundle params = new Bundle();
+        params.putLong(PARAM_LATENCY_MILLIS, latencyMillis);
+        params.putLong(PARAM_PLAYER_REUSED, playerReused ? 1 : 0);
+        params.putString(PARAM_BUFFER_PROFILE, bufferProfile);
+
+        sFirebaseAnalytics.logEvent(EVENT_PLAYBACK_START, params);
+    }
+
 }
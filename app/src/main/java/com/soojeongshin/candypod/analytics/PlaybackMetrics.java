@@ -0,0 +1,211 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.analytics;
+
+import android.text.TextUtils;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.soojeongshin.candypod.utilities.Constants.PLAYBACK_LATENCY_HISTORY_SIZE;
+import static com.soojeongshin.candypod.utilities.Constants.PLAYBACK_TRACE_HISTORY_SIZE;
+
+/**
+ * Keeps the {@link PlaybackTrace} of the current episode, the traces of the latest episodes,
+ * and a rolling histogram of the playback start latencies. The current trace is shown in the
+ * debug overlay of the NowPlayingActivity, and the report can be exported from there.
+ */
+public class PlaybackMetrics {
+
+    /** The upper bounds of the buckets of the start latency histogram in milliseconds */
+    private static final long[] LATENCY_BUCKETS_MILLIS = {250, 500, 1000, 2000, 5000, 10000};
+
+    private static PlaybackMetrics sInstance;
+
+    private final MutableLiveData<PlaybackTrace> mCurrentTrace = new MutableLiveData<>();
+    /** The trace of the current episode, also read on the loader thread of the player */
+    private volatile PlaybackTrace mTrace;
+    /** The traces of the latest episodes, including the current one */
+    private final ArrayDeque<PlaybackTrace> mRecentTraces = new ArrayDeque<>();
+    /** The start latencies of the latest episodes, used as a ring buffer */
+    private final long[] mLatencies = new long[PLAYBACK_LATENCY_HISTORY_SIZE];
+    /** The number of latencies recorded since the app started */
+    private int mLatencyCount;
+
+    public static synchronized PlaybackMetrics getInstance() {
+        if (sInstance == null) {
+            sInstance = new PlaybackMetrics();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the trace of the current episode, which is updated when a phase is reached.
+     */
+    public LiveData<PlaybackTrace> getCurrentTrace() {
+        return mCurrentTrace;
+    }
+
+    /**
+     * Starts the trace of a new current episode.
+     * @param episodeUrl The enclosure URL of the episode
+     * @param episodeTitle The episode title
+     */
+    public synchronized PlaybackTrace startTrace(String episodeUrl, String episodeTitle) {
+        if (mTrace != null) {
+            mTrace.endRebuffer();
+        }
+        mTrace = new PlaybackTrace(episodeUrl, episodeTitle);
+        mRecentTraces.addFirst(mTrace);
+        if (mRecentTraces.size() > PLAYBACK_TRACE_HISTORY_SIZE) {
+            mRecentTraces.removeLast();
+        }
+        notifyTraceChanged();
+        return mTrace;
+    }
+
+    /**
+     * Adds the bytes read by the player to the trace of the current episode. Bytes of other
+     * episodes, such as the next episode in the queue, are ignored. Called on the loader thread.
+     * @param episodeUrl The enclosure URL of the episode the bytes belong to
+     * @param isNetwork True if the bytes came from the network, false if from the cache
+     * @param bytes The number of bytes read
+     */
+    public void addBytes(String episodeUrl, boolean isNetwork, int bytes) {
+        PlaybackTrace trace = mTrace;
+        if (trace != null && TextUtils.equals(episodeUrl, trace.getEpisodeUrl())
+                && trace.addBytes(isNetwork, bytes)) {
+            notifyTraceChanged();
+        }
+    }
+
+    /**
+     * Notifies the observers that the current trace has changed. Can be called on any thread.
+     */
+    public void notifyTraceChanged() {
+        mCurrentTrace.postValue(mTrace);
+    }
+
+    /**
+     * Adds the start latency of an episode to the histogram.
+     */
+    public synchronized void addStartLatency(long latencyMillis) {
+        mLatencies[mLatencyCount % mLatencies.length] = latencyMillis;
+        mLatencyCount++;
+    }
+
+    /**
+     * Returns a plain text report with the start latency histogram of the latest episodes and
+     * the traces of the latest episodes, which can be shared from a debug build.
+     */
+    public synchronized String formatReport() {
+        StringBuilder builder = new StringBuilder();
+        int count = Math.min(mLatencyCount, mLatencies.length);
+        long[] latencies = Arrays.copyOf(mLatencies, count);
+        Arrays.sort(latencies);
+
+        builder.append(String.format(Locale.US,
+                "Playback start latency, last %d episodes", count));
+        if (count > 0) {
+            builder.append(String.format(Locale.US, "\np50 %d ms, p90 %d ms, max %d ms",
+                    percentile(latencies, 50), percentile(latencies, 90),
+                    latencies[count - 1]));
+        }
+        int index = 0;
+        for (int bucket = 0; bucket <= LATENCY_BUCKETS_MILLIS.length; bucket++) {
+            int bucketCount = 0;
+            while (index < count && (bucket == LATENCY_BUCKETS_MILLIS.length
+                    || latencies[index] <= LATENCY_BUCKETS_MILLIS[bucket])) {
+                bucketCount++;
+                index++;
+            }
+            String label = bucket < LATENCY_BUCKETS_MILLIS.length
+                    ? "<= " + LATENCY_BUCKETS_MILLIS[bucket] + " ms"
+                    : "> " + LATENCY_BUCKETS_MILLIS[bucket - 1] + " ms";
+            builder.append(String.format(Locale.US, "\n%-11s %3d ", label, bucketCount));
+            for (int i = 0; i < bucketCount; i++) {
+                builder.append('#');
+            }
+        }
+
+        builder.append("\n\nBuffer profiles, latest episodes");
+        formatProfiles(builder);
+
+        builder.append("\n\nLatest episodes");
+        for (PlaybackTrace trace : mRecentTraces) {
+            builder.append("\n\n").append(trace.format());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Appends the number of episodes, the median start latency and the rebuffers of each buffer
+     * profile, so that the profiles can be compared.
+     */
+    private void formatProfiles(StringBuilder builder) {
+        Map<String, List<PlaybackTrace>> tracesByProfile = new LinkedHashMap<>();
+        for (PlaybackTrace trace : mRecentTraces) {
+            List<PlaybackTrace> traces = tracesByProfile.get(trace.getBufferProfile());
+            if (traces == null) {
+                traces = new ArrayList<>();
+                tracesByProfile.put(trace.getBufferProfile(), traces);
+            }
+            traces.add(trace);
+        }
+        for (Map.Entry<String, List<PlaybackTrace>> entry : tracesByProfile.entrySet()) {
+            List<PlaybackTrace> traces = entry.getValue();
+            long[] latencies = new long[traces.size()];
+            int latencyCount = 0;
+            int rebufferCount = 0;
+            long rebufferMillis = 0;
+            for (PlaybackTrace trace : traces) {
+                long latency = trace.getStartLatencyMillis();
+                if (latency >= 0) {
+                    latencies[latencyCount++] = latency;
+                }
+                rebufferCount += trace.getRebufferCount();
+                rebufferMillis += trace.getRebufferMillis();
+            }
+            builder.append(String.format(Locale.US, "\n%-14s %2d episodes", entry.getKey(),
+                    traces.size()));
+            if (latencyCount > 0) {
+                latencies = Arrays.copyOf(latencies, latencyCount);
+                Arrays.sort(latencies);
+                builder.append(String.format(Locale.US, ", p50 start %d ms",
+                        percentile(latencies, 50)));
+            }
+            builder.append(String.format(Locale.US, ", %d rebuffers, %d ms",
+                    rebufferCount, rebufferMillis));
+        }
+    }
+
+    /**
+     * Returns the given percentile of the sorted latencies, using the nearest rank.
+     */
+    private static long percentile(long[] sortedLatencies, int percent) {
+        int rank = (percent * sortedLatencies.length + 99) / 100;
+        return sortedLatencies[Math.max(rank, 1) - 1];
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.analytics;
+
+import android.os.SystemClock;
+
+import java.util.Locale;
+
+/**
+ * Records the phases of the start of playback of one episode, where its bytes came from, and
+ * how often and how long playback stalled to rebuffer afterwards.
+ * <p>
+ * Times are taken from {@link SystemClock#elapsedRealtime()}. The bytes are reported on the
+ * loader thread of the player, the other events on the main thread, so all methods are
+ * synchronized.
+ */
+public class PlaybackTrace {
+
+    /** The service received the intent to play the episode */
+    public static final int PHASE_INTENT_RECEIVED = 0;
+    /** The player was created, or the player of a previous episode was reused */
+    public static final int PHASE_PLAYER_CREATED = 1;
+    /** The player was prepared with the media source of the episode */
+    public static final int PHASE_SOURCE_PREPARED = 2;
+    /** The first bytes of the episode were read from the cache or the network */
+    public static final int PHASE_FIRST_BYTES = 3;
+    /** The player reached STATE_READY */
+    public static final int PHASE_READY = 4;
+    /** The playback position started to advance, i.e. the first audio was rendered */
+    public static final int PHASE_FIRST_AUDIO = 5;
+    private static final int PHASE_COUNT = 6;
+
+    private static final String[] PHASE_NAMES =
+            {"intent", "player", "prepared", "first bytes", "ready", "first audio"};
+
+    /** Marks a phase which was not reached */
+    private static final long NOT_REACHED = 0;
+
+    private final String mEpisodeUrl;
+    private final String mEpisodeTitle;
+    private final long[] mPhaseTimes = new long[PHASE_COUNT];
+
+    private boolean mPlayerReused;
+    private String mBufferProfile;
+    private boolean mFirstBytesFromCache;
+    private long mCacheBytes;
+    private long mNetworkBytes;
+
+    private int mRebufferCount;
+    private long mRebufferMillis;
+    /** The time the current rebuffer started, or NOT_REACHED if the player is not rebuffering */
+    private long mRebufferStartedAt = NOT_REACHED;
+
+    /**
+     * Creates a PlaybackTrace.
+     * @param episodeUrl The enclosure URL of the episode
+     * @param episodeTitle The episode title
+     */
+    PlaybackTrace(String episodeUrl, String episodeTitle) {
+        mEpisodeUrl = episodeUrl;
+        mEpisodeTitle = episodeTitle;
+    }
+
+    public String getEpisodeUrl() {
+        return mEpisodeUrl;
+    }
+
+    /**
+     * Records the time of the given phase. Only the first time a phase is reached is kept.
+     * @return True if the phase was reached for the first time
+     */
+    public synchronized boolean markPhase(int phase) {
+        if (mPhaseTimes[phase] != NOT_REACHED) {
+            return false;
+        }
+        mPhaseTimes[phase] = SystemClock.elapsedRealtime();
+        return true;
+    }
+
+    public synchronized boolean hasReachedPhase(int phase) {
+        return mPhaseTimes[phase] != NOT_REACHED;
+    }
+
+    public synchronized void setPlayerReused(boolean playerReused) {
+        mPlayerReused = playerReused;
+    }
+
+    public synchronized boolean isPlayerReused() {
+        return mPlayerReused;
+    }
+
+    public synchronized void setBufferProfile(String bufferProfile) {
+        mBufferProfile = bufferProfile;
+    }
+
+    public synchronized String getBufferProfile() {
+        return mBufferProfile;
+    }
+
+    public synchronized int getRebufferCount() {
+        return mRebufferCount;
+    }
+
+    public synchronized long getRebufferMillis() {
+        return mRebufferMillis;
+    }
+
+    /**
+     * Adds the bytes read for the episode.
+     * @param isNetwork True if the bytes came from the network, false if from the cache
+     * @return True if these were the first bytes of the episode
+     */
+    synchronized boolean addBytes(boolean isNetwork, int bytes) {
+        if (isNetwork) {
+            mNetworkBytes += bytes;
+        } else {
+            mCacheBytes += bytes;
+        }
+        if (markPhase(PHASE_FIRST_BYTES)) {
+            mFirstBytesFromCache = !isNetwork;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records that the playback stalled because the buffer ran empty.
+     */
+    public synchronized void startRebuffer() {
+        if (mRebufferStartedAt == NOT_REACHED) {
+            mRebufferStartedAt = SystemClock.elapsedRealtime();
+            mRebufferCount++;
+        }
+    }
+
+    /**
+     * Records that the playback continued, or stopped, after a rebuffer.
+     */
+    public synchronized void endRebuffer() {
+        if (mRebufferStartedAt != NOT_REACHED) {
+            mRebufferMillis += SystemClock.elapsedRealtime() - mRebufferStartedAt;
+            mRebufferStartedAt = NOT_REACHED;
+        }
+    }
+
+    /**
+     * Returns the time from the intent to the first audio in milliseconds, or -1 if the episode
+     * was not started by an intent, e.g. when the queue moved on to it, or has not started yet.
+     */
+    public synchronized long getStartLatencyMillis() {
+        if (mPhaseTimes[PHASE_INTENT_RECEIVED] == NOT_REACHED
+                || mPhaseTimes[PHASE_FIRST_AUDIO] == NOT_REACHED) {
+            return -1;
+        }
+        return mPhaseTimes[PHASE_FIRST_AUDIO] - mPhaseTimes[PHASE_INTENT_RECEIVED];
+    }
+
+    /**
+     * Returns a multi-line summary with the time of each phase relative to the first phase
+     * that was reached.
+     */
+    public synchronized String format() {
+        StringBuilder builder = new StringBuilder(mEpisodeTitle == null ? "" : mEpisodeTitle);
+        long origin = NOT_REACHED;
+        for (long time : mPhaseTimes) {
+            if (time != NOT_REACHED) {
+                origin = time;
+                break;
+            }
+        }
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            builder.append('\n').append(String.format(Locale.US, "%-12s", PHASE_NAMES[phase]));
+            if (mPhaseTimes[phase] == NOT_REACHED) {
+                builder.append("-");
+            } else {
+                builder.append('+').append(mPhaseTimes[phase] - origin).append(" ms");
+            }
+            if (phase == PHASE_PLAYER_CREATED && mPlayerReused) {
+                builder.append(" (reused)");
+            } else if (phase == PHASE_FIRST_BYTES && mPhaseTimes[phase] != NOT_REACHED) {
+                builder.append(mFirstBytesFromCache ? " (cache)" : " (network)");
+            }
+        }
+        builder.append(String.format(Locale.US, "\nprofile     %s", mBufferProfile));
+        builder.append(String.format(Locale.US, "\nbytes       cache %d KB, network %d KB",
+                mCacheBytes / 1024, mNetworkBytes / 1024));
+        long rebufferMillis = mRebufferMillis;
+        if (mRebufferStartedAt != NOT_REACHED) {
+            rebufferMillis += SystemClock.elapsedRealtime() - mRebufferStartedAt;
+        }
+        builder.append(String.format(Locale.US, "\nrebuffers   %d, %d ms",
+                mRebufferCount, rebufferMillis));
+        return builder.toString();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.data;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Defines the schema of a table in room for the auto-download rule of a subscribed podcast.
+ * After the feeds are refreshed, the latest episodes of the podcast which are not downloaded
+ * yet are downloaded, as long as the device meets the conditions of the rule. Each episode is
+ * only downloaded once by the rule, so an episode which the user deleted is not downloaded
+ * again. The rule is deleted together with the podcast.
+ */
+@Entity(tableName = "auto_download_rules",
+        foreignKeys = @ForeignKey(entity = PodcastEntry.class,
+                parentColumns = "podcast_id",
+                childColumns = "podcast_id",
+                onDelete = ForeignKey.CASCADE),
+        indices = @Index(value = "podcast_id", unique = true))
+public class AutoDownloadEntry {
+
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+
+    @ColumnInfo(name = "podcast_id")
+    private String podcastId;
+
+    /** The number of the latest episodes which are kept downloaded */
+    @ColumnInfo(name = "episode_count")
+    private int episodeCount;
+
+    /** True if the episodes are only downloaded on an unmetered network */
+    @ColumnInfo(name = "unmetered_only")
+    private boolean unmeteredOnly;
+
+    /** True if the episodes are only downloaded while the device is charging */
+    @ColumnInfo(name = "charging_only")
+    private boolean chargingOnly;
+
+    /** The ID of the newest episode which the rule has considered, only newer ones are next */
+    @ColumnInfo(name = "last_episode_id", defaultValue = "0")
+    private int lastEpisodeId;
+
+    /**
+     * Constructor to create AutoDownloadEntry. Uses ignore annotation to guide Room to use the
+     * right constructor.
+     * @param podcastId The podcast ID
+     * @param episodeCount The number of the latest episodes to download
+     * @param unmeteredOnly True to only download on an unmetered network
+     * @param chargingOnly True to only download while charging
+     * @param lastEpisodeId The ID of the newest episode which the rule has considered
+     */
+    @Ignore
+    public AutoDownloadEntry(String podcastId, int episodeCount, boolean unmeteredOnly,
+                             boolean chargingOnly, int lastEpisodeId) {
+        this.podcastId = podcastId;
+        this.episodeCount = episodeCount;
+        this.unmeteredOnly = unmeteredOnly;
+        this.chargingOnly = chargingOnly;
+        this.lastEpisodeId = lastEpisodeId;
+    }
+
+    /**
+     * Constructor used by Room to create AutoDownloadEntries.
+     */
+    public AutoDownloadEntry(int id, String podcastId, int episodeCount, boolean unmeteredOnly,
+                             boolean chargingOnly, int lastEpisodeId) {
+        this.id = id;
+        this.podcastId = podcastId;
+        this.episodeCount = episodeCount;
+        this.unmeteredOnly = unmeteredOnly;
+        this.chargingOnly = chargingOnly;
+        this.lastEpisodeId = lastEpisodeId;
+    }
+
+    /**
+     * Returns true if the episodes may be downloaded in the current state of the device.
+     * @param isOnUnmeteredNetwork True if the device is on an unmetered network
+     * @param isCharging True if the device is charging
+     */
+    public boolean isSatisfied(boolean isOnUnmeteredNetwork, boolean isCharging) {
+        return (!unmeteredOnly || isOnUnmeteredNetwork) && (!chargingOnly || isCharging);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getPodcastId() {
+        return podcastId;
+    }
+
+    public int getEpisodeCount() {
+        return episodeCount;
+    }
+
+    public boolean isUnmeteredOnly() {
+        return unmeteredOnly;
+    }
+
+    public boolean isChargingOnly() {
+        return chargingOnly;
+    }
+
+    public int getLastEpisodeId() {
+        return lastEpisodeId;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.data;
+
+/**
+ * The counters of a response cache in the {@link CandyPodRepository}.
+ */
+public class CacheStats {
+
+    /** The number of requests served from memory */
+    private final int mHitCount;
+    /** The number of requests which made a network call */
+    private final int mMissCount;
+    /** The number of requests which joined a call already in flight */
+    private final int mCoalescedCount;
+
+    public CacheStats(int hitCount, int missCount, int coalescedCount) {
+        mHitCount = hitCount;
+        mMissCount = missCount;
+        mCoalescedCount = coalescedCount;
+    }
+
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    public int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + mHitCount + ", misses=" + mMissCount + ", coalesced=" + mCoalescedCount;
+    }
+}
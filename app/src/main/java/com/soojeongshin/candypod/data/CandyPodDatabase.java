@@ -16,18 +16,31 @@
 
 package com.soojeongshin.candypod.data;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
 import android.content.Context;
+import android.database.Cursor;
+
+import com.soojeongshin.candypod.model.rss.EpisodeDisplay;
+import com.soojeongshin.candypod.model.rss.Item;
+
+import java.util.List;
 
 import timber.log.Timber;
 
 import static com.soojeongshin.candypod.utilities.Constants.DATABASE_NAME;
 
-@Database(entities = {PodcastEntry.class, FavoriteEntry.class, DownloadEntry.class}, version = 1, exportSchema = false)
-@TypeConverters({ItemsConverter.class, DateConverter.class})
+@Database(entities = {PodcastEntry.class, EpisodeEntry.class, FavoriteEntry.class, DownloadEntry.class,
+        TopChartEntry.class, EpisodeFtsEntry.class, PodcastFtsEntry.class,
+        AutoDownloadEntry.class},
+        version = 9, exportSchema = false)
+@TypeConverters({ResultsConverter.class, DateConverter.class})
 public abstract class CandyPodDatabase extends RoomDatabase {
 
     // For Singleton instantiation
@@ -39,7 +52,11 @@ public abstract class CandyPodDatabase extends RoomDatabase {
         if (sInstance == null) {
             synchronized (LOCK) {
                 sInstance = Room.databaseBuilder(context.getApplicationContext(),
-                        CandyPodDatabase.class, DATABASE_NAME).build();
+                        CandyPodDatabase.class, DATABASE_NAME)
+                        .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4,
+                                MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8,
+                                MIGRATION_8_9)
+                        .build();
                 Timber.d("Made new database");
             }
         }
@@ -48,4 +65,265 @@ public abstract class CandyPodDatabase extends RoomDatabase {
 
     // The associated DAOs for the database
     public abstract PodcastDao podcastDao();
+
+    /**
+     * Moves the episodes out of the items column of the podcast table, where they were stored as
+     * a JSON string, into the episode table. SQLite cannot drop a column, so the podcast table
+     * is recreated without the items column.
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `podcast` RENAME TO `podcast_old`");
+
+            // Recreate the podcast table without the items column
+            database.execSQL("CREATE TABLE IF NOT EXISTS `podcast` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `podcast_id` TEXT, "
+                    + "`title` TEXT, `description` TEXT, `author` TEXT, "
+                    + "`artwork_image_url` TEXT, `date` INTEGER)");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_podcast_podcast_id` "
+                    + "ON `podcast` (`podcast_id`)");
+            database.execSQL("INSERT OR IGNORE INTO `podcast` (`id`, `podcast_id`, `title`, "
+                    + "`description`, `author`, `artwork_image_url`, `date`) "
+                    + "SELECT `id`, `podcast_id`, `title`, `description`, `author`, "
+                    + "`artwork_image_url`, `date` FROM `podcast_old`");
+
+            // Create the episode table
+            database.execSQL("CREATE TABLE IF NOT EXISTS `episode` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `podcast_id` TEXT, "
+                    + "`title` TEXT, `description` TEXT, `itunes_summary` TEXT, "
+                    + "`pub_date` TEXT, `duration` TEXT, `enclosure_url` TEXT, "
+                    + "`enclosure_type` TEXT, `enclosure_length` TEXT, `image_url` TEXT, "
+                    + "FOREIGN KEY(`podcast_id`) REFERENCES `podcast`(`podcast_id`) "
+                    + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS "
+                    + "`index_episode_podcast_id_enclosure_url` "
+                    + "ON `episode` (`podcast_id`, `enclosure_url`)");
+
+            // Split the items of each podcast into the episode table, one podcast at a time
+            SupportSQLiteStatement insertEpisode = database.compileStatement(
+                    "INSERT OR IGNORE INTO `episode` (`podcast_id`, `title`, `description`, "
+                            + "`itunes_summary`, `pub_date`, `duration`, `enclosure_url`, "
+                            + "`enclosure_type`, `enclosure_length`, `image_url`) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            Cursor cursor = database.query("SELECT `podcast_id`, `items` FROM `podcast_old`");
+            try {
+                while (cursor.moveToNext()) {
+                    String podcastId = cursor.getString(0);
+                    List<Item> items = ItemsConverter.toItemList(cursor.getString(1));
+                    for (EpisodeEntry episode : EpisodeEntry.fromItems(podcastId, items)) {
+                        bindEpisode(insertEpisode, episode);
+                        insertEpisode.executeInsert();
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+
+            database.execSQL("DROP TABLE `podcast_old`");
+        }
+    };
+
+    /**
+     * Adds the feed URL and the validators used for the conditional GET of the feed to the
+     * podcast table.
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `podcast` ADD COLUMN `feed_url` TEXT");
+            database.execSQL("ALTER TABLE `podcast` ADD COLUMN `etag` TEXT");
+            database.execSQL("ALTER TABLE `podcast` ADD COLUMN `last_modified` TEXT");
+        }
+    };
+
+    /**
+     * Adds the GUID and the removed flag used to merge a refreshed feed to the episode table.
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `episode` ADD COLUMN `guid` TEXT");
+            database.execSQL("ALTER TABLE `episode` ADD COLUMN `removed` INTEGER NOT NULL "
+                    + "DEFAULT 0");
+        }
+    };
+
+    /**
+     * Adds the top_chart table which caches the top podcasts chart of each country.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `top_chart` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `country` TEXT, "
+                    + "`title` TEXT, `results` TEXT, `fetched_at` INTEGER)");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_top_chart_country` "
+                    + "ON `top_chart` (`country`)");
+        }
+    };
+
+    /**
+     * Adds the full-text search indices over the episodes and the podcast titles, together with
+     * the triggers Room uses to keep them in sync, and indexes the existing rows.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `episode_fts` USING FTS4("
+                    + "`title` TEXT, `description` TEXT, `itunes_summary` TEXT, "
+                    + "content=`episode`)");
+            createFtsSyncTriggers(database, "episode_fts", "episode",
+                    "`title`, `description`, `itunes_summary`",
+                    "NEW.`title`, NEW.`description`, NEW.`itunes_summary`");
+            database.execSQL("INSERT INTO `episode_fts`(`episode_fts`) VALUES ('rebuild')");
+
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `podcast_fts` USING FTS4("
+                    + "`title` TEXT, content=`podcast`)");
+            createFtsSyncTriggers(database, "podcast_fts", "podcast", "`title`", "NEW.`title`");
+            database.execSQL("INSERT INTO `podcast_fts`(`podcast_fts`) VALUES ('rebuild')");
+        }
+    };
+
+    /**
+     * Adds the display fields, which are shown in the episode lists, to the episode, favorite
+     * and download tables, and computes them for the existing rows.
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            addDisplayColumns(database, "episode", "");
+            backfillDisplayColumns(database, "episode", "", "`description`, `pub_date`, "
+                    + "`duration`");
+            addDisplayColumns(database, "favorite_episodes", "item_");
+            backfillDisplayColumns(database, "favorite_episodes", "item_",
+                    "`item_description`, `item_pub_date`, `item_duration`");
+            addDisplayColumns(database, "downloaded_episodes", "item_");
+            backfillDisplayColumns(database, "downloaded_episodes", "item_",
+                    "`item_description`, `item_pub_date`, `item_duration`");
+        }
+    };
+
+    /**
+     * Adds the auto_download_rules table which holds the auto-download rule of each podcast.
+     */
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `auto_download_rules` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `podcast_id` TEXT, "
+                    + "`episode_count` INTEGER NOT NULL, `unmetered_only` INTEGER NOT NULL, "
+                    + "`charging_only` INTEGER NOT NULL, "
+                    + "FOREIGN KEY(`podcast_id`) REFERENCES `podcast`(`podcast_id`) "
+                    + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS "
+                    + "`index_auto_download_rules_podcast_id` "
+                    + "ON `auto_download_rules` (`podcast_id`)");
+        }
+    };
+
+    /**
+     * Adds the newest episode which each auto-download rule has considered. The existing rules
+     * have considered every episode of their podcast already, so they start from the newest.
+     */
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `auto_download_rules` ADD COLUMN `last_episode_id` "
+                    + "INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("UPDATE `auto_download_rules` SET `last_episode_id` = "
+                    + "(SELECT IFNULL(MAX(`id`), 0) FROM `episode` "
+                    + "WHERE `episode`.`podcast_id` = `auto_download_rules`.`podcast_id` "
+                    + "AND `removed` = 0 AND `enclosure_url` IS NOT NULL)");
+        }
+    };
+
+    /**
+     * Adds the columns of the {@link EpisodeDisplay} embedded with the given prefix.
+     */
+    private static void addDisplayColumns(SupportSQLiteDatabase database, String table,
+                                          String prefix) {
+        String alter = "ALTER TABLE `" + table + "` ADD COLUMN `" + prefix;
+        database.execSQL(alter + "snippet` TEXT");
+        database.execSQL(alter + "pub_date_millis` INTEGER NOT NULL DEFAULT 0");
+        database.execSQL(alter + "display_pub_date` TEXT");
+        database.execSQL(alter + "duration_millis` INTEGER NOT NULL DEFAULT 0");
+        database.execSQL(alter + "display_duration` TEXT");
+    }
+
+    /**
+     * Computes the display fields of the existing rows from the description, the pub date and
+     * the duration, which are selected in this order by the given columns.
+     */
+    private static void backfillDisplayColumns(SupportSQLiteDatabase database, String table,
+                                               String prefix, String sourceColumns) {
+        SupportSQLiteStatement update = database.compileStatement("UPDATE `" + table
+                + "` SET `" + prefix + "snippet` = ?, `" + prefix + "pub_date_millis` = ?, `"
+                + prefix + "display_pub_date` = ?, `" + prefix + "duration_millis` = ?, `"
+                + prefix + "display_duration` = ? WHERE `id` = ?");
+        Cursor cursor = database.query("SELECT `id`, " + sourceColumns + " FROM `" + table + "`");
+        try {
+            while (cursor.moveToNext()) {
+                EpisodeDisplay display = EpisodeDisplay.from(cursor.getString(1),
+                        cursor.getString(2), cursor.getString(3));
+                update.clearBindings();
+                bindStringOrNull(update, 1, display.getSnippet());
+                update.bindLong(2, display.getPubDateMillis());
+                bindStringOrNull(update, 3, display.getDisplayPubDate());
+                update.bindLong(4, display.getDurationMillis());
+                bindStringOrNull(update, 5, display.getDisplayDuration());
+                update.bindLong(6, cursor.getLong(0));
+                update.executeUpdateDelete();
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Creates the triggers which keep an external content FTS table in sync with its content
+     * table. The SQL is the same as the one Room generates for an {@link androidx.room.Fts4}
+     * entity with a content entity.
+     */
+    private static void createFtsSyncTriggers(SupportSQLiteDatabase database, String ftsTable,
+                                              String contentTable, String columns,
+                                              String newValues) {
+        String prefix = "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_" + ftsTable;
+        String delete = " BEGIN DELETE FROM `" + ftsTable + "` WHERE `docid`=OLD.`rowid`; END";
+        String insert = " BEGIN INSERT INTO `" + ftsTable + "`(`docid`, " + columns
+                + ") VALUES (NEW.`rowid`, " + newValues + "); END";
+        database.execSQL(prefix + "_BEFORE_UPDATE BEFORE UPDATE ON `" + contentTable + "`"
+                + delete);
+        database.execSQL(prefix + "_BEFORE_DELETE BEFORE DELETE ON `" + contentTable + "`"
+                + delete);
+        database.execSQL(prefix + "_AFTER_UPDATE AFTER UPDATE ON `" + contentTable + "`"
+                + insert);
+        database.execSQL(prefix + "_AFTER_INSERT AFTER INSERT ON `" + contentTable + "`"
+                + insert);
+    }
+
+    /**
+     * Binds the values of the EpisodeEntry to the insert statement used by the migration.
+     */
+    private static void bindEpisode(SupportSQLiteStatement statement, EpisodeEntry episode) {
+        statement.clearBindings();
+        bindStringOrNull(statement, 1, episode.getPodcastId());
+        bindStringOrNull(statement, 2, episode.getTitle());
+        bindStringOrNull(statement, 3, episode.getDescription());
+        bindStringOrNull(statement, 4, episode.getITunesSummary());
+        bindStringOrNull(statement, 5, episode.getPubDate());
+        bindStringOrNull(statement, 6, episode.getDuration());
+        bindStringOrNull(statement, 7, episode.getEnclosureUrl());
+        bindStringOrNull(statement, 8, episode.getEnclosureType());
+        bindStringOrNull(statement, 9, episode.getEnclosureLength());
+        bindStringOrNull(statement, 10, episode.getImageUrl());
+    }
+
+    private static void bindStringOrNull(SupportSQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
 }
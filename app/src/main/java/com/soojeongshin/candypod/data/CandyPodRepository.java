@@ -16,150 +16,221 @@
 
 package com.soojeongshin.candypod.data;
 
+import androidx.annotation.MainThread;
+import androidx.arch.core.util.Function;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+import androidx.paging.LivePagedListBuilder;
+import androidx.paging.PagedList;
+import android.os.SystemClock;
+import android.text.TextUtils;
 
 import com.soojeongshin.candypod.AppExecutors;
+import com.soojeongshin.candypod.model.Feed;
 import com.soojeongshin.candypod.model.ITunesResponse;
 import com.soojeongshin.candypod.model.LookupResponse;
+import com.soojeongshin.candypod.model.LookupResult;
 import com.soojeongshin.candypod.model.SearchResponse;
+import com.soojeongshin.candypod.model.rss.Channel;
 import com.soojeongshin.candypod.model.rss.RssFeed;
 import com.soojeongshin.candypod.utilities.ITunesSearchApi;
 
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import okhttp3.Headers;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 import timber.log.Timber;
 
+import static com.soojeongshin.candypod.utilities.Constants.API_CACHE_MAX_AGE_SECONDS;
+import static com.soojeongshin.candypod.utilities.Constants.AUTO_DOWNLOAD_MAX_EPISODES;
+import static com.soojeongshin.candypod.utilities.Constants.EPISODE_INITIAL_LOAD_SIZE;
+import static com.soojeongshin.candypod.utilities.Constants.EPISODE_PAGE_SIZE;
+import static com.soojeongshin.candypod.utilities.Constants.EPISODE_PREFETCH_DISTANCE;
+import static com.soojeongshin.candypod.utilities.Constants.HEADER_ETAG;
+import static com.soojeongshin.candypod.utilities.Constants.HEADER_LAST_MODIFIED;
+import static com.soojeongshin.candypod.utilities.Constants.I_TUNES_LOOKUP;
+import static com.soojeongshin.candypod.utilities.Constants.LOOKUP_CACHE_SIZE;
+import static com.soojeongshin.candypod.utilities.Constants.QUEUE_MAX_SIZE;
+import static com.soojeongshin.candypod.utilities.Constants.RSS_PREVIEW_ITEM_LIMIT;
+import static com.soojeongshin.candypod.utilities.Constants.SEARCH_CACHE_SIZE;
+import static com.soojeongshin.candypod.utilities.Constants.STORAGE_USAGE_QUERY_BATCH_SIZE;
+import static com.soojeongshin.candypod.utilities.Constants.TOP_CHART_CACHE_TTL_HOURS;
+
 /**
  * Handles data operations in CandyPod. Acts as a mediator between {@link ITunesSearchApi} and
  * {@link PodcastDao}.
  */
 public class CandyPodRepository {
 
+    /** The episode title column of the full-text search index */
+    private static final String FTS_COLUMN_TITLE = "title";
+
     // For Singleton instantiation
     private static final Object LOCK = new Object();
     private static CandyPodRepository sInstance;
     private final PodcastDao mPodcastDao;
     private final ITunesSearchApi mITunesSearchApi;
     private final AppExecutors mExecutors;
+    private final DownloadProgressTracker mDownloadProgressTracker;
+    private final ResponseCache<SearchResponse> mSearchCache = new ResponseCache<>(
+            "SearchResponse", SEARCH_CACHE_SIZE,
+            TimeUnit.SECONDS.toMillis(API_CACHE_MAX_AGE_SECONDS));
+    private final ResponseCache<LookupResponse> mLookupCache = new ResponseCache<>(
+            "LookupResponse", LOOKUP_CACHE_SIZE,
+            TimeUnit.SECONDS.toMillis(API_CACHE_MAX_AGE_SECONDS));
 
     private CandyPodRepository(PodcastDao podcastDao,
                                ITunesSearchApi iTunesSearchApi,
-                               AppExecutors executors) {
+                               AppExecutors executors,
+                               DownloadProgressTracker downloadProgressTracker) {
         mPodcastDao = podcastDao;
         mITunesSearchApi = iTunesSearchApi;
         mExecutors = executors;
+        mDownloadProgressTracker = downloadProgressTracker;
     }
 
     public synchronized static CandyPodRepository getInstance(
-           PodcastDao podcastDao, ITunesSearchApi iTunesSearchApi, AppExecutors executors) {
+           PodcastDao podcastDao, ITunesSearchApi iTunesSearchApi, AppExecutors executors,
+           DownloadProgressTracker downloadProgressTracker) {
         Timber.d("Getting the repository");
         if (sInstance == null) {
             synchronized (LOCK) {
                 Timber.d("Making new repository");
-                sInstance = new CandyPodRepository(podcastDao, iTunesSearchApi, executors);
+                sInstance = new CandyPodRepository(podcastDao, iTunesSearchApi, executors,
+                        downloadProgressTracker);
             }
         }
         return sInstance;
     }
 
     /**
-     * Make a network request by calling enqueue
+     * Returns the top podcasts chart of the country. The cached chart is shown right away, and
+     * refreshed in the background once it is older than the TTL, so the screen works offline
+     * and switching countries is instant after the first load.
      * @param country The two-letter country code
-     * @return {@link LiveData} ITunesResponse object
+     * @return {@link LiveData} ITunesResponse object, null until a chart has been cached
      */
     public LiveData<ITunesResponse> getITunesResponse(String country) {
-        final MutableLiveData<ITunesResponse> iTunesResponseData = new MutableLiveData<>();
-
-        mITunesSearchApi.getTopPodcasts(country)
-                .enqueue(new Callback<ITunesResponse>() {
+        refreshTopPodcasts(country);
+        return Transformations.map(mPodcastDao.loadTopChartByCountry(country),
+                new Function<TopChartEntry, ITunesResponse>() {
                     @Override
-                    public void onResponse(Call<ITunesResponse> call, Response<ITunesResponse> response) {
-                        if (response.isSuccessful()) {
-                            ITunesResponse iTunesResponse = response.body();
-                            iTunesResponseData.setValue(iTunesResponse);
-                        }
+                    public ITunesResponse apply(TopChartEntry topChartEntry) {
+                        return topChartEntry == null ? null : topChartEntry.toITunesResponse();
                     }
+                });
+    }
 
-                    @Override
-                    public void onFailure(Call<ITunesResponse> call, Throwable t) {
-                        iTunesResponseData.setValue(null);
-                        Timber.e("Failed getting iTunesResponse data. " + t.getMessage());
+    /**
+     * Fetches the top podcasts chart of the country and caches it, unless the cached chart is
+     * still fresh. When the request fails, the cached chart is kept.
+     * @param country The two-letter country code
+     */
+    private void refreshTopPodcasts(final String country) {
+        mExecutors.networkIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                TopChartEntry cached = mPodcastDao.syncLoadTopChartByCountry(country);
+                long now = System.currentTimeMillis();
+                if (cached != null && !cached.isExpired(
+                        TimeUnit.HOURS.toMillis(TOP_CHART_CACHE_TTL_HOURS), now)) {
+                    return;
+                }
+
+                try {
+                    Response<ITunesResponse> response =
+                            mITunesSearchApi.getTopPodcasts(country).execute();
+                    ITunesResponse iTunesResponse = response.body();
+                    if (!response.isSuccessful() || iTunesResponse == null
+                            || iTunesResponse.getFeed() == null) {
+                        Timber.e("Failed getting iTunesResponse data. Response code: "
+                                + response.code());
+                        return;
                     }
-                });
-        return iTunesResponseData;
+                    Feed feed = iTunesResponse.getFeed();
+                    mPodcastDao.insertTopChart(new TopChartEntry(country, feed.getTitle(),
+                            feed.getResults(), new Date(now)));
+                } catch (IOException e) {
+                    Timber.e("Failed getting iTunesResponse data. " + e.getMessage());
+                }
+            }
+        });
     }
 
     /**
-     * Make a network request by calling enqueue
+     * Returns the lookup response of the podcast. Responses are cached in memory by podcast ID,
+     * and identical requests in flight share one call.
      * @param lookupUrl URL for a lookup request
      * @param id The podcast ID
      * @return {@link LiveData} LookupResponse object
      */
-    public LiveData<LookupResponse> getLookupResponse(String lookupUrl, String id) {
-        final MutableLiveData<LookupResponse> lookupResponseData = new MutableLiveData<>();
-
-        mITunesSearchApi.getLookupResponse(lookupUrl, id)
-                .enqueue(new Callback<LookupResponse>() {
-                    @Override
-                    public void onResponse(Call<LookupResponse> call, Response<LookupResponse> response) {
-                        if (response.isSuccessful()) {
-                            LookupResponse lookupResponse = response.body();
-                            lookupResponseData.setValue(lookupResponse);
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(Call<LookupResponse> call, Throwable t) {
-                        lookupResponseData.setValue(null);
-                        Timber.e("Failed getting LookupResponse data. " + t.getMessage());
-                    }
-                });
-        return lookupResponseData;
+    public LiveData<LookupResponse> getLookupResponse(final String lookupUrl, final String id) {
+        return mLookupCache.get(id, new ResponseCache.CallFactory<LookupResponse>() {
+            @Override
+            public Call<LookupResponse> create() {
+                return mITunesSearchApi.getLookupResponse(lookupUrl, id);
+            }
+        });
     }
 
     /**
      * Get a search response data. When the user submits a search query, the SearchResultsActivity
-     * will display this data.
+     * will display this data. Responses are cached in memory by term, country and media, and
+     * identical requests in flight share one call.
      * @param searchUrl URL for a search request
      * @param country The country
      * @param media The media type to search
      * @param term The user's query from the SearchView
      */
-    public LiveData<SearchResponse> getSearchResponse(String searchUrl,
-                                                      String country, String media, String term) {
-        final MutableLiveData<SearchResponse> searchResponseData = new MutableLiveData<>();
+    public LiveData<SearchResponse> getSearchResponse(final String searchUrl, final String country,
+                                                      final String media, final String term) {
+        String key = term + '\n' + country + '\n' + media;
+        return mSearchCache.get(key, new ResponseCache.CallFactory<SearchResponse>() {
+            @Override
+            public Call<SearchResponse> create() {
+                return mITunesSearchApi.getSearchResponse(searchUrl, country, media, term);
+            }
+        });
+    }
 
-        mITunesSearchApi.getSearchResponse(searchUrl, country, media, term)
-                .enqueue(new Callback<SearchResponse>() {
-                    @Override
-                    public void onResponse(Call<SearchResponse> call, Response<SearchResponse> response) {
-                        if (response.isSuccessful()) {
-                            SearchResponse searchResponse = response.body();
-                            searchResponseData.setValue(searchResponse);
-                        }
-                    }
+    /**
+     * Returns the hit and miss counters of the search response cache.
+     */
+    public CacheStats getSearchCacheStats() {
+        return mSearchCache.getStats();
+    }
 
-                    @Override
-                    public void onFailure(Call<SearchResponse> call, Throwable t) {
-                        searchResponseData.setValue(null);
-                        Timber.e("Failed getting SearchResponse data. " + t.getMessage());
-                    }
-                });
-        return searchResponseData;
+    /**
+     * Returns the hit and miss counters of the lookup response cache.
+     */
+    public CacheStats getLookupCacheStats() {
+        return mLookupCache.getStats();
     }
 
     /**
-     * Returns {@link LiveData} RssFeed
+     * Returns {@link LiveData} RssFeed with the latest episodes of the feed, at most
+     * RSS_PREVIEW_ITEM_LIMIT, for the preview in the subscribe screen.
      * @param feedUrl The feed URL which has the episode metadata and stream URLs for the audio file
      */
     public LiveData<RssFeed> getRssFeed(String feedUrl) {
         final MutableLiveData<RssFeed> rssFeedData = new MutableLiveData<>();
 
-        mITunesSearchApi.getRssFeed(feedUrl)
+        mITunesSearchApi.getRssFeedPreview(feedUrl)
                 .enqueue(new Callback<RssFeed>() {
                     @Override
                     public void onResponse(Call<RssFeed> call, Response<RssFeed> response) {
@@ -178,6 +249,163 @@ public class CandyPodRepository {
         return rssFeedData;
     }
 
+    /**
+     * Subscribes to the podcast on a background thread. If the preview has all the episodes of
+     * the feed, they are stored with the podcast. Otherwise the preview only has the latest
+     * episodes, so the full feed is fetched and its episodes are inserted at once, which keeps
+     * them in feed order. If the full feed cannot be fetched, the preview is stored instead, and
+     * the next refresh merges the rest of the feed.
+     * @param podcastEntry The podcast the user subscribed
+     * @param previewEpisodes The episodes of the preview, see {@link EpisodeEntry#fromItems}
+     */
+    public void subscribe(final PodcastEntry podcastEntry,
+                          final List<EpisodeEntry> previewEpisodes) {
+        mExecutors.networkIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (previewEpisodes.size() < RSS_PREVIEW_ITEM_LIMIT) {
+                    mPodcastDao.insertPodcastWithEpisodes(podcastEntry, previewEpisodes);
+                } else {
+                    mPodcastDao.insertPodcast(podcastEntry);
+                    if (!refreshPodcastSync(podcastEntry)) {
+                        // The podcast has no episodes yet, so at least keep the preview
+                        mPodcastDao.insertPodcastWithEpisodes(podcastEntry, previewEpisodes);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Refreshes the episodes of the subscribed podcast on a background thread.
+     * @param podcastId The podcast ID
+     */
+    public void refreshPodcast(final String podcastId) {
+        mExecutors.networkIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                PodcastEntry podcastEntry = mPodcastDao.syncLoadPodcastByPodcastId(podcastId);
+                if (podcastEntry != null) {
+                    refreshPodcastSync(podcastEntry);
+                }
+            }
+        });
+    }
+
+    /**
+     * Refreshes the feeds of all subscribed podcasts on the network executor, with at most
+     * maxConcurrentRefreshes requests in flight at a time. The network executor has a fixed
+     * number of threads, which is the upper bound of the concurrency.
+     * This method blocks until all feeds are refreshed, so it must not be called on the main
+     * thread or on the network executor.
+     * @param maxConcurrentRefreshes The maximum number of feeds refreshed at the same time
+     * @return The number of feeds checked and changed, and the time the run took
+     */
+    public FeedRefreshResult refreshPodcastsSync(int maxConcurrentRefreshes)
+            throws InterruptedException {
+        long startTime = SystemClock.elapsedRealtime();
+        List<PodcastEntry> podcastEntries = mPodcastDao.syncLoadPodcasts();
+
+        final Semaphore permits = new Semaphore(Math.max(1, maxConcurrentRefreshes));
+        final CountDownLatch finished = new CountDownLatch(podcastEntries.size());
+        final AtomicInteger changedCount = new AtomicInteger();
+        for (final PodcastEntry podcastEntry : podcastEntries) {
+            // Wait until one of the running refreshes finishes
+            permits.acquire();
+            mExecutors.networkIO().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (refreshPodcastSync(podcastEntry)) {
+                            changedCount.incrementAndGet();
+                        }
+                    } finally {
+                        permits.release();
+                        finished.countDown();
+                    }
+                }
+            });
+        }
+        finished.await();
+
+        long elapsedMillis = SystemClock.elapsedRealtime() - startTime;
+        return new FeedRefreshResult(podcastEntries.size(), changedCount.get(), elapsedMillis);
+    }
+
+    /**
+     * Revalidates the feed of the subscribed podcast with a conditional GET. If the feed has not
+     * changed since the last refresh, the server responds with 304 Not Modified, the feed is not
+     * parsed and the persisted episodes are kept. Otherwise, the episodes are merged with the
+     * persisted episodes and the validators of the response are stored for the next refresh.
+     * This method makes a blocking network request, so it must not be called on the main thread.
+     * @param podcastEntry The subscribed podcast
+     * @return True if any episode was inserted or updated
+     */
+    public boolean refreshPodcastSync(PodcastEntry podcastEntry) {
+        String podcastId = podcastEntry.getPodcastId();
+        String feedUrl = podcastEntry.getFeedUrl();
+        String etag = podcastEntry.getEtag();
+        String lastModified = podcastEntry.getLastModified();
+        if (TextUtils.isEmpty(feedUrl)) {
+            // The podcast was subscribed before the feed URL was stored, so look it up once
+            feedUrl = lookupFeedUrlSync(podcastId);
+            if (TextUtils.isEmpty(feedUrl)) {
+                return false;
+            }
+            etag = null;
+            lastModified = null;
+        }
+
+        try {
+            Response<RssFeed> response = mITunesSearchApi
+                    .getRssFeedIfModified(feedUrl, etag, lastModified).execute();
+            if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                Timber.d("Feed not modified: " + feedUrl);
+                return false;
+            }
+            RssFeed rssFeed = response.body();
+            if (!response.isSuccessful() || rssFeed == null) {
+                Timber.e("Failed refreshing RssFeed data. Response code: " + response.code());
+                return false;
+            }
+            Channel channel = rssFeed.getChannel();
+            if (channel == null) {
+                return false;
+            }
+
+            Headers headers = response.headers();
+            int changedCount = mPodcastDao.updateFeed(podcastId, feedUrl,
+                    headers.get(HEADER_ETAG), headers.get(HEADER_LAST_MODIFIED),
+                    EpisodeEntry.fromItems(podcastId, channel.getItemList()));
+            Timber.d("Merged feed " + feedUrl + ", " + changedCount + " episodes changed");
+            return changedCount > 0;
+        } catch (IOException e) {
+            Timber.e("Failed refreshing RssFeed data. " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Makes a blocking lookup request and returns the feed URL of the podcast, or null.
+     * @param podcastId The podcast ID
+     */
+    private String lookupFeedUrlSync(String podcastId) {
+        try {
+            Response<LookupResponse> response =
+                    mITunesSearchApi.getLookupResponse(I_TUNES_LOOKUP, podcastId).execute();
+            LookupResponse lookupResponse = response.body();
+            if (response.isSuccessful() && lookupResponse != null) {
+                List<LookupResult> lookupResults = lookupResponse.getLookupResults();
+                if (lookupResults != null && !lookupResults.isEmpty()) {
+                    return lookupResults.get(0).getFeedUrl();
+                }
+            }
+        } catch (IOException e) {
+            Timber.e("Failed getting LookupResponse data. " + e.getMessage());
+        }
+        return null;
+    }
+
     /**
      * Get the podcast by podcast ID from the podcast table.
      * @param podcastId The podcast ID
@@ -187,6 +415,239 @@ public class CandyPodRepository {
         return mPodcastDao.loadPodcastByPodcastId(podcastId);
     }
 
+    /**
+     * Get the episodes of the podcast from the episode table, loaded page by page.
+     * Placeholders are enabled, so the list has its full size while the pages are loading.
+     * @param podcastId The podcast ID
+     * @return {@link LiveData} {@link PagedList} of {@link EpisodeEntry} objects in feed order.
+     */
+    public LiveData<PagedList<EpisodeEntry>> getPagedEpisodesByPodcastId(String podcastId) {
+        PagedList.Config config = new PagedList.Config.Builder()
+                .setPageSize(EPISODE_PAGE_SIZE)
+                .setInitialLoadSizeHint(EPISODE_INITIAL_LOAD_SIZE)
+                .setPrefetchDistance(EPISODE_PREFETCH_DISTANCE)
+                .setEnablePlaceholders(true)
+                .build();
+        return new LivePagedListBuilder<>(
+                mPodcastDao.loadPagedEpisodesByPodcastId(podcastId), config).build();
+    }
+
+    /**
+     * Searches the titles, descriptions and summaries of the episodes of all subscribed
+     * podcasts, and the podcast titles, with the full-text search index. Each word of the query
+     * is matched as a prefix, and all words must match.
+     * @param query The query the user typed
+     * @return {@link LiveData} paged list of the ranked episodes, which has no value when the
+     * query has no words to search
+     */
+    public LiveData<PagedList<EpisodeEntry>> searchEpisodes(String query) {
+        String matchQuery = toFtsMatchQuery(query, null);
+        if (matchQuery == null) {
+            return new MutableLiveData<>();
+        }
+        PagedList.Config config = new PagedList.Config.Builder()
+                .setPageSize(EPISODE_PAGE_SIZE)
+                .setInitialLoadSizeHint(EPISODE_INITIAL_LOAD_SIZE)
+                .setPrefetchDistance(EPISODE_PREFETCH_DISTANCE)
+                .setEnablePlaceholders(true)
+                .build();
+        return new LivePagedListBuilder<>(mPodcastDao.searchEpisodes(
+                matchQuery, toFtsMatchQuery(query, FTS_COLUMN_TITLE)), config).build();
+    }
+
+    /**
+     * Converts the user's query into an FTS query where each word is a prefix term, so that
+     * characters which have a meaning in the FTS query syntax are not passed through.
+     * @param query The query the user typed
+     * @param column The column to restrict the terms to, or null to match all columns
+     * @return The FTS query, or null if the query has no words
+     */
+    private static String toFtsMatchQuery(String query, String column) {
+        if (query == null) {
+            return null;
+        }
+        StringBuilder matchQuery = new StringBuilder();
+        int length = query.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean isWordChar = i < length && Character.isLetterOrDigit(query.charAt(i));
+            if (isWordChar && start < 0) {
+                start = i;
+            } else if (!isWordChar && start >= 0) {
+                if (matchQuery.length() > 0) {
+                    matchQuery.append(' ');
+                }
+                if (column != null) {
+                    matchQuery.append(column).append(':');
+                }
+                matchQuery.append(query, start, i).append('*');
+                start = -1;
+            }
+        }
+        return matchQuery.length() == 0 ? null : matchQuery.toString();
+    }
+
+    /**
+     * Returns the episodes which are played after the given episode, at most QUEUE_MAX_SIZE.
+     * This method must be called on a background thread.
+     * @param podcastId The podcast ID
+     * @param enclosureUrl The enclosure URL of the current episode
+     */
+    public List<EpisodeEntry> getUpcomingEpisodesSync(String podcastId, String enclosureUrl) {
+        return mPodcastDao.syncLoadEpisodesAfter(podcastId, enclosureUrl, QUEUE_MAX_SIZE);
+    }
+
+    /**
+     * Returns the auto-download rule of the podcast, or null if the podcast has no rule.
+     * @param podcastId The podcast ID
+     */
+    public LiveData<AutoDownloadEntry> getAutoDownloadRule(String podcastId) {
+        return mPodcastDao.loadAutoDownloadRule(podcastId);
+    }
+
+    /**
+     * Sets the auto-download rule of the podcast, replacing its existing rule. The episodes
+     * which the existing rule has considered are not downloaded again. The number of
+     * episodes is limited to AUTO_DOWNLOAD_MAX_EPISODES.
+     * @param podcastId The podcast ID
+     * @param episodeCount The number of the latest episodes to keep downloaded
+     * @param unmeteredOnly True to only download on an unmetered network
+     * @param chargingOnly True to only download while charging
+     */
+    public void setAutoDownloadRule(final String podcastId, final int episodeCount,
+                                    final boolean unmeteredOnly, final boolean chargingOnly) {
+        mExecutors.diskIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                AutoDownloadEntry existingRule = mPodcastDao.syncLoadAutoDownloadRule(podcastId);
+                mPodcastDao.insertAutoDownloadRule(new AutoDownloadEntry(podcastId,
+                        Math.max(1, Math.min(episodeCount, AUTO_DOWNLOAD_MAX_EPISODES)),
+                        unmeteredOnly, chargingOnly,
+                        existingRule != null ? existingRule.getLastEpisodeId() : 0));
+            }
+        });
+    }
+
+    /**
+     * Removes the auto-download rule of the podcast. The downloaded episodes are kept.
+     * @param podcastId The podcast ID
+     */
+    public void removeAutoDownloadRule(final String podcastId) {
+        mExecutors.diskIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                mPodcastDao.deleteAutoDownloadRule(podcastId);
+            }
+        });
+    }
+
+    /**
+     * Evaluates the auto-download rules of all podcasts and returns the episodes to download,
+     * which are the latest episodes of each podcast that are not downloaded yet and newer than
+     * the episodes the rule has considered before. Each rule then marks the newest episode of
+     * the podcast, so that an episode which the user deleted is not downloaded again. The rules
+     * whose conditions the device does not meet are skipped until the next evaluation.
+     * This method must be called on a background thread.
+     * @param isOnUnmeteredNetwork True if the device is on an unmetered network
+     * @param isCharging True if the device is charging
+     */
+    public List<DownloadEntry> getAutoDownloadsSync(boolean isOnUnmeteredNetwork,
+                                                    boolean isCharging) {
+        List<DownloadEntry> downloadEntries = new ArrayList<>();
+        for (AutoDownloadEntry rule : mPodcastDao.syncLoadAutoDownloadRules()) {
+            if (!rule.isSatisfied(isOnUnmeteredNetwork, isCharging)) {
+                continue;
+            }
+            PodcastEntry podcastEntry = mPodcastDao.syncLoadPodcastByPodcastId(
+                    rule.getPodcastId());
+            if (podcastEntry == null) {
+                continue;
+            }
+            int latestEpisodeId = mPodcastDao.syncLoadLatestEpisodeId(rule.getPodcastId());
+            for (EpisodeEntry episode : mPodcastDao.syncLoadLatestEpisodesNotDownloaded(
+                    rule.getPodcastId(), rule.getLastEpisodeId(), rule.getEpisodeCount())) {
+                downloadEntries.add(new DownloadEntry(0, podcastEntry.getPodcastId(),
+                        podcastEntry.getTitle(), podcastEntry.getArtworkImageUrl(),
+                        episode.getTitle(), episode.getDescription(), episode.getPubDate(),
+                        episode.getDuration(), episode.getEnclosureUrl(),
+                        episode.getEnclosureType(), episode.getEnclosureLength(),
+                        episode.getImageUrl(), episode.getDisplay()));
+            }
+            if (latestEpisodeId > rule.getLastEpisodeId()) {
+                mPodcastDao.updateAutoDownloadLastEpisode(rule.getPodcastId(), latestEpisodeId);
+            }
+        }
+        return downloadEntries;
+    }
+
+    /**
+     * Returns the storage each podcast takes in the media cache, the largest first. The cached
+     * episodes which are in the downloaded_episodes table are counted as downloaded, and the
+     * rest as streamed. The cached episodes whose podcast is not subscribed are grouped
+     * together. This method must be called on a background thread.
+     * @param cachedBytes The number of cached bytes by enclosure URL
+     */
+    public List<StorageUsage> getStorageUsageSync(Map<String, Long> cachedBytes) {
+        Map<String, StorageUsage> usages = new HashMap<>();
+        Map<String, Long> streamedBytes = new HashMap<>();
+        Map<String, DownloadEntry> downloads = new HashMap<>();
+        for (DownloadEntry downloadEntry : mPodcastDao.syncLoadDownloads()) {
+            downloads.put(downloadEntry.getItemEnclosureUrl(), downloadEntry);
+        }
+        for (Map.Entry<String, Long> entry : cachedBytes.entrySet()) {
+            DownloadEntry downloadEntry = downloads.get(entry.getKey());
+            if (downloadEntry == null) {
+                streamedBytes.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+            getStorageUsage(usages, downloadEntry.getPodcastId(), downloadEntry.getTitle())
+                    .addDownloadedBytes(entry.getValue());
+        }
+
+        Map<String, String> titles = new HashMap<>();
+        for (PodcastEntry podcastEntry : mPodcastDao.syncLoadPodcasts()) {
+            titles.put(podcastEntry.getPodcastId(), podcastEntry.getTitle());
+        }
+        // Query in batches to stay below the limit of SQLite on the number of arguments
+        List<String> streamedUrls = new ArrayList<>(streamedBytes.keySet());
+        for (int start = 0; start < streamedUrls.size();
+             start += STORAGE_USAGE_QUERY_BATCH_SIZE) {
+            List<String> batch = streamedUrls.subList(start,
+                    Math.min(start + STORAGE_USAGE_QUERY_BATCH_SIZE, streamedUrls.size()));
+            for (EpisodeEntry episode : mPodcastDao.syncLoadEpisodesByEnclosureUrls(batch)) {
+                Long bytes = streamedBytes.remove(episode.getEnclosureUrl());
+                if (bytes != null) {
+                    getStorageUsage(usages, episode.getPodcastId(),
+                            titles.get(episode.getPodcastId())).addStreamedBytes(bytes);
+                }
+            }
+        }
+        // The remaining streamed episodes do not belong to a subscribed podcast
+        for (Long bytes : streamedBytes.values()) {
+            getStorageUsage(usages, null, null).addStreamedBytes(bytes);
+        }
+
+        List<StorageUsage> result = new ArrayList<>(usages.values());
+        Collections.sort(result, new Comparator<StorageUsage>() {
+            @Override
+            public int compare(StorageUsage lhs, StorageUsage rhs) {
+                long difference = rhs.getTotalBytes() - lhs.getTotalBytes();
+                return difference > 0 ? 1 : difference < 0 ? -1 : 0;
+            }
+        });
+        return result;
+    }
+
+    private static StorageUsage getStorageUsage(Map<String, StorageUsage> usages,
+                                                String podcastId, String title) {
+        StorageUsage usage = usages.get(podcastId);
+        if (usage == null) {
+            usage = new StorageUsage(podcastId, title);
+            usages.put(podcastId, usage);
+        }
+        return usage;
+    }
+
     /**
      * Get the list of the podcasts from the podcast table.
      * @return {@link LiveData} list of all {@link PodcastEntry} objects from the database.
@@ -226,4 +687,18 @@ public class CandyPodRepository {
     public LiveData<DownloadEntry> getDownloadedEpisodeByEnclosureUrl(String enclosureUrl) {
         return mPodcastDao.loadDownloadedEpisodeByEnclosureUrl(enclosureUrl);
     }
+
+    /**
+     * Returns the download progress of the episode: the downloaded bytes, the percentage, the
+     * speed, the time left and the state of the task. The updates are limited to a fixed rate,
+     * and all the streams share one listener on the DownloadManager, so a list may observe the
+     * progress of each of its rows. Must be called on the main thread.
+     * @param enclosureUrl The stream URL for the episode audio file
+     * @return {@link LiveData} DownloadProgress, null until the episode is queued for download
+     * or removal
+     */
+    @MainThread
+    public LiveData<DownloadProgress> getDownloadProgress(String enclosureUrl) {
+        return mDownloadProgressTracker.getProgress(enclosureUrl);
+    }
 }
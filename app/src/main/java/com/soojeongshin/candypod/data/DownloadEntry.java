@@ -16,13 +16,17 @@
 
 package com.soojeongshin.candypod.data;
 
+import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
+import androidx.room.Embedded;
 import androidx.room.Entity;
 import androidx.room.Ignore;
 import androidx.room.PrimaryKey;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.soojeongshin.candypod.model.rss.EpisodeDisplay;
+
 /**
  * Defines the schema of a table in room for a single downloaded episode.
  */
@@ -66,6 +70,11 @@ public class DownloadEntry implements Parcelable {
     @ColumnInfo(name = "item_image_url")
     private String itemImageUrl;
 
+    /** The fields shown in the list, computed from the episode when the entry is created */
+    @Embedded(prefix = "item_")
+    @NonNull
+    private EpisodeDisplay itemDisplay;
+
     /**
      *
      * @param podcastId
@@ -95,6 +104,7 @@ public class DownloadEntry implements Parcelable {
         this.itemEnclosureType = itemEnclosureType;
         this.itemEnclosureLength = itemEnclosureLength;
         this.itemImageUrl = itemImageUrl;
+        this.itemDisplay = EpisodeDisplay.from(itemDescription, itemPubDate, itemDuration);
     }
 
     /**
@@ -103,7 +113,8 @@ public class DownloadEntry implements Parcelable {
     public DownloadEntry(int id, String podcastId, String title,
                          String artworkImageUrl, String itemTitle, String itemDescription,
                          String itemPubDate, String itemDuration, String itemEnclosureUrl,
-                         String itemEnclosureType, String itemEnclosureLength, String itemImageUrl) {
+                         String itemEnclosureType, String itemEnclosureLength, String itemImageUrl,
+                         @NonNull EpisodeDisplay itemDisplay) {
         this.id = id;
         this.podcastId = podcastId;
         this.title = title;
@@ -116,6 +127,7 @@ public class DownloadEntry implements Parcelable {
         this.itemEnclosureType = itemEnclosureType;
         this.itemEnclosureLength = itemEnclosureLength;
         this.itemImageUrl = itemImageUrl;
+        this.itemDisplay = itemDisplay;
     }
 
     protected DownloadEntry(Parcel in) {
@@ -130,6 +142,8 @@ public class DownloadEntry implements Parcelable {
         itemEnclosureType = in.readString();
         itemEnclosureLength = in.readString();
         itemImageUrl = in.readString();
+        itemDisplay = new EpisodeDisplay(in.readString(), in.readLong(), in.readString(),
+                in.readLong(), in.readString());
     }
 
     public static final Creator<DownloadEntry> CREATOR = new Creator<DownloadEntry>() {
@@ -192,6 +206,11 @@ public class DownloadEntry implements Parcelable {
         return itemImageUrl;
     }
 
+    @NonNull
+    public EpisodeDisplay getItemDisplay() {
+        return itemDisplay;
+    }
+
     @Override
     public int describeContents() {
         return 0;
@@ -210,5 +229,10 @@ public class DownloadEntry implements Parcelable {
         dest.writeString(itemEnclosureType);
         dest.writeString(itemEnclosureLength);
         dest.writeString(itemImageUrl);
+        dest.writeString(itemDisplay.getSnippet());
+        dest.writeLong(itemDisplay.getPubDateMillis());
+        dest.writeString(itemDisplay.getDisplayPubDate());
+        dest.writeLong(itemDisplay.getDurationMillis());
+        dest.writeString(itemDisplay.getDisplayDuration());
     }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.data;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.offline.DownloadManager.TaskState;
+
+/**
+ * A snapshot of the download of one episode, as shown by the screens which observe
+ * {@link CandyPodRepository#getDownloadProgress(String)}.
+ */
+public class DownloadProgress {
+
+    /** The enclosure URL of the episode */
+    private final String mEnclosureUrl;
+    /** The state of the task, one of the TaskState.STATE_* constants */
+    private final int mState;
+    /** True if the episode is being removed rather than downloaded */
+    private final boolean mRemoveAction;
+    /** The number of bytes downloaded so far */
+    private final long mDownloadedBytes;
+    /** The downloaded percentage, or C.PERCENTAGE_UNSET if the length is not known yet */
+    private final float mPercentage;
+    /** The smoothed download speed in bytes per second, or 0 if not downloading */
+    private final long mBytesPerSecond;
+    /** The estimated time left in milliseconds, or C.TIME_UNSET if it cannot be estimated */
+    private final long mEtaMillis;
+
+    public DownloadProgress(String enclosureUrl, int state, boolean removeAction,
+                            long downloadedBytes, float percentage, long bytesPerSecond,
+                            long etaMillis) {
+        mEnclosureUrl = enclosureUrl;
+        mState = state;
+        mRemoveAction = removeAction;
+        mDownloadedBytes = downloadedBytes;
+        mPercentage = percentage;
+        mBytesPerSecond = bytesPerSecond;
+        mEtaMillis = etaMillis;
+    }
+
+    /**
+     * Creates a DownloadProgress from the state of a task of the DownloadManager.
+     * @param taskState The state of the task
+     * @param bytesPerSecond The download speed measured by the caller
+     */
+    static DownloadProgress from(TaskState taskState, long bytesPerSecond) {
+        long downloadedBytes = Math.max(0, taskState.downloadedBytes);
+        float percentage = taskState.downloadPercentage;
+        long etaMillis = C.TIME_UNSET;
+        if (taskState.state == TaskState.STATE_STARTED && percentage > 0 && bytesPerSecond > 0) {
+            // The DownloadManager reports no total length, so it is derived from the percentage
+            long totalBytes = (long) (downloadedBytes * 100 / percentage);
+            etaMillis = Math.max(0, totalBytes - downloadedBytes) * 1000 / bytesPerSecond;
+        }
+        return new DownloadProgress(taskState.action.uri.toString(), taskState.state,
+                taskState.action.isRemoveAction, downloadedBytes, percentage,
+                taskState.state == TaskState.STATE_STARTED ? bytesPerSecond : 0, etaMillis);
+    }
+
+    /**
+     * Returns true if the given progress shows the same as this progress, in which case the
+     * observers are not notified again.
+     */
+    boolean hasSameProgress(DownloadProgress other) {
+        return other != null
+                && mState == other.mState
+                && mRemoveAction == other.mRemoveAction
+                && mDownloadedBytes == other.mDownloadedBytes
+                && mPercentage == other.mPercentage
+                && mBytesPerSecond == other.mBytesPerSecond
+                && mEtaMillis == other.mEtaMillis;
+    }
+
+    public String getEnclosureUrl() {
+        return mEnclosureUrl;
+    }
+
+    public int getState() {
+        return mState;
+    }
+
+    public boolean isRemoveAction() {
+        return mRemoveAction;
+    }
+
+    public long getDownloadedBytes() {
+        return mDownloadedBytes;
+    }
+
+    public float getPercentage() {
+        return mPercentage;
+    }
+
+    public long getBytesPerSecond() {
+        return mBytesPerSecond;
+    }
+
+    public long getEtaMillis() {
+        return mEtaMillis;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.MainThread;
+import androidx.lifecycle.LiveData;
+
+import com.google.android.exoplayer2.offline.DownloadManager;
+import com.google.android.exoplayer2.offline.DownloadManager.TaskState;
+import com.soojeongshin.candypod.utilities.DownloadUtil;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static com.soojeongshin.candypod.utilities.Constants.DOWNLOAD_PROGRESS_UPDATE_INTERVAL_MILLIS;
+
+/**
+ * Provides the download progress of each episode as {@link LiveData}, keyed by enclosure URL.
+ * <p>
+ * A single listener on the shared DownloadManager serves all the streams. State changes are
+ * delivered right away, while the progress of the running downloads is read once per interval
+ * for all of them, so a list can show the progress of every row without each row registering
+ * a listener or polling the DownloadManager. The updates stop when no download is running.
+ * <p>
+ * The final state of a task (completed, failed or canceled) is only delivered to the active
+ * observers, after which the stream is cleared, so that a screen which starts observing later
+ * does not take an old result for a new one.
+ * <p>
+ * The streams are held weakly, so that the stream of an episode is released once no screen or
+ * ViewModel holds it, instead of keeping one stream for every episode ever shown.
+ * All methods must be called on the main thread, which is where the DownloadManager calls its
+ * listeners.
+ */
+public class DownloadProgressTracker implements DownloadManager.Listener {
+
+    /** The weight of the latest measurement in the smoothed download speed */
+    private static final float SPEED_SMOOTHING_FACTOR = 0.3f;
+
+    // For Singleton instantiation
+    private static final Object LOCK = new Object();
+    private static DownloadProgressTracker sInstance;
+
+    private final Context mContext;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    /** The streams which were requested and are still in use, by enclosure URL */
+    private final Map<String, WeakReference<ProgressLiveData>> mProgressByUrl = new HashMap<>();
+    /** Null until the first stream is requested, so the DownloadManager is created lazily */
+    private DownloadManager mDownloadManager;
+    private boolean mUpdateScheduled;
+
+    private final Runnable mUpdateTask = new Runnable() {
+        @Override
+        public void run() {
+            mUpdateScheduled = false;
+            updateProgress();
+        }
+    };
+
+    private DownloadProgressTracker(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    public static DownloadProgressTracker getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (LOCK) {
+                if (sInstance == null) {
+                    sInstance = new DownloadProgressTracker(context);
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the download progress of the episode. The value is null while the episode is not
+     * queued for download or removal.
+     * @param enclosureUrl The enclosure URL of the episode
+     */
+    @MainThread
+    public LiveData<DownloadProgress> getProgress(String enclosureUrl) {
+        if (mDownloadManager == null) {
+            mDownloadManager = DownloadUtil.getDownloadManager(mContext);
+            mDownloadManager.addListener(this);
+        }
+        ProgressLiveData progress = findProgress(enclosureUrl);
+        if (progress == null) {
+            removeReleasedProgress();
+            progress = new ProgressLiveData();
+            mProgressByUrl.put(enclosureUrl, new WeakReference<>(progress));
+        }
+        return progress;
+    }
+
+    /**
+     * Returns the stream of the episode, or null if it was not requested or has been released.
+     */
+    private ProgressLiveData findProgress(String enclosureUrl) {
+        WeakReference<ProgressLiveData> reference = mProgressByUrl.get(enclosureUrl);
+        return reference != null ? reference.get() : null;
+    }
+
+    /**
+     * Removes the entries of the streams which have been released.
+     */
+    private void removeReleasedProgress() {
+        Iterator<WeakReference<ProgressLiveData>> iterator = mProgressByUrl.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().get() == null) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public void onInitialized(DownloadManager downloadManager) {
+        // The downloads restored from the action file may be running
+        scheduleUpdate();
+    }
+
+    @Override
+    public void onTaskStateChanged(DownloadManager downloadManager, TaskState taskState) {
+        ProgressLiveData progress = findProgress(taskState.action.uri.toString());
+        if (progress != null) {
+            progress.update(taskState, SystemClock.elapsedRealtime());
+        }
+        scheduleUpdate();
+    }
+
+    @Override
+    public void onIdle(DownloadManager downloadManager) {
+        // The scheduled update stops once it finds no running download
+    }
+
+    private void scheduleUpdate() {
+        if (!mUpdateScheduled) {
+            mUpdateScheduled = true;
+            mHandler.postDelayed(mUpdateTask, DOWNLOAD_PROGRESS_UPDATE_INTERVAL_MILLIS);
+        }
+    }
+
+    /**
+     * Reads the state of all tasks once and updates the streams which are observed.
+     */
+    private void updateProgress() {
+        boolean running = false;
+        long nowMillis = SystemClock.elapsedRealtime();
+        for (TaskState taskState : mDownloadManager.getAllTaskStates()) {
+            if (taskState.state == TaskState.STATE_STARTED) {
+                running = true;
+            }
+            ProgressLiveData progress = findProgress(taskState.action.uri.toString());
+            if (progress != null && progress.hasActiveObservers() && !isFinished(taskState)) {
+                progress.update(taskState, nowMillis);
+            }
+        }
+        if (running) {
+            scheduleUpdate();
+        }
+    }
+
+    private static boolean isFinished(TaskState taskState) {
+        return taskState.state == TaskState.STATE_COMPLETED
+                || taskState.state == TaskState.STATE_FAILED
+                || taskState.state == TaskState.STATE_CANCELED;
+    }
+
+    /**
+     * The stream of one episode, which measures the download speed between its updates.
+     */
+    private class ProgressLiveData extends LiveData<DownloadProgress> {
+
+        private long mLastBytes;
+        private long mLastMillis;
+        private float mBytesPerSecond;
+
+        @Override
+        protected void onActive() {
+            // Catch up with the progress made while the stream was not observed
+            scheduleUpdate();
+        }
+
+        void update(TaskState taskState, long nowMillis) {
+            long downloadedBytes = Math.max(0, taskState.downloadedBytes);
+            if (taskState.state != TaskState.STATE_STARTED) {
+                mBytesPerSecond = 0;
+                mLastMillis = 0;
+            } else if (mLastMillis == 0 || downloadedBytes < mLastBytes) {
+                // The first measurement, or the download started over
+                mLastMillis = nowMillis;
+            } else if (nowMillis - mLastMillis >= DOWNLOAD_PROGRESS_UPDATE_INTERVAL_MILLIS / 2) {
+                // Measurements closer than that, e.g. a state change right before a scheduled
+                // update, would make the speed jump
+                float bytesPerSecond =
+                        (downloadedBytes - mLastBytes) * 1000f / (nowMillis - mLastMillis);
+                mBytesPerSecond = mBytesPerSecond == 0 ? bytesPerSecond
+                        : mBytesPerSecond
+                        + SPEED_SMOOTHING_FACTOR * (bytesPerSecond - mBytesPerSecond);
+                mLastMillis = nowMillis;
+            } else {
+                return;
+            }
+            mLastBytes = downloadedBytes;
+
+            DownloadProgress progress = DownloadProgress.from(taskState, (long) mBytesPerSecond);
+            if (isFinished(taskState)) {
+                setValue(progress);
+                setValue(null);
+            } else if (!progress.hasSameProgress(getValue())) {
+                setValue(progress);
+            }
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.data;
+
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Embedded;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import com.soojeongshin.candypod.model.rss.Enclosure;
+import com.soojeongshin.candypod.model.rss.EpisodeDisplay;
+import com.soojeongshin.candypod.model.rss.Item;
+import com.soojeongshin.candypod.model.rss.ItemImage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Defines the schema of a table in room for a single episode of a subscribed podcast.
+ * <p>
+ * Episodes are keyed by the podcast ID and the enclosure URL, and are deleted together with
+ * the podcast they belong to. The rows are inserted from the oldest to the newest episode, so
+ * ordering by id descending returns the episodes in the same order as the feed.
+ * <p>
+ * When a feed is refreshed, episodes are matched by GUID or enclosure URL. Episodes which are
+ * no longer in the feed are kept and marked as removed, since many feeds only list the latest
+ * episodes.
+ */
+@Entity(tableName = "episode",
+        foreignKeys = @ForeignKey(entity = PodcastEntry.class,
+                parentColumns = "podcast_id",
+                childColumns = "podcast_id",
+                onDelete = ForeignKey.CASCADE),
+        indices = @Index(value = {"podcast_id", "enclosure_url"}, unique = true))
+public class EpisodeEntry {
+
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+
+    @ColumnInfo(name = "podcast_id")
+    private String podcastId;
+
+    private String title;
+
+    private String description;
+
+    @ColumnInfo(name = "itunes_summary")
+    private String iTunesSummary;
+
+    @ColumnInfo(name = "pub_date")
+    private String pubDate;
+
+    private String duration;
+
+    @ColumnInfo(name = "enclosure_url")
+    private String enclosureUrl;
+
+    @ColumnInfo(name = "enclosure_type")
+    private String enclosureType;
+
+    @ColumnInfo(name = "enclosure_length")
+    private String enclosureLength;
+
+    @ColumnInfo(name = "image_url")
+    private String imageUrl;
+
+    /** The unique identifier of the episode in the feed, may be null */
+    private String guid;
+
+    /** True if the episode is no longer in the feed */
+    @ColumnInfo(defaultValue = "0")
+    private boolean removed;
+
+    /** The fields shown in the episode list, computed when the episode is ingested */
+    @Embedded
+    @NonNull
+    private EpisodeDisplay display;
+
+    /**
+     * Constructor to create EpisodeEntry. Uses ignore annotation to guide Room to use the right
+     * constructor.
+     * @param podcastId The podcast ID
+     * @param title The episode title
+     * @param description The episode description
+     * @param iTunesSummary The iTunes summary of an episode
+     * @param pubDate The pub date of an episode
+     * @param duration The duration of an episode
+     * @param enclosureUrl The enclosure URL of an episode
+     * @param enclosureType The enclosure type of an episode
+     * @param enclosureLength The length of an episode
+     * @param imageUrl The image URL of an episode
+     * @param guid The GUID of an episode
+     * @param display The display fields of an episode
+     */
+    @Ignore
+    public EpisodeEntry(String podcastId, String title, String description, String iTunesSummary,
+                        String pubDate, String duration, String enclosureUrl,
+                        String enclosureType, String enclosureLength, String imageUrl,
+                        String guid, @NonNull EpisodeDisplay display) {
+        this.podcastId = podcastId;
+        this.title = title;
+        this.description = description;
+        this.iTunesSummary = iTunesSummary;
+        this.pubDate = pubDate;
+        this.duration = duration;
+        this.enclosureUrl = enclosureUrl;
+        this.enclosureType = enclosureType;
+        this.enclosureLength = enclosureLength;
+        this.imageUrl = imageUrl;
+        this.guid = guid;
+        this.display = display;
+    }
+
+    /**
+     * Constructor used by Room to create EpisodeEntries.
+     */
+    public EpisodeEntry(int id, String podcastId, String title, String description,
+                        String iTunesSummary, String pubDate, String duration,
+                        String enclosureUrl, String enclosureType, String enclosureLength,
+                        String imageUrl, String guid, boolean removed,
+                        @NonNull EpisodeDisplay display) {
+        this.id = id;
+        this.podcastId = podcastId;
+        this.title = title;
+        this.description = description;
+        this.iTunesSummary = iTunesSummary;
+        this.pubDate = pubDate;
+        this.duration = duration;
+        this.enclosureUrl = enclosureUrl;
+        this.enclosureType = enclosureType;
+        this.enclosureLength = enclosureLength;
+        this.imageUrl = imageUrl;
+        this.guid = guid;
+        this.removed = removed;
+        this.display = display;
+    }
+
+    /**
+     * Creates an EpisodeEntry from the given {@link Item}. Only the first enclosure and the first
+     * episode image are stored, because those are the only ones the app uses.
+     * @param podcastId The podcast ID
+     * @param item Item object which contains an episode data
+     */
+    public static EpisodeEntry fromItem(String podcastId, Item item) {
+        String enclosureUrl = null;
+        String enclosureType = null;
+        String enclosureLength = null;
+        List<Enclosure> enclosures = item.getEnclosures();
+        if (enclosures != null && !enclosures.isEmpty()) {
+            Enclosure enclosure = enclosures.get(0);
+            enclosureUrl = enclosure.getUrl();
+            enclosureType = enclosure.getType();
+            enclosureLength = enclosure.getLength();
+        }
+
+        String imageUrl = null;
+        List<ItemImage> itemImages = item.getItemImages();
+        if (itemImages != null && !itemImages.isEmpty()) {
+            imageUrl = itemImages.get(0).getItemImageHref();
+        }
+
+        // The display fields are computed by the RssFeedParser, but not for items which were
+        // read from the JSON column during a migration
+        EpisodeDisplay display = item.getDisplay();
+        if (display == null) {
+            display = EpisodeDisplay.from(item.getDescription(), item.getPubDate(),
+                    item.getITunesDuration());
+        }
+        return new EpisodeEntry(podcastId, item.getTitle(), item.getDescription(),
+                item.getITunesSummary(), item.getPubDate(), item.getITunesDuration(),
+                enclosureUrl, enclosureType, enclosureLength, imageUrl, item.getGuid(),
+                display);
+    }
+
+    /**
+     * Converts the list of {@link Item}s in feed order (newest first) into the list of
+     * EpisodeEntries in insertion order (oldest first).
+     * @param podcastId The podcast ID
+     * @param items The list of items in the feed
+     */
+    public static List<EpisodeEntry> fromItems(String podcastId, List<Item> items) {
+        if (items == null) {
+            return Collections.emptyList();
+        }
+        List<EpisodeEntry> episodes = new ArrayList<>(items.size());
+        for (int i = items.size() - 1; i >= 0; i--) {
+            episodes.add(fromItem(podcastId, items.get(i)));
+        }
+        return episodes;
+    }
+
+    /**
+     * Returns an {@link Item} which is used to pass the episode to the NowPlayingActivity and
+     * the PodcastService.
+     */
+    public Item toItem() {
+        List<Enclosure> enclosures = null;
+        if (enclosureUrl != null) {
+            enclosures = new ArrayList<>(1);
+            enclosures.add(new Enclosure(enclosureUrl, enclosureType, enclosureLength));
+        }
+        List<ItemImage> itemImages = null;
+        if (imageUrl != null) {
+            itemImages = new ArrayList<>(1);
+            itemImages.add(new ItemImage(imageUrl));
+        }
+        Item item = new Item(title, description, iTunesSummary, pubDate, duration,
+                enclosures, itemImages);
+        item.setGuid(guid);
+        item.setDisplay(display);
+        return item;
+    }
+
+    /**
+     * Returns a copy of the given episode from the feed with the id of the stored episode, so
+     * that it can be used to update the stored row.
+     * @param id The id of the stored episode
+     */
+    EpisodeEntry withId(int id) {
+        return new EpisodeEntry(id, podcastId, title, description, iTunesSummary, pubDate,
+                duration, enclosureUrl, enclosureType, enclosureLength, imageUrl, guid, false,
+                display);
+    }
+
+    /**
+     * Returns a copy of this stored episode which is marked as removed from the feed.
+     */
+    EpisodeEntry asRemoved() {
+        return new EpisodeEntry(id, podcastId, title, description, iTunesSummary, pubDate,
+                duration, enclosureUrl, enclosureType, enclosureLength, imageUrl, guid, true,
+                display);
+    }
+
+    /**
+     * Returns true if the metadata of the given episode is the same as this episode.
+     * The id and the removed flag are not compared, nor are the display fields, which are
+     * derived from the compared fields.
+     */
+    boolean hasSameContent(EpisodeEntry other) {
+        return TextUtils.equals(title, other.title)
+                && TextUtils.equals(description, other.description)
+                && TextUtils.equals(iTunesSummary, other.iTunesSummary)
+                && TextUtils.equals(pubDate, other.pubDate)
+                && TextUtils.equals(duration, other.duration)
+                && TextUtils.equals(enclosureUrl, other.enclosureUrl)
+                && TextUtils.equals(enclosureType, other.enclosureType)
+                && TextUtils.equals(enclosureLength, other.enclosureLength)
+                && TextUtils.equals(imageUrl, other.imageUrl)
+                && TextUtils.equals(guid, other.guid);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getPodcastId() {
+        return podcastId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getITunesSummary() {
+        return iTunesSummary;
+    }
+
+    public String getPubDate() {
+        return pubDate;
+    }
+
+    public String getDuration() {
+        return duration;
+    }
+
+    public String getEnclosureUrl() {
+        return enclosureUrl;
+    }
+
+    public String getEnclosureType() {
+        return enclosureType;
+    }
+
+    public String getEnclosureLength() {
+        return enclosureLength;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public String getGuid() {
+        return guid;
+    }
+
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    @NonNull
+    public EpisodeDisplay getDisplay() {
+        return display;
+    }
+}
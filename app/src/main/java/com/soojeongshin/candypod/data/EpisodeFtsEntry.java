@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.data;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.PrimaryKey;
+
+/**
+ * Defines the full-text search index over the episode table. The index is an external content
+ * FTS4 table, so the text is not stored twice, and Room keeps it in sync with triggers whenever
+ * an episode is inserted, updated or deleted. The rowid is the id of the {@link EpisodeEntry}.
+ */
+@Fts4(contentEntity = EpisodeEntry.class)
+@Entity(tableName = "episode_fts")
+public class EpisodeFtsEntry {
+
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    private int rowid;
+
+    private String title;
+
+    private String description;
+
+    @ColumnInfo(name = "itunes_summary")
+    private String iTunesSummary;
+
+    public EpisodeFtsEntry(int rowid, String title, String description, String iTunesSummary) {
+        this.rowid = rowid;
+        this.title = title;
+        this.description = description;
+        this.iTunesSummary = iTunesSummary;
+    }
+
+    public int getRowid() {
+        return rowid;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getITunesSummary() {
+        return iTunesSummary;
+    }
+}
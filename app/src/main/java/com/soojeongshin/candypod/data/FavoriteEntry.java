@@ -16,11 +16,15 @@
 
 package com.soojeongshin.candypod.data;
 
+import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
+import androidx.room.Embedded;
 import androidx.room.Entity;
 import androidx.room.Ignore;
 import androidx.room.PrimaryKey;
 
+import com.soojeongshin.candypod.model.rss.EpisodeDisplay;
+
 /**
  * Defines the schema of a table in room for a single favorite episode.
  */
@@ -63,6 +67,11 @@ public class FavoriteEntry {
     @ColumnInfo(name = "item_image_url")
     private String itemImageUrl;
 
+    /** The fields shown in the list, computed from the episode when the entry is created */
+    @Embedded(prefix = "item_")
+    @NonNull
+    private EpisodeDisplay itemDisplay;
+
     /**
      * Constructor to create FavoriteEntry. Uses ignore annotation to guide Room to use the right
      * constructor.
@@ -93,6 +102,7 @@ public class FavoriteEntry {
         this.itemEnclosureType = itemEnclosureType;
         this.itemEnclosureLength = itemEnclosureLength;
         this.itemImageUrl = itemImageUrl;
+        this.itemDisplay = EpisodeDisplay.from(itemDescription, itemPubDate, itemDuration);
     }
 
     /**
@@ -101,7 +111,8 @@ public class FavoriteEntry {
     public FavoriteEntry(int id, String podcastId, String title,
                          String artworkImageUrl, String itemTitle, String itemDescription,
                          String itemPubDate, String itemDuration, String itemEnclosureUrl,
-                         String itemEnclosureType, String itemEnclosureLength, String itemImageUrl) {
+                         String itemEnclosureType, String itemEnclosureLength, String itemImageUrl,
+                         @NonNull EpisodeDisplay itemDisplay) {
         this.id = id;
         this.podcastId = podcastId;
         this.title = title;
@@ -114,6 +125,7 @@ public class FavoriteEntry {
         this.itemEnclosureType = itemEnclosureType;
         this.itemEnclosureLength = itemEnclosureLength;
         this.itemImageUrl = itemImageUrl;
+        this.itemDisplay = itemDisplay;
     }
 
     public int getId() {
@@ -163,4 +175,9 @@ public class FavoriteEntry {
     public String getItemImageUrl() {
         return itemImageUrl;
     }
+
+    @NonNull
+    public EpisodeDisplay getItemDisplay() {
+        return itemDisplay;
+    }
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.data;
+
+/**
+ * The outcome of one run of refreshing the feeds of all subscribed podcasts.
+ */
+public class FeedRefreshResult {
+
+    /** The number of subscribed podcasts whose feeds were checked */
+    private final int mFeedCount;
+    /** The number of feeds that had changed since the last refresh */
+    private final int mChangedCount;
+    /** The wall-clock time of the whole run in milliseconds */
+    private final long mElapsedMillis;
+
+    public FeedRefreshResult(int feedCount, int changedCount, long elapsedMillis) {
+        mFeedCount = feedCount;
+        mChangedCount = changedCount;
+        mElapsedMillis = elapsedMillis;
+    }
+
+    public int getFeedCount() {
+        return mFeedCount;
+    }
+
+    public int getChangedCount() {
+        return mChangedCount;
+    }
+
+    public long getElapsedMillis() {
+        return mElapsedMillis;
+    }
+}
@@ -16,8 +16,6 @@
 
 package com.soojeongshin.candypod.data;
 
-import androidx.room.TypeConverter;
-
 import com.soojeongshin.candypod.model.rss.Item;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
@@ -27,9 +25,9 @@ import java.util.Collections;
 import java.util.List;
 
 /**
- * {@link TypeConverter} for string to the list of {@link Item}s
- * <p>
- * This stores the list of items as a string in the database, but returns it as a list of {@link Item}s
+ * Converts the list of {@link Item}s which was stored as a Json string in the podcast table
+ * before the episodes had their own table. Only used by the migration from version 1 to 2, so
+ * it is not a type converter of the database.
  *
  * References: @see "https://stackoverflow.com/questions/44580702/android-room-persistent-library
  * -how-to-insert-class-that-has-a-list-object-fie"
@@ -38,27 +36,18 @@ import java.util.List;
  */
 public class ItemsConverter {
 
-    @TypeConverter
+    private static final Gson GSON = new Gson();
+    private static final Type ITEM_LIST_TYPE = new TypeToken<List<Item>>() {}.getType();
+
+    private ItemsConverter() {
+        // Restrict instantiation
+    }
+
     public static List<Item> toItemList(String itemString) {
         if (itemString == null) {
             return Collections.emptyList();
         }
-        // Create a Gson instance
-        Gson gson = new Gson();
-        Type listType = new TypeToken<List<Item>>() {}.getType();
         // Deserializes the specified Json into the list of items
-        return gson.fromJson(itemString, listType);
-    }
-
-    @TypeConverter
-    public static String toItemString(List<Item> itemList) {
-        if (itemList == null) {
-            return null;
-        }
-        // Create a Gson instance
-        Gson gson = new Gson();
-        Type listType = new TypeToken<List<Item>>() {}.getType();
-        // Serializes the list of items into its equivalent Json representation
-        return gson.toJson(itemList, listType);
+        return GSON.fromJson(itemString, ITEM_LIST_TYPE);
     }
 }
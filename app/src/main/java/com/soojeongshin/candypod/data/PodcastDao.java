@@ -17,30 +17,304 @@
 package com.soojeongshin.candypod.data;
 
 import androidx.lifecycle.LiveData;
+import androidx.paging.DataSource;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
+import androidx.room.Update;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * {@link Dao} which provides an api for all data operations with the {@link CandyPodDatabase}
  */
 @Dao
-public interface PodcastDao {
+public abstract class PodcastDao {
 
     @Query("SELECT * FROM podcast")
-    LiveData<List<PodcastEntry>> loadPodcasts();
+    public abstract LiveData<List<PodcastEntry>> loadPodcasts();
 
     @Query("SELECT * FROM podcast WHERE podcast_id = :podcastId")
-    LiveData<PodcastEntry> loadPodcastByPodcastId(String podcastId);
+    public abstract LiveData<PodcastEntry> loadPodcastByPodcastId(String podcastId);
 
-    @Insert
-    void insertPodcast(PodcastEntry podcastEntry);
+    /**
+     * Selects all podcasts. Used by the feed refresh on a background thread.
+     */
+    @Query("SELECT * FROM podcast")
+    public abstract List<PodcastEntry> syncLoadPodcasts();
+
+    /**
+     * Selects the podcast by podcast ID. Used by the feed refresh on a background thread.
+     * @param podcastId The podcast ID
+     */
+    @Query("SELECT * FROM podcast WHERE podcast_id = :podcastId")
+    public abstract PodcastEntry syncLoadPodcastByPodcastId(String podcastId);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    public abstract void insertPodcast(PodcastEntry podcastEntry);
+
+    /**
+     * Updates the feed URL and the validators of the last feed response.
+     * @param podcastId The podcast ID
+     * @param feedUrl The feed URL
+     * @param etag The ETag response header, may be null
+     * @param lastModified The Last-Modified response header, may be null
+     */
+    @Query("UPDATE podcast SET feed_url = :feedUrl, etag = :etag, last_modified = :lastModified "
+            + "WHERE podcast_id = :podcastId")
+    public abstract void updateFeedValidators(String podcastId, String feedUrl, String etag,
+                                              String lastModified);
 
+    /**
+     * Deletes a {@link PodcastEntry} from the podcast table. The episodes of the podcast are
+     * deleted by the foreign key.
+     */
     @Delete
-    void deletePodcast(PodcastEntry podcastEntry);
+    public abstract void deletePodcast(PodcastEntry podcastEntry);
+
+    /**
+     * Inserts a {@link PodcastEntry} and its episodes in a single transaction.
+     * @param podcastEntry The podcast the user subscribed
+     * @param episodes The episodes of the podcast, see {@link EpisodeEntry#fromItems}
+     */
+    @Transaction
+    public void insertPodcastWithEpisodes(PodcastEntry podcastEntry, List<EpisodeEntry> episodes) {
+        insertPodcast(podcastEntry);
+        insertEpisodes(episodes);
+    }
+
+    /**
+     * Merges the episodes of a refreshed feed and updates the validators of the feed in
+     * a single transaction.
+     * @return The number of episode rows inserted or updated, see {@link #mergeEpisodes}
+     */
+    @Transaction
+    public int updateFeed(String podcastId, String feedUrl, String etag, String lastModified,
+                          List<EpisodeEntry> episodes) {
+        int changedCount = mergeEpisodes(podcastId, episodes);
+        updateFeedValidators(podcastId, feedUrl, etag, lastModified);
+        return changedCount;
+    }
+
+
+    // EpisodeEntry
+
+    /**
+     * Selects the episodes of the podcast in feed order, the newest episode first. Episodes
+     * which were removed from the feed are skipped. The episodes are loaded page by page, so
+     * only the rows close to the visible ones are read.
+     * @param podcastId The podcast ID
+     */
+    @Query("SELECT * FROM episode WHERE podcast_id = :podcastId AND removed = 0 "
+            + "ORDER BY id DESC")
+    public abstract DataSource.Factory<Integer, EpisodeEntry> loadPagedEpisodesByPodcastId(
+            String podcastId);
+
+    /**
+     * Inserts the list of {@link EpisodeEntry}s into the episode table. Episodes which already
+     * exist for the podcast are ignored.
+     * @param episodes The episodes of the podcast
+     * @return The row ID of each episode, or -1 if the episode was ignored
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    public abstract List<Long> insertEpisodes(List<EpisodeEntry> episodes);
+
+    /**
+     * Selects all episodes of the podcast. Used to merge a refreshed feed on a background thread.
+     * @param podcastId The podcast ID
+     */
+    @Query("SELECT * FROM episode WHERE podcast_id = :podcastId")
+    public abstract List<EpisodeEntry> syncLoadEpisodesByPodcastId(String podcastId);
+
+    /**
+     * Selects the episodes listed after the episode with the given enclosure URL, in the order
+     * of the episode list, i.e. the older episodes. Episodes which were removed from the feed,
+     * or have no enclosure to play, are skipped. Used to build the playback queue on a
+     * background thread.
+     * @param podcastId The podcast ID
+     * @param enclosureUrl The enclosure URL of the current episode
+     * @param limit The maximum number of episodes
+     */
+    @Query("SELECT * FROM episode WHERE podcast_id = :podcastId AND removed = 0 "
+            + "AND enclosure_url IS NOT NULL AND id < "
+            + "(SELECT id FROM episode WHERE podcast_id = :podcastId "
+            + "AND enclosure_url = :enclosureUrl) "
+            + "ORDER BY id DESC LIMIT :limit")
+    public abstract List<EpisodeEntry> syncLoadEpisodesAfter(String podcastId,
+                                                             String enclosureUrl, int limit);
+
+    /**
+     * Selects the latest episodes of the podcast which are newer than the given episode and not
+     * downloaded yet, the newest first. Episodes which were removed from the feed, or have no
+     * enclosure, are skipped. Used to evaluate the auto-download rule of the podcast on a
+     * background thread.
+     * @param podcastId The podcast ID
+     * @param afterId The ID of the newest episode which the rule has considered
+     * @param limit The number of the latest episodes to consider
+     */
+    @Query("SELECT * FROM episode WHERE id IN "
+            + "(SELECT id FROM episode WHERE podcast_id = :podcastId AND removed = 0 "
+            + "AND enclosure_url IS NOT NULL ORDER BY id DESC LIMIT :limit) "
+            + "AND id > :afterId "
+            + "AND enclosure_url NOT IN (SELECT item_enclosure_url FROM downloaded_episodes "
+            + "WHERE item_enclosure_url IS NOT NULL) "
+            + "ORDER BY id DESC")
+    public abstract List<EpisodeEntry> syncLoadLatestEpisodesNotDownloaded(String podcastId,
+                                                                           int afterId,
+                                                                           int limit);
+
+    /**
+     * Selects the ID of the newest episode of the podcast which the auto-download rule can
+     * download, or 0 if there is none. Used on a background thread.
+     * @param podcastId The podcast ID
+     */
+    @Query("SELECT IFNULL(MAX(id), 0) FROM episode WHERE podcast_id = :podcastId "
+            + "AND removed = 0 AND enclosure_url IS NOT NULL")
+    public abstract int syncLoadLatestEpisodeId(String podcastId);
+
+    /**
+     * Selects the episodes with the given enclosure URLs. Used to find which podcasts the cached
+     * episodes belong to on a background thread.
+     * @param enclosureUrls The enclosure URLs, at most STORAGE_USAGE_QUERY_BATCH_SIZE
+     */
+    @Query("SELECT * FROM episode WHERE enclosure_url IN (:enclosureUrls)")
+    public abstract List<EpisodeEntry> syncLoadEpisodesByEnclosureUrls(List<String> enclosureUrls);
+
+    /**
+     * Updates the list of {@link EpisodeEntry}s. An update which would make the enclosure URL
+     * collide with another episode of the podcast is ignored.
+     * @param episodes The episodes to update
+     */
+    @Update(onConflict = OnConflictStrategy.IGNORE)
+    public abstract int updateEpisodes(List<EpisodeEntry> episodes);
+
+    /**
+     * Merges the episodes of a refreshed feed with the stored episodes of the podcast.
+     * <p>
+     * Each episode in the feed is matched to a stored episode by its GUID, or by its enclosure
+     * URL if the feed has no GUIDs. New episodes are inserted, and matched episodes are only
+     * updated when their metadata changed, so unchanged rows are not written again. Stored
+     * episodes which are no longer in the feed are marked as removed rather than deleted, since
+     * many feeds only list the latest episodes.
+     * @param podcastId The podcast ID
+     * @param episodes The episodes of the feed in insertion order, see
+     *                 {@link EpisodeEntry#fromItems}
+     * @return The number of episode rows inserted or updated
+     */
+    @Transaction
+    public int mergeEpisodes(String podcastId, List<EpisodeEntry> episodes) {
+        List<EpisodeEntry> storedEpisodes = syncLoadEpisodesByPodcastId(podcastId);
+        Map<String, EpisodeEntry> storedByGuid = new HashMap<>();
+        Map<String, EpisodeEntry> storedByEnclosureUrl = new HashMap<>();
+        for (EpisodeEntry stored : storedEpisodes) {
+            if (stored.getGuid() != null) {
+                storedByGuid.put(stored.getGuid(), stored);
+            }
+            if (stored.getEnclosureUrl() != null) {
+                storedByEnclosureUrl.put(stored.getEnclosureUrl(), stored);
+            }
+        }
+
+        List<EpisodeEntry> inserts = new ArrayList<>();
+        List<EpisodeEntry> updates = new ArrayList<>();
+        Set<Integer> matchedIds = new HashSet<>();
+        for (EpisodeEntry episode : episodes) {
+            EpisodeEntry stored = null;
+            if (episode.getGuid() != null) {
+                stored = storedByGuid.get(episode.getGuid());
+            }
+            if (stored == null && episode.getEnclosureUrl() != null) {
+                stored = storedByEnclosureUrl.get(episode.getEnclosureUrl());
+            }
+
+            if (stored == null) {
+                inserts.add(episode);
+            } else if (matchedIds.add(stored.getId())
+                    && (stored.isRemoved() || !stored.hasSameContent(episode))) {
+                updates.add(episode.withId(stored.getId()));
+            }
+        }
+
+        for (EpisodeEntry stored : storedEpisodes) {
+            if (!stored.isRemoved() && !matchedIds.contains(stored.getId())) {
+                updates.add(stored.asRemoved());
+            }
+        }
+
+        int insertedCount = 0;
+        if (!inserts.isEmpty()) {
+            // Episodes which collide with a stored episode, e.g. a new GUID with a known
+            // enclosure URL, are ignored and not counted
+            for (long rowId : insertEpisodes(inserts)) {
+                if (rowId != -1) {
+                    insertedCount++;
+                }
+            }
+        }
+        int updatedCount = updates.isEmpty() ? 0 : updateEpisodes(updates);
+        return insertedCount + updatedCount;
+    }
+
+    /**
+     * Searches the episodes of all subscribed podcasts with the full-text search indices.
+     * Episodes whose title matches come first, then episodes of podcasts whose title matches,
+     * then episodes whose description or summary matches. Within each group, the newest
+     * episodes come first. Episodes which were removed from the feed are skipped. The results
+     * are loaded page by page.
+     * @param query The FTS query matched against all indexed episode columns and the podcast
+     *              title, e.g. "word1* word2*"
+     * @param titleQuery The same query restricted to the episode title, e.g.
+     *                   "title:word1* title:word2*"
+     */
+    @Query("SELECT episode.* FROM episode "
+            + "JOIN (SELECT docid, 0 AS rank FROM episode_fts "
+            + "WHERE episode_fts MATCH :titleQuery "
+            + "UNION ALL "
+            + "SELECT episode.id AS docid, 1 AS rank FROM podcast_fts "
+            + "JOIN podcast ON podcast.id = podcast_fts.docid "
+            + "JOIN episode ON episode.podcast_id = podcast.podcast_id "
+            + "WHERE podcast_fts MATCH :query "
+            + "UNION ALL "
+            + "SELECT docid, 2 AS rank FROM episode_fts "
+            + "WHERE episode_fts MATCH :query) AS matches "
+            + "ON episode.id = matches.docid "
+            + "WHERE episode.removed = 0 "
+            + "GROUP BY episode.id "
+            + "ORDER BY MIN(matches.rank), episode.id DESC")
+    public abstract DataSource.Factory<Integer, EpisodeEntry> searchEpisodes(String query,
+                                                                             String titleQuery);
+
+    // TopChartEntry
+
+    /**
+     * Selects the cached top podcasts chart of the country.
+     * @param country The two-letter country code
+     */
+    @Query("SELECT * FROM top_chart WHERE country = :country")
+    public abstract LiveData<TopChartEntry> loadTopChartByCountry(String country);
+
+    /**
+     * Selects the cached top podcasts chart of the country. Used to check the TTL on a
+     * background thread.
+     * @param country The two-letter country code
+     */
+    @Query("SELECT * FROM top_chart WHERE country = :country")
+    public abstract TopChartEntry syncLoadTopChartByCountry(String country);
+
+    /**
+     * Inserts a {@link TopChartEntry}, replacing the cached chart of the same country.
+     * @param topChartEntry The top podcasts chart fetched from the network
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void insertTopChart(TopChartEntry topChartEntry);
 
 
     // FavoriteEntry
@@ -49,28 +323,28 @@ public interface PodcastDao {
      * Selects all favorite episodes.
      */
     @Query("SELECT * FROM favorite_episodes")
-    LiveData<List<FavoriteEntry>> loadFavorites();
+    public abstract LiveData<List<FavoriteEntry>> loadFavorites();
 
     /**
      * Selects episode where the value in column item_enclosure_url is the given enclosure URL.
      * @param url The stream URL for the episode audio file
      */
     @Query("SELECT * FROM favorite_episodes WHERE item_enclosure_url = :url")
-    LiveData<FavoriteEntry> loadFavoriteEpisodeByUrl(String url);
+    public abstract LiveData<FavoriteEntry> loadFavoriteEpisodeByUrl(String url);
 
     /**
      * Inserts a {@link FavoriteEntry} into the favorite_episodes table.
      * @param favoriteEntry The podcast episode the user wants to add into the favorites.
      */
     @Insert
-    void insertFavoriteEpisode(FavoriteEntry favoriteEntry);
+    public abstract void insertFavoriteEpisode(FavoriteEntry favoriteEntry);
 
     /**
      * Deletes a {@link FavoriteEntry} from the favorite_episodes table.
      * @param favoriteEntry The podcast episode the user wants to delete from the favorites
      */
     @Delete
-    void deleteFavoriteEpisode(FavoriteEntry favoriteEntry);
+    public abstract void deleteFavoriteEpisode(FavoriteEntry favoriteEntry);
 
 
     // DownloadEntry
@@ -79,28 +353,28 @@ public interface PodcastDao {
      * Selects all downloaded episodes.
      */
     @Query("SELECT * FROM downloaded_episodes")
-    LiveData<List<DownloadEntry>> loadDownloads();
+    public abstract LiveData<List<DownloadEntry>> loadDownloads();
 
     /**
      * Selects downloaded episode where the value in item_enclosure_url is the given enclosure URL.
      * @param enclosureUrl The stream URL for the episode audio file
      */
     @Query("SELECT * FROM downloaded_episodes WHERE item_enclosure_url = :enclosureUrl")
-    LiveData<DownloadEntry> loadDownloadedEpisodeByEnclosureUrl(String enclosureUrl);
+    public abstract LiveData<DownloadEntry> loadDownloadedEpisodeByEnclosureUrl(String enclosureUrl);
 
     /**
      * Inserts a {@link DownloadEntry} into the downloaded_episodes table.
      * @param downloadEntry Podcast episode to download
      */
     @Insert
-    void insertDownloadedEpisode(DownloadEntry downloadEntry);
+    public abstract void insertDownloadedEpisode(DownloadEntry downloadEntry);
 
     /**
      * Deletes a {@link DownloadEntry} from the downloaded_episode table.
      * @param downloadEntry Downloaded episode the user wants to delete
      */
     @Delete
-    void deleteDownloadedEpisode(DownloadEntry downloadEntry);
+    public abstract void deleteDownloadedEpisode(DownloadEntry downloadEntry);
 
     /**
      * Selects downloaded episode where the value in item_enclosure_url is the given enclosure URL.
@@ -108,5 +382,78 @@ public interface PodcastDao {
      * @param url The stream URL for the episode audio file
      */
     @Query("SELECT * FROM downloaded_episodes WHERE item_enclosure_url = :url")
-    DownloadEntry syncLoadDownload(String url);
+    public abstract DownloadEntry syncLoadDownload(String url);
+
+    /**
+     * Inserts the downloaded episodes which are not in the downloaded_episodes table yet, in
+     * a single transaction.
+     * @param downloadEntries The episodes whose download completed
+     */
+    @Transaction
+    public void insertDownloadedEpisodes(List<DownloadEntry> downloadEntries) {
+        for (DownloadEntry downloadEntry : downloadEntries) {
+            if (syncLoadDownload(downloadEntry.getItemEnclosureUrl()) == null) {
+                insertDownloadedEpisode(downloadEntry);
+            }
+        }
+    }
+
+    /**
+     * Selects all downloaded episodes. Used on a background thread.
+     */
+    @Query("SELECT * FROM downloaded_episodes")
+    public abstract List<DownloadEntry> syncLoadDownloads();
+
+    /**
+     * Selects the enclosure URLs of all downloaded episodes, which are the keys of the downloads
+     * in the media cache. Used on a background thread.
+     */
+    @Query("SELECT item_enclosure_url FROM downloaded_episodes")
+    public abstract List<String> syncLoadDownloadedEnclosureUrls();
+
+
+    // AutoDownloadEntry
+
+    /**
+     * Selects the auto-download rule of the podcast.
+     * @param podcastId The podcast ID
+     */
+    @Query("SELECT * FROM auto_download_rules WHERE podcast_id = :podcastId")
+    public abstract LiveData<AutoDownloadEntry> loadAutoDownloadRule(String podcastId);
+
+    /**
+     * Selects the auto-download rule of the podcast on a background thread.
+     * @param podcastId The podcast ID
+     */
+    @Query("SELECT * FROM auto_download_rules WHERE podcast_id = :podcastId")
+    public abstract AutoDownloadEntry syncLoadAutoDownloadRule(String podcastId);
+
+    /**
+     * Selects the auto-download rules of all podcasts. Used on a background thread.
+     */
+    @Query("SELECT * FROM auto_download_rules")
+    public abstract List<AutoDownloadEntry> syncLoadAutoDownloadRules();
+
+    /**
+     * Inserts the auto-download rule of a podcast, replacing the existing rule.
+     * @param autoDownloadEntry The auto-download rule
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void insertAutoDownloadRule(AutoDownloadEntry autoDownloadEntry);
+
+    /**
+     * Records the newest episode which the auto-download rule of the podcast has considered.
+     * @param podcastId The podcast ID
+     * @param lastEpisodeId The ID of the episode
+     */
+    @Query("UPDATE auto_download_rules SET last_episode_id = :lastEpisodeId "
+            + "WHERE podcast_id = :podcastId")
+    public abstract void updateAutoDownloadLastEpisode(String podcastId, int lastEpisodeId);
+
+    /**
+     * Deletes the auto-download rule of the podcast.
+     * @param podcastId The podcast ID
+     */
+    @Query("DELETE FROM auto_download_rules WHERE podcast_id = :podcastId")
+    public abstract void deleteAutoDownloadRule(String podcastId);
 }
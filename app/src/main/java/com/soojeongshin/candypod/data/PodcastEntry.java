@@ -19,15 +19,16 @@ package com.soojeongshin.candypod.data;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
-import androidx.room.TypeConverters;
-
-import com.soojeongshin.candypod.model.rss.Item;
 
 import java.util.Date;
-import java.util.List;
 
-@Entity(tableName = "podcast")
+/**
+ * Defines the schema of a table in room for a subscribed podcast. The episodes of the podcast
+ * are stored in the episode table, see {@link EpisodeEntry}.
+ */
+@Entity(tableName = "podcast", indices = @Index(value = "podcast_id", unique = true))
 public class PodcastEntry {
 
     @PrimaryKey(autoGenerate = true)
@@ -45,11 +46,19 @@ public class PodcastEntry {
     @ColumnInfo(name = "artwork_image_url")
     private String artworkImageUrl;
 
-    @TypeConverters(ItemsConverter.class)
-    private List<Item> items;
-
     private Date date;
 
+    /** The feed URL which has the episode metadata and stream URLs for the audio file */
+    @ColumnInfo(name = "feed_url")
+    private String feedUrl;
+
+    /** The ETag of the last feed response, sent as If-None-Match when refreshing the feed */
+    private String etag;
+
+    /** The Last-Modified of the last feed response, sent as If-Modified-Since */
+    @ColumnInfo(name = "last_modified")
+    private String lastModified;
+
     /**
      * Constructor
      *
@@ -58,31 +67,34 @@ public class PodcastEntry {
      * @param description
      * @param author
      * @param artworkImageUrl
-     * @param items
      * @param date
+     * @param feedUrl
      */
     @Ignore
     public PodcastEntry(String podcastId, String title, String description, String author,
-                        String artworkImageUrl, List<Item> items, Date date) {
+                        String artworkImageUrl, Date date, String feedUrl) {
         this.podcastId = podcastId;
         this.title = title;
         this.description = description;
         this.author = author;
         this.artworkImageUrl = artworkImageUrl;
-        this.items = items;
         this.date = date;
+        this.feedUrl = feedUrl;
     }
 
     public PodcastEntry(int id, String podcastId, String title, String description, String author,
-                        String artworkImageUrl, List<Item> items, Date date) {
+                        String artworkImageUrl, Date date, String feedUrl, String etag,
+                        String lastModified) {
         this.id = id;
         this.podcastId = podcastId;
         this.title = title;
         this.description = description;
         this.author = author;
         this.artworkImageUrl = artworkImageUrl;
-        this.items = items;
         this.date = date;
+        this.feedUrl = feedUrl;
+        this.etag = etag;
+        this.lastModified = lastModified;
     }
 
     public int getId() {
@@ -109,12 +121,19 @@ public class PodcastEntry {
         return artworkImageUrl;
     }
 
-    @TypeConverters(ItemsConverter.class)
-    public List<Item> getItems() {
-        return items;
-    }
-
     public Date getDate() {
         return date;
     }
+
+    public String getFeedUrl() {
+        return feedUrl;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
 }
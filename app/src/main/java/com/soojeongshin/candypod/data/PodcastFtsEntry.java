@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.data;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.PrimaryKey;
+
+/**
+ * Defines the full-text search index over the podcast titles, so that searching for a podcast
+ * title finds its episodes. The rowid is the id of the {@link PodcastEntry}.
+ */
+@Fts4(contentEntity = PodcastEntry.class)
+@Entity(tableName = "podcast_fts")
+public class PodcastFtsEntry {
+
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    private int rowid;
+
+    private String title;
+
+    public PodcastFtsEntry(int rowid, String title) {
+        this.rowid = rowid;
+        this.title = title;
+    }
+
+    public int getRowid() {
+        return rowid;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.data;
+
+import android.os.SystemClock;
+import android.util.LruCache;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import timber.log.Timber;
+
+/**
+ * In-memory LRU cache of API responses, which also coalesces identical requests onto one
+ * in-flight call. Responses missing from memory are fetched through the shared OkHttpClient,
+ * whose HTTP cache keeps them on disk.
+ * <p>
+ * This class must be used on the main thread, which is where Retrofit delivers the callbacks.
+ * @param <T> The type of the response body
+ */
+class ResponseCache<T> {
+
+    /** Creates the network call for the response of a key */
+    interface CallFactory<T> {
+        Call<T> create();
+    }
+
+    /** A cached response and the time when it was fetched */
+    private static class Entry<T> {
+        final T mValue;
+        final long mFetchedAtMillis;
+
+        Entry(T value, long fetchedAtMillis) {
+            mValue = value;
+            mFetchedAtMillis = fetchedAtMillis;
+        }
+    }
+
+    private final String mName;
+    private final long mTtlMillis;
+    private final LruCache<String, Entry<T>> mEntries;
+    /** The LiveData of the calls in flight, shared by all callers of the same key */
+    private final Map<String, MutableLiveData<T>> mInFlight = new HashMap<>();
+
+    private int mHitCount;
+    private int mMissCount;
+    private int mCoalescedCount;
+
+    /**
+     * @param name The name used in the log
+     * @param maxEntries The maximum number of responses kept in memory
+     * @param ttlMillis The time a response is served from memory
+     */
+    ResponseCache(String name, int maxEntries, long ttlMillis) {
+        mName = name;
+        mTtlMillis = ttlMillis;
+        mEntries = new LruCache<>(maxEntries);
+    }
+
+    /**
+     * Returns the response for the key. A fresh cached response is delivered immediately. If
+     * a call for the same key is in flight, its LiveData is returned. Otherwise a new call is
+     * made, and its response is cached when it succeeds.
+     * @param key The key of the request
+     * @param callFactory Creates the call when the response is not cached
+     * @return {@link LiveData} of the response, which is set to null when the call fails
+     */
+    LiveData<T> get(final String key, CallFactory<T> callFactory) {
+        Entry<T> entry = mEntries.get(key);
+        if (entry != null
+                && SystemClock.elapsedRealtime() - entry.mFetchedAtMillis < mTtlMillis) {
+            mHitCount++;
+            MutableLiveData<T> data = new MutableLiveData<>();
+            data.setValue(entry.mValue);
+            return data;
+        }
+
+        MutableLiveData<T> inFlight = mInFlight.get(key);
+        if (inFlight != null) {
+            mCoalescedCount++;
+            return inFlight;
+        }
+
+        mMissCount++;
+        final MutableLiveData<T> data = new MutableLiveData<>();
+        mInFlight.put(key, data);
+        callFactory.create().enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                mInFlight.remove(key);
+                T body = response.body();
+                if (response.isSuccessful() && body != null) {
+                    mEntries.put(key, new Entry<>(body, SystemClock.elapsedRealtime()));
+                }
+                data.setValue(body);
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                mInFlight.remove(key);
+                data.setValue(null);
+                Timber.e("Failed getting " + mName + " data. " + t.getMessage());
+            }
+        });
+        return data;
+    }
+
+    /**
+     * Returns the hit and miss counters of the cache.
+     */
+    CacheStats getStats() {
+        return new CacheStats(mHitCount, mMissCount, mCoalescedCount);
+    }
+}
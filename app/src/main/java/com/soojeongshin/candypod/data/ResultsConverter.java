@@ -0,0 +1,56 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.data;
+
+import androidx.room.TypeConverter;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.soojeongshin.candypod.model.Result;
+
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link TypeConverter} for string to the list of {@link Result}s
+ * <p>
+ * This stores the results of a top podcasts chart as a string in the database, but returns it
+ * as a list of {@link Result}s
+ */
+public class ResultsConverter {
+
+    /** Gson is thread-safe, so a single instance is shared by all conversions */
+    private static final Gson GSON = new Gson();
+    private static final Type RESULT_LIST_TYPE = new TypeToken<List<Result>>() {}.getType();
+
+    @TypeConverter
+    public static List<Result> toResultList(String resultString) {
+        if (resultString == null) {
+            return Collections.emptyList();
+        }
+        return GSON.fromJson(resultString, RESULT_LIST_TYPE);
+    }
+
+    @TypeConverter
+    public static String toResultString(List<Result> resultList) {
+        if (resultList == null) {
+            return null;
+        }
+        return GSON.toJson(resultList, RESULT_LIST_TYPE);
+    }
+}
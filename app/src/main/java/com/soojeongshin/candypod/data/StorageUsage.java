@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.data;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The storage one podcast takes in the media cache, split into the downloaded episodes, which
+ * are kept, and the streamed episodes, which are evicted when the streaming budget is exceeded.
+ */
+public class StorageUsage {
+
+    /** The podcast ID, or null for the cached episodes of podcasts which are not subscribed */
+    private final String mPodcastId;
+    /** The podcast title, or null if unknown */
+    private final String mTitle;
+    /** The number of bytes of the downloaded episodes */
+    private long mDownloadedBytes;
+    /** The number of bytes of the streamed episodes */
+    private long mStreamedBytes;
+
+    public StorageUsage(String podcastId, String title) {
+        mPodcastId = podcastId;
+        mTitle = title;
+    }
+
+    void addDownloadedBytes(long bytes) {
+        mDownloadedBytes += bytes;
+    }
+
+    void addStreamedBytes(long bytes) {
+        mStreamedBytes += bytes;
+    }
+
+    public String getPodcastId() {
+        return mPodcastId;
+    }
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+    public long getDownloadedBytes() {
+        return mDownloadedBytes;
+    }
+
+    public long getStreamedBytes() {
+        return mStreamedBytes;
+    }
+
+    public long getTotalBytes() {
+        return mDownloadedBytes + mStreamedBytes;
+    }
+
+    /**
+     * Returns a plain text report of the storage of each podcast, the largest first, followed by
+     * the total and the streaming budget.
+     * @param usages The storage of each podcast, sorted by the total bytes
+     * @param maxStreamingBytes The maximum number of bytes of the streamed episodes
+     */
+    public static String formatReport(List<StorageUsage> usages, long maxStreamingBytes) {
+        StringBuilder builder = new StringBuilder("Storage by podcast");
+        long downloadedBytes = 0;
+        long streamedBytes = 0;
+        for (StorageUsage usage : usages) {
+            String title = usage.mTitle != null ? usage.mTitle
+                    : usage.mPodcastId != null ? usage.mPodcastId : "Other";
+            builder.append(String.format(Locale.US, "\n%s: %s downloaded, %s streamed", title,
+                    formatBytes(usage.mDownloadedBytes), formatBytes(usage.mStreamedBytes)));
+            downloadedBytes += usage.mDownloadedBytes;
+            streamedBytes += usage.mStreamedBytes;
+        }
+        builder.append(String.format(Locale.US, "\nTotal: %s downloaded, %s of %s streamed",
+                formatBytes(downloadedBytes), formatBytes(streamedBytes),
+                formatBytes(maxStreamingBytes)));
+        return builder.toString();
+    }
+
+    private static String formatBytes(long bytes) {
+        return String.format(Locale.US, "%.1f MB", bytes / (1024f * 1024f));
+    }
+}
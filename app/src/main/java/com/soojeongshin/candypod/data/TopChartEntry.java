@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.data;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import com.soojeongshin.candypod.model.Feed;
+import com.soojeongshin.candypod.model.ITunesResponse;
+import com.soojeongshin.candypod.model.Result;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Defines the schema of a table in room for the cached top podcasts chart of a country.
+ * The chart is shown right away from this table, and refreshed from the network once it is
+ * older than the TTL.
+ */
+@Entity(tableName = "top_chart", indices = @Index(value = "country", unique = true))
+public class TopChartEntry {
+
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+
+    /** The two-letter country code */
+    private String country;
+
+    private String title;
+
+    private List<Result> results;
+
+    /** The time when the chart was fetched from the network */
+    @ColumnInfo(name = "fetched_at")
+    private Date fetchedAt;
+
+    @Ignore
+    public TopChartEntry(String country, String title, List<Result> results, Date fetchedAt) {
+        this.country = country;
+        this.title = title;
+        this.results = results;
+        this.fetchedAt = fetchedAt;
+    }
+
+    public TopChartEntry(int id, String country, String title, List<Result> results,
+                         Date fetchedAt) {
+        this.id = id;
+        this.country = country;
+        this.title = title;
+        this.results = results;
+        this.fetchedAt = fetchedAt;
+    }
+
+    /**
+     * Returns true if the chart was fetched longer ago than the given TTL.
+     * @param ttlMillis The time to live of the cached chart in milliseconds
+     * @param nowMillis The current time in milliseconds
+     */
+    public boolean isExpired(long ttlMillis, long nowMillis) {
+        return fetchedAt == null || nowMillis - fetchedAt.getTime() >= ttlMillis;
+    }
+
+    /**
+     * Returns the chart as the {@link ITunesResponse} which is used by the AddPodcastActivity.
+     */
+    public ITunesResponse toITunesResponse() {
+        Feed feed = new Feed();
+        feed.setTitle(title);
+        feed.setCountry(country);
+        feed.setResults(results);
+        ITunesResponse iTunesResponse = new ITunesResponse();
+        iTunesResponse.setFeed(feed);
+        return iTunesResponse;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    public Date getFetchedAt() {
+        return fetchedAt;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.model.rss;
+
+import androidx.room.ColumnInfo;
+
+import com.soojeongshin.candypod.utilities.DurationParser;
+import com.soojeongshin.candypod.utilities.FormatUtils;
+import com.soojeongshin.candypod.utilities.PubDateParser;
+
+import static com.soojeongshin.candypod.utilities.Constants.SNIPPET_MAX_LENGTH;
+
+/**
+ * The fields of an episode shown in the episode lists. They are computed from the feed values
+ * once, when the episode is ingested, and stored with the episode, so that binding a list item
+ * only reads them and no HTML, date or duration is parsed while scrolling.
+ * <p>
+ * This class is embedded in the episode, favorite and download tables.
+ */
+public class EpisodeDisplay {
+
+    /** The description as plain text, shortened to SNIPPET_MAX_LENGTH characters */
+    private final String snippet;
+
+    /** The publication time in milliseconds since the epoch, or 0 if it is unknown */
+    @ColumnInfo(name = "pub_date_millis", defaultValue = "0")
+    private final long pubDateMillis;
+
+    /** The formatted publication date, or the pub date from the feed if it can't be parsed */
+    @ColumnInfo(name = "display_pub_date")
+    private final String displayPubDate;
+
+    /** The duration in milliseconds, or 0 if it is unknown */
+    @ColumnInfo(name = "duration_millis", defaultValue = "0")
+    private final long durationMillis;
+
+    /** The formatted duration, or the duration from the feed if it can't be parsed */
+    @ColumnInfo(name = "display_duration")
+    private final String displayDuration;
+
+    /**
+     * Constructor used by Room to create EpisodeDisplays.
+     */
+    public EpisodeDisplay(String snippet, long pubDateMillis, String displayPubDate,
+                          long durationMillis, String displayDuration) {
+        this.snippet = snippet;
+        this.pubDateMillis = pubDateMillis;
+        this.displayPubDate = displayPubDate;
+        this.durationMillis = durationMillis;
+        this.displayDuration = displayDuration;
+    }
+
+    /**
+     * Computes the display fields from the values in the feed.
+     * @param description The episode description, which may contain HTML
+     * @param pubDate The pub date of an episode (i.e. Tue, 25 Nov 2018 05:00:00 -0000)
+     * @param duration The iTunes duration of an episode (i.e. 01:02:03, 62:03 or 3723)
+     */
+    public static EpisodeDisplay from(String description, String pubDate, String duration) {
+        String snippet = FormatUtils.toPlainText(description, SNIPPET_MAX_LENGTH);
+
+        long pubDateMillis = PubDateParser.parse(pubDate);
+        String displayPubDate = pubDateMillis == PubDateParser.UNKNOWN
+                ? pubDate : PubDateParser.format(pubDateMillis);
+
+        long durationMillis = DurationParser.parseMillis(duration);
+        String displayDuration = durationMillis == DurationParser.UNKNOWN
+                ? duration : FormatUtils.formatDuration(durationMillis);
+
+        return new EpisodeDisplay(snippet, pubDateMillis, displayPubDate, durationMillis,
+                displayDuration);
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public long getPubDateMillis() {
+        return pubDateMillis;
+    }
+
+    public String getDisplayPubDate() {
+        return displayPubDate;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public String getDisplayDuration() {
+        return displayDuration;
+    }
+}
@@ -54,6 +54,16 @@ public class Item implements Parcelable {
     @ElementList(inline = true, name = "image", required = false)
     private List<ItemImage> mItemImages;
 
+    @Element(name = "guid", required = false)
+    private String mGuid;
+
+    /**
+     * The fields shown in the episode lists and the duration published by the media session.
+     * They are not part of the feed, so they are set where the item is created, off the main
+     * thread, and kept in the Parcel.
+     */
+    private transient EpisodeDisplay mDisplay;
+
     public Item() {
     }
 
@@ -82,6 +92,11 @@ public class Item implements Parcelable {
             mItemImages = new ArrayList<>();
             in.readList(mItemImages, ItemImage.class.getClassLoader());
         }
+        mGuid = in.readString();
+        if (in.readByte() == 0x01) {
+            mDisplay = new EpisodeDisplay(in.readString(), in.readLong(), in.readString(),
+                    in.readLong(), in.readString());
+        }
     }
 
     public static final Creator<Item> CREATOR = new Creator<Item>() {
@@ -152,6 +167,26 @@ public class Item implements Parcelable {
         mItemImages = itemImages;
     }
 
+    public String getGuid() {
+        return mGuid;
+    }
+
+    public void setGuid(String guid) {
+        mGuid = guid;
+    }
+
+    /**
+     * Returns the display fields, which are set by the RssFeedParser on the thread that parses
+     * the feed, or from the stored episode. Null if they were not set.
+     */
+    public EpisodeDisplay getDisplay() {
+        return mDisplay;
+    }
+
+    public void setDisplay(EpisodeDisplay display) {
+        mDisplay = display;
+    }
+
     @Override
     public int describeContents() {
         return 0;
@@ -176,5 +211,16 @@ public class Item implements Parcelable {
             dest.writeByte((byte) (0x01));
             dest.writeList(mItemImages);
         }
+        dest.writeString(mGuid);
+        if (mDisplay == null) {
+            dest.writeByte((byte) (0x00));
+        } else {
+            dest.writeByte((byte) (0x01));
+            dest.writeString(mDisplay.getSnippet());
+            dest.writeLong(mDisplay.getPubDateMillis());
+            dest.writeString(mDisplay.getDisplayPubDate());
+            dest.writeLong(mDisplay.getDurationMillis());
+            dest.writeString(mDisplay.getDisplayDuration());
+        }
     }
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.service;
+
+import android.content.Context;
+
+import com.soojeongshin.candypod.utilities.CandyPodUtils;
+import com.soojeongshin.candypod.utilities.DownloadUtil;
+
+/**
+ * A set of buffer durations for the player. The defaults of DefaultLoadControl are tuned for
+ * video. Podcasts are spoken-word audio with a low bitrate, so a second of audio is enough to
+ * start playback, and minutes of audio take little memory.
+ */
+public final class BufferProfile {
+
+    /** For streaming on a good network: start as soon as possible with a moderate buffer */
+    public static final BufferProfile FAST_START =
+            new BufferProfile("fast start", 15000, 60000, 1000, 3000);
+
+    /** For episodes which are fully cached: the data is read from disk, so keep little of it */
+    public static final BufferProfile LOW_MEMORY =
+            new BufferProfile("low memory", 5000, 15000, 500, 1000);
+
+    /** For streaming on a metered network, which is usually cellular: ride out coverage gaps
+     * with a large buffer, and buffer more before resuming after a rebuffer */
+    public static final BufferProfile FLAKY_NETWORK =
+            new BufferProfile("flaky network", 60000, 180000, 2500, 10000);
+
+    /** All profiles */
+    static final BufferProfile[] PROFILES = {FAST_START, LOW_MEMORY, FLAKY_NETWORK};
+
+    private final String mName;
+    private final int mMinBufferMs;
+    private final int mMaxBufferMs;
+    private final int mBufferForPlaybackMs;
+    private final int mBufferForPlaybackAfterRebufferMs;
+
+    /**
+     * Creates a BufferProfile.
+     * @param name The name shown in the playback metrics
+     * @param minBufferMs The duration the player tries to keep buffered
+     * @param maxBufferMs The maximum duration the player buffers
+     * @param bufferForPlaybackMs The duration which must be buffered to start playback
+     * @param bufferForPlaybackAfterRebufferMs The duration which must be buffered to resume
+     *                                         playback after a rebuffer
+     */
+    private BufferProfile(String name, int minBufferMs, int maxBufferMs,
+                          int bufferForPlaybackMs, int bufferForPlaybackAfterRebufferMs) {
+        mName = name;
+        mMinBufferMs = minBufferMs;
+        mMaxBufferMs = maxBufferMs;
+        mBufferForPlaybackMs = bufferForPlaybackMs;
+        mBufferForPlaybackAfterRebufferMs = bufferForPlaybackAfterRebufferMs;
+    }
+
+    /**
+     * Selects the profile for the episode with the given enclosure URL. An episode which is fully
+     * cached, e.g. downloaded, does not depend on the network. Otherwise the profile depends on
+     * whether the connection is unmetered.
+     * @param context Context used to get the cache and the connectivity
+     * @param url The enclosure URL of the episode
+     */
+    public static BufferProfile select(Context context, String url) {
+        if (DownloadUtil.isFullyCached(context, url)) {
+            return LOW_MEMORY;
+        }
+        return CandyPodUtils.isOnUnmeteredNetwork(context) ? FAST_START : FLAKY_NETWORK;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public int getMinBufferMs() {
+        return mMinBufferMs;
+    }
+
+    public int getMaxBufferMs() {
+        return mMaxBufferMs;
+    }
+
+    public int getBufferForPlaybackMs() {
+        return mBufferForPlaybackMs;
+    }
+
+    public int getBufferForPlaybackAfterRebufferMs() {
+        return mBufferForPlaybackAfterRebufferMs;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.service;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.offline.DownloadAction;
+import com.google.android.exoplayer2.offline.DownloadManager.TaskState;
+import com.soojeongshin.candypod.data.DownloadEntry;
+import com.soojeongshin.candypod.data.PodcastDao;
+import com.soojeongshin.candypod.utilities.SegmentedDownloadAction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import timber.log.Timber;
+
+/**
+ * Inserts the downloaded episodes into the downloads database when their download completes.
+ * <p>
+ * The episode of a task is taken from its download action, which is saved in the action file
+ * together with the download, so every task records its own episode, however many downloads
+ * run at the same time and even if the download was restored after a restart. The episodes
+ * whose download completes while an insert is waiting on the executor are inserted with it in
+ * a single transaction.
+ */
+public class DownloadRecorder {
+
+    private final PodcastDao mPodcastDao;
+    private final Executor mExecutor;
+    /** The episodes whose download completed, which are not inserted yet */
+    private final List<DownloadEntry> mCompletedEntries = new ArrayList<>();
+    private boolean mInsertScheduled;
+
+    /**
+     * Creates a DownloadRecorder.
+     * @param podcastDao The DAO used to insert the downloaded episodes
+     * @param executor The executor the inserts run on, which must not be the main thread
+     */
+    public DownloadRecorder(PodcastDao podcastDao, Executor executor) {
+        mPodcastDao = podcastDao;
+        mExecutor = executor;
+    }
+
+    /**
+     * Records the episode of the task if its download completed.
+     * @param taskState The state of the task
+     * @return True if the episode of the task is going to be inserted
+     */
+    public boolean onTaskStateChanged(TaskState taskState) {
+        if (taskState.action.isRemoveAction || taskState.state != TaskState.STATE_COMPLETED) {
+            return false;
+        }
+        DownloadEntry downloadEntry = getDownloadEntry(taskState.action);
+        if (downloadEntry == null) {
+            // E.g. a progressive download which was saved by an earlier version of the app
+            Timber.w("No download entry for " + taskState.action.uri);
+            return false;
+        }
+        synchronized (mCompletedEntries) {
+            mCompletedEntries.add(downloadEntry);
+            if (mInsertScheduled) {
+                return true;
+            }
+            mInsertScheduled = true;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                insertCompletedEntries();
+            }
+        });
+        return true;
+    }
+
+    private void insertCompletedEntries() {
+        List<DownloadEntry> downloadEntries;
+        synchronized (mCompletedEntries) {
+            downloadEntries = new ArrayList<>(mCompletedEntries);
+            mCompletedEntries.clear();
+            mInsertScheduled = false;
+        }
+        // Episodes which are already in the database are skipped
+        mPodcastDao.insertDownloadedEpisodes(downloadEntries);
+    }
+
+    /**
+     * Returns the episode which is downloaded by the given action, or null if the action does
+     * not carry one.
+     */
+    @Nullable
+    static DownloadEntry getDownloadEntry(DownloadAction action) {
+        if (action instanceof SegmentedDownloadAction) {
+            return ((SegmentedDownloadAction) action).getDownloadEntry();
+        }
+        return null;
+    }
+}
@@ -17,8 +17,8 @@
 package com.soojeongshin.candypod.service;
 
 import android.app.Notification;
+import android.content.Context;
 import android.content.Intent;
-import android.os.Bundle;
 import androidx.annotation.Nullable;
 import android.widget.Toast;
 
@@ -27,6 +27,8 @@ import com.soojeongshin.candypod.R;
 import com.soojeongshin.candypod.data.CandyPodDatabase;
 import com.soojeongshin.candypod.data.DownloadEntry;
 import com.soojeongshin.candypod.utilities.DownloadUtil;
+import com.soojeongshin.candypod.utilities.SegmentedDownloadAction;
+import com.soojeongshin.candypod.utilities.SegmentedDownloader;
 import com.google.android.exoplayer2.offline.DownloadManager;
 import com.google.android.exoplayer2.offline.DownloadManager.TaskState;
 import com.google.android.exoplayer2.offline.DownloadService;
@@ -36,11 +38,19 @@ import com.google.android.exoplayer2.ui.DownloadNotificationUtil;
 import com.google.android.exoplayer2.util.NotificationUtil;
 import com.google.android.exoplayer2.util.Util;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
 import timber.log.Timber;
 
+import static com.soojeongshin.candypod.utilities.Constants.ACTION_DOWNLOAD_EPISODES;
+import static com.soojeongshin.candypod.utilities.Constants.DOWNLOAD_BATCH_SIZE;
 import static com.soojeongshin.candypod.utilities.Constants.DOWNLOAD_CHANNEL_ID;
 import static com.soojeongshin.candypod.utilities.Constants.DOWNLOAD_NOTIFICATION_ID;
-import static com.soojeongshin.candypod.utilities.Constants.EXTRA_DOWNLOAD_ENTRY;
+import static com.soojeongshin.candypod.utilities.Constants.EXTRA_DOWNLOAD_ENTRIES;
 import static com.soojeongshin.candypod.utilities.Constants.JOB_ID;
 
 /**
@@ -49,8 +59,7 @@ import static com.soojeongshin.candypod.utilities.Constants.JOB_ID;
  */
 public class PodcastDownloadService extends DownloadService {
 
-    private DownloadEntry mDownloadEntry;
-    private CandyPodDatabase mDb;
+    private DownloadRecorder mDownloadRecorder;
 
     public PodcastDownloadService() {
         super(
@@ -64,23 +73,69 @@ public class PodcastDownloadService extends DownloadService {
     public void onCreate() {
         super.onCreate();
 
-        // Get the database instance
-        mDb = CandyPodDatabase.getInstance(getApplicationContext());
+        // Records the downloaded episodes in the database
+        mDownloadRecorder = new DownloadRecorder(
+                CandyPodDatabase.getInstance(getApplicationContext()).podcastDao(),
+                AppExecutors.getInstance().diskIO());
+    }
+
+    /**
+     * Starts the service to download the given episodes as one batch. The service is started
+     * in the foreground, so that it can be started from the background, e.g. by a worker.
+     * @param context Context used to start the service
+     * @param downloadEntries The episodes to download
+     */
+    public static void startWithDownloads(Context context, List<DownloadEntry> downloadEntries) {
+        // Split the batch, so that each intent stays small
+        for (int start = 0; start < downloadEntries.size(); start += DOWNLOAD_BATCH_SIZE) {
+            ArrayList<DownloadEntry> batch = new ArrayList<>(downloadEntries.subList(start,
+                    Math.min(start + DOWNLOAD_BATCH_SIZE, downloadEntries.size())));
+            Intent intent = new Intent(context, PodcastDownloadService.class)
+                    .setAction(ACTION_DOWNLOAD_EPISODES)
+                    .putParcelableArrayListExtra(EXTRA_DOWNLOAD_ENTRIES, batch)
+                    .putExtra(KEY_FOREGROUND, true);
+            Util.startForegroundService(context, intent);
+        }
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         if (intent == null) {
             Timber.e("intent in onStartCommand is null");
-        } else {
-            Bundle b = intent.getBundleExtra(EXTRA_DOWNLOAD_ENTRY);
-            if (b != null) {
-                mDownloadEntry = b.getParcelable(EXTRA_DOWNLOAD_ENTRY);
+        } else if (ACTION_DOWNLOAD_EPISODES.equals(intent.getAction())) {
+            List<DownloadEntry> downloadEntries =
+                    intent.getParcelableArrayListExtra(EXTRA_DOWNLOAD_ENTRIES);
+            if (downloadEntries != null) {
+                addDownloads(downloadEntries);
             }
+            // The DownloadService does not know the action, so let it only initialize
+            intent.setAction(ACTION_INIT);
         }
         return super.onStartCommand(intent, flags, startId);
     }
 
+    /**
+     * Adds a download action for each of the episodes, except the episodes which are already
+     * being downloaded.
+     */
+    private void addDownloads(List<DownloadEntry> downloadEntries) {
+        DownloadManager downloadManager = getDownloadManager();
+        Set<String> activeUrls = new HashSet<>();
+        for (TaskState taskState : downloadManager.getAllTaskStates()) {
+            if (!taskState.action.isRemoveAction) {
+                activeUrls.add(taskState.action.uri.toString());
+            }
+        }
+        for (DownloadEntry downloadEntry : downloadEntries) {
+            String url = downloadEntry.getItemEnclosureUrl();
+            if (url == null || !activeUrls.add(url)) {
+                continue;
+            }
+            downloadManager.handleAction(
+                    SegmentedDownloadAction.createDownloadAction(downloadEntry));
+        }
+    }
+
     /**
      * Returns a DownloadManager to be used to downloaded content.
      */
@@ -97,7 +152,8 @@ public class PodcastDownloadService extends DownloadService {
 
     /**
      * Returns a progress notification to be displayed when the download service is running
-     * in the foreground.
+     * in the foreground. The progress bar shows the aggregate progress of all downloads, and
+     * the message shows the progress of each segment of the running downloads.
      */
     @Override
     protected Notification getForegroundNotification(TaskState[] taskStates) {
@@ -106,10 +162,41 @@ public class PodcastDownloadService extends DownloadService {
                 R.drawable.ic_menu_download,
                 DOWNLOAD_CHANNEL_ID,
                 null,
-                null,
+                getSegmentsMessage(taskStates),
                 taskStates);
     }
 
+    /**
+     * Returns the progress of each segment of the running downloads, e.g. "Segments 100% 52%
+     * 48% 61%", or null if no download is split into segments.
+     */
+    @Nullable
+    private String getSegmentsMessage(TaskState[] taskStates) {
+        StringBuilder segments = new StringBuilder();
+        for (TaskState taskState : taskStates) {
+            if (taskState.action.isRemoveAction || taskState.state != TaskState.STATE_STARTED) {
+                continue;
+            }
+            float[] percentages = SegmentedDownloader.getSegmentPercentages(
+                    taskState.action.uri.toString());
+            if (percentages == null || percentages.length < 2) {
+                continue;
+            }
+            if (segments.length() > 0) {
+                segments.append(" | ");
+            }
+            for (int i = 0; i < percentages.length; i++) {
+                if (i > 0) {
+                    segments.append(' ');
+                }
+                segments.append(String.format(Locale.getDefault(), "%.0f%%",
+                        Math.max(0f, percentages[i])));
+            }
+        }
+        return segments.length() == 0 ? null
+                : getString(R.string.download_segments_progress, segments);
+    }
+
     /**
      * Called when the state of a task changes.
      * Reference: @see "https://github.com/google/ExoPlayer/tree/release-v2/demos/main"
@@ -131,8 +218,12 @@ public class PodcastDownloadService extends DownloadService {
                             null,
                             Util.fromUtf8Bytes(taskState.action.data));
 
-            // After the download completed, inserts a downloaded episode into the database
-            insertDownloadedEpisode();
+            // After the download completed, inserts the episode of the task into the database
+            if (mDownloadRecorder.onTaskStateChanged(taskState)) {
+                // Show a toast message that indicates download completed
+                Toast.makeText(this, getString(R.string.toast_download_completed),
+                        Toast.LENGTH_SHORT).show();
+            }
 
         } else if (taskState.state == TaskState.STATE_FAILED) {
             // A notification for a failed download
@@ -147,27 +238,4 @@ public class PodcastDownloadService extends DownloadService {
         int notificationId = DOWNLOAD_NOTIFICATION_ID + 1 + taskState.taskId;
         NotificationUtil.setNotification(this, notificationId, notification);
     }
-
-    /**
-     * Inserts a downloaded episode into the downloads database after download complete.
-     */
-    private void insertDownloadedEpisode() {
-        AppExecutors.getInstance().diskIO().execute(new Runnable() {
-            @Override
-            public void run() {
-                if (mDownloadEntry != null) {
-                    // Check if this episode does not exist in the downloads database
-                    // to avoid inserting the same one twice.
-                    if (mDb.podcastDao().syncLoadDownload(mDownloadEntry.getItemEnclosureUrl()) == null) {
-                        // Insert a downloaded episode to the database by using the podcastDao
-                        mDb.podcastDao().insertDownloadedEpisode(mDownloadEntry);
-                    }
-                }
-            }
-        });
-
-        // Show a toast message that indicates download completed
-        Toast.makeText(this, getString(R.string.toast_download_completed),
-                Toast.LENGTH_SHORT).show();
-    }
 }
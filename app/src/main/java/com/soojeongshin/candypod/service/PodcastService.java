@@ -27,9 +27,12 @@ import android.media.AudioManager;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import android.support.v4.media.MediaBrowserCompat;
+import android.support.v4.media.MediaDescriptionCompat;
+import android.support.v4.media.MediaMetadataCompat;
 import androidx.media.MediaBrowserServiceCompat;
 import android.support.v4.media.session.MediaSessionCompat;
 import android.support.v4.media.session.PlaybackStateCompat;
@@ -37,15 +40,15 @@ import android.text.TextUtils;
 import android.widget.Toast;
 
 import com.google.android.exoplayer2.C;
-import com.google.android.exoplayer2.DefaultLoadControl;
 import com.google.android.exoplayer2.DefaultRenderersFactory;
 import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.ExoPlayerFactory;
-import com.google.android.exoplayer2.LoadControl;
 import com.google.android.exoplayer2.Player;
 import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.Timeline;
 import com.google.android.exoplayer2.audio.AudioAttributes;
+import com.google.android.exoplayer2.ext.okhttp.OkHttpDataSourceFactory;
+import com.google.android.exoplayer2.source.ConcatenatingMediaSource;
 import com.google.android.exoplayer2.source.ExtractorMediaSource;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
@@ -53,30 +56,52 @@ import com.google.android.exoplayer2.trackselection.TrackSelector;
 import com.google.android.exoplayer2.ui.PlayerNotificationManager;
 import com.google.android.exoplayer2.ui.PlayerNotificationManager.BitmapCallback;
 import com.google.android.exoplayer2.ui.PlayerNotificationManager.NotificationListener;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.upstream.FileDataSourceFactory;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSinkFactory;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSourceFactory;
+import com.google.android.exoplayer2.upstream.cache.CacheUtil;
 import com.google.android.exoplayer2.util.Util;
+import com.soojeongshin.candypod.AppExecutors;
+import com.soojeongshin.candypod.BuildConfig;
 import com.soojeongshin.candypod.R;
+import com.soojeongshin.candypod.analytics.Analytics;
+import com.soojeongshin.candypod.analytics.PlaybackMetrics;
+import com.soojeongshin.candypod.analytics.PlaybackTrace;
+import com.soojeongshin.candypod.data.EpisodeEntry;
 import com.soojeongshin.candypod.model.rss.Item;
 import com.soojeongshin.candypod.ui.nowplaying.NowPlayingActivity;
 import com.soojeongshin.candypod.utilities.CandyPodUtils;
 import com.soojeongshin.candypod.utilities.DownloadUtil;
+import com.soojeongshin.candypod.utilities.DurationParser;
+import com.soojeongshin.candypod.utilities.InjectorUtils;
+import com.soojeongshin.candypod.utilities.OkHttpUtil;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import timber.log.Timber;
 
-import static com.soojeongshin.candypod.utilities.Constants.ACTION_RELEASE_OLD_PLAYER;
+import static com.soojeongshin.candypod.utilities.Constants.ACTION_PLAY_EPISODE;
+import static com.soojeongshin.candypod.utilities.Constants.DURATION_TOLERANCE_MILLIS;
 import static com.soojeongshin.candypod.utilities.Constants.EXTRA_ITEM;
 import static com.soojeongshin.candypod.utilities.Constants.EXTRA_PODCAST_IMAGE;
+import static com.soojeongshin.candypod.utilities.Constants.EXTRA_RESULT_ID;
 import static com.soojeongshin.candypod.utilities.Constants.EXTRA_RESULT_NAME;
 import static com.soojeongshin.candypod.utilities.Constants.FAST_FORWARD_INCREMENT;
+import static com.soojeongshin.candypod.utilities.Constants.FIRST_AUDIO_POLL_INTERVAL_MILLIS;
+import static com.soojeongshin.candypod.utilities.Constants.MEDIA_ART_MAX_SIZE_PX;
 import static com.soojeongshin.candypod.utilities.Constants.NOTIFICATION_PENDING_INTENT_ID;
 import static com.soojeongshin.candypod.utilities.Constants.PLAYBACK_CHANNEL_ID;
 import static com.soojeongshin.candypod.utilities.Constants.PLAYBACK_NOTIFICATION_ID;
+import static com.soojeongshin.candypod.utilities.Constants.QUEUE_PREFETCH_BYTES;
 import static com.soojeongshin.candypod.utilities.Constants.REWIND_INCREMENT;
 
 /**
@@ -93,6 +118,8 @@ public class PodcastService extends MediaBrowserServiceCompat implements Player.
 
     /** Member variable for the ExoPlayer */
     private SimpleExoPlayer mExoPlayer;
+    /** The LoadControl of the player, which applies the buffer profile of the episode */
+    private ProfileLoadControl mLoadControl;
 
     /** A notification manager to start, update and cancel a media style notification reflecting
      * the player state */
@@ -114,6 +141,47 @@ public class PodcastService extends MediaBrowserServiceCompat implements Player.
     private String mPodcastImage;
     /** The podcast bitmap image */
     private Bitmap mBitmap;
+    /** The podcast ID, used to load the queue, may be null */
+    private String mPodcastId;
+    /** The image URL of the current episode, or the podcast image URL if it has none */
+    private String mImageUrl;
+    /** The duration of the current episode in milliseconds, or DurationParser.UNKNOWN */
+    private long mDurationMillis;
+    /** The episodes of the queue. The index of an episode is both its window index in
+     * mMediaSource and its queue ID in the media session. */
+    private List<Item> mQueue = new ArrayList<>();
+    /** The index of the current episode in the queue */
+    private int mQueueIndex;
+    /** The media source which plays the episodes of the queue one after another */
+    private ConcatenatingMediaSource mMediaSource;
+    /** The factory which loads media over HTTP, shared by playback and prefetching */
+    private DataSource.Factory mHttpDataSourceFactory;
+    /** The index of the episode whose beginning was prefetched, or C.INDEX_UNSET */
+    private int mPrefetchIndex = C.INDEX_UNSET;
+    /** Set to true to cancel the running prefetch */
+    private AtomicBoolean mPrefetchCanceled;
+    /** The trace of the start of playback and the rebuffers of the current episode */
+    private PlaybackTrace mTrace;
+    /** True from a seek until the player is ready again, so that buffering is not a rebuffer */
+    private boolean mSeeking;
+    /** The playback position when the player became ready, used to detect the first audio */
+    private long mFirstAudioStartPosition;
+    private final Handler mHandler = new Handler();
+    /**
+     * Checks if the playback position has advanced, which means the first audio was rendered.
+     * ExoPlayer has no callback for the first rendered audio, so the position is polled, but
+     * only in debug builds.
+     */
+    private final Runnable mFirstAudioCheck = new Runnable() {
+        @Override
+        public void run() {
+            if (mExoPlayer.getCurrentPosition() > mFirstAudioStartPosition) {
+                onFirstAudio();
+            } else {
+                mHandler.postDelayed(this, FIRST_AUDIO_POLL_INTERVAL_MILLIS);
+            }
+        }
+    };
 
     private boolean mAudioNoisyReceiverRegistered;
     private final IntentFilter mAudioNoisyIntentFilter =
@@ -147,6 +215,9 @@ public class PodcastService extends MediaBrowserServiceCompat implements Player.
 
         // Create an instance of com.google.android.exoplayer2.audio.AudioAttributes
         initAudioAttributes();
+
+        // Obtain the FirebaseAnalytics instance used to log the playback start latency
+        Analytics.getInstance(this);
     }
 
     /**
@@ -168,7 +239,10 @@ public class PodcastService extends MediaBrowserServiceCompat implements Player.
                                 PlaybackStateCompat.ACTION_PAUSE |
                                 PlaybackStateCompat.ACTION_REWIND |
                                 PlaybackStateCompat.ACTION_FAST_FORWARD |
-                                PlaybackStateCompat.ACTION_PLAY_PAUSE);
+                                PlaybackStateCompat.ACTION_PLAY_PAUSE |
+                                PlaybackStateCompat.ACTION_SKIP_TO_NEXT |
+                                PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS |
+                                PlaybackStateCompat.ACTION_SKIP_TO_QUEUE_ITEM);
         mMediaSession.setPlaybackState(mStateBuilder.build());
 
         // MySessionCallback() has methods that handle callbacks from a media controller
@@ -191,25 +265,37 @@ public class PodcastService extends MediaBrowserServiceCompat implements Player.
             // Create an instance of the ExoPlayer
             DefaultRenderersFactory defaultRenderersFactory = new DefaultRenderersFactory(this);
             TrackSelector trackSelector = new DefaultTrackSelector();
-            LoadControl loadControl = new DefaultLoadControl();
+            mLoadControl = new ProfileLoadControl(BufferProfile.FAST_START);
             mExoPlayer = ExoPlayerFactory.newSimpleInstance(this, defaultRenderersFactory,
-                    trackSelector, loadControl);
+                    trackSelector, mLoadControl);
 
             // Set the Player.EventListener
             mExoPlayer.addListener(this);
 
-            // Prepare the MediaSource
-            Uri mediaUri = Uri.parse(mUrl);
-            MediaSource mediaSource = buildMediaSource(mediaUri);
-            mExoPlayer.prepare(mediaSource);
-
-            mExoPlayer.setPlayWhenReady(true);
-
             // Set the attributes for audio playback. ExoPlayer manages audio focus automatically.
             mExoPlayer.setAudioAttributes(mAudioAttributes, /* handleAudioFocus= */ true);
         }
     }
 
+    /**
+     * Prepares the player with a new queue which starts with the current episode. The player is
+     * kept across episodes, so only the media source is replaced, and the renderers, the
+     * decoders and the audio track of the previous episode are reused.
+     */
+    private void preparePlayer() {
+        cancelPrefetch();
+        // Buffer according to the connection and whether the episode is downloaded
+        BufferProfile profile = BufferProfile.select(this, mUrl);
+        mLoadControl.setProfile(profile);
+        mTrace.setBufferProfile(profile.getName());
+        // The upcoming episodes are added to the media source once they are loaded, so that the
+        // player moves on to the next episode without a gap
+        mMediaSource = new ConcatenatingMediaSource(buildMediaSource(Uri.parse(mUrl)));
+        // Reset the position and the state, so that nothing of the previous episode is kept
+        mExoPlayer.prepare(mMediaSource, /* resetPosition= */ true, /* resetState= */ true);
+        mExoPlayer.setPlayWhenReady(true);
+    }
+
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         // If there are not any pending start commands to be delivered to the service, it will
@@ -220,12 +306,8 @@ public class PodcastService extends MediaBrowserServiceCompat implements Player.
             Timber.e("intent in onStartCommand is null");
             return START_STICKY;
         }
-        // Check if the old player should be released
-        if (intent.getAction() != null && intent.getAction().equals(ACTION_RELEASE_OLD_PLAYER)) {
-            if (mExoPlayer != null) {
-                mExoPlayer.stop();
-                releasePlayer();
-            }
+        if (!ACTION_PLAY_EPISODE.equals(intent.getAction())) {
+            return START_STICKY;
         }
         Bundle b = intent.getBundleExtra(EXTRA_ITEM);
         if (b != null) {
@@ -233,6 +315,16 @@ public class PodcastService extends MediaBrowserServiceCompat implements Player.
             String itemTitle = mItem.getTitle();
             mUrl = mItem.getEnclosures().get(0).getUrl();
             Timber.d("onStartCommand: " + itemTitle + " Url: " + mUrl);
+            // Start a new queue with the episode
+            mQueue = new ArrayList<>();
+            mQueue.add(mItem);
+            mQueueIndex = 0;
+            mPrefetchIndex = C.INDEX_UNSET;
+        }
+        if (b == null && mQueue == null) {
+            // Without an episode, there is nothing to play
+            Timber.e("No episode in onStartCommand");
+            return START_STICKY;
         }
         // Get the podcast title
         if (intent.hasExtra(EXTRA_RESULT_NAME)) {
@@ -242,28 +334,192 @@ public class PodcastService extends MediaBrowserServiceCompat implements Player.
         if (intent.hasExtra(EXTRA_PODCAST_IMAGE)) {
             mPodcastImage = intent.getStringExtra(EXTRA_PODCAST_IMAGE);
         }
-        // Initialize ExoPlayer
+        // Get the podcast ID. It is not kept from the previous episode, because the queue of
+        // another podcast would be wrong.
+        mPodcastId = intent.getStringExtra(EXTRA_RESULT_ID);
+        // Trace the phases of the start of playback
+        mTrace = PlaybackMetrics.getInstance().startTrace(mUrl, mItem.getTitle());
+        mTrace.markPhase(PlaybackTrace.PHASE_INTENT_RECEIVED);
+        mTrace.setPlayerReused(mExoPlayer != null);
+        // Initialize ExoPlayer, unless it was created for a previous episode, and play the episode
         initializePlayer();
+        mTrace.markPhase(PlaybackTrace.PHASE_PLAYER_CREATED);
+        preparePlayer();
+        mTrace.markPhase(PlaybackTrace.PHASE_SOURCE_PREPARED);
+        PlaybackMetrics.getInstance().notifyTraceChanged();
+
+        // Publish the metadata right away, so that the seek bar and the title can be set up
+        // before the player has prepared the media
+        updateCurrentEpisode();
+        // Load the upcoming episodes in the background
+        loadQueue();
+
+        // Initialize PlayerNotificationManager once, since the player is reused and the
+        // notification follows the current episode
+        if (mPlayerNotificationManager == null) {
+            initializeNotificationManager();
+        }
 
-        // Convert hh:mm:ss string to seconds to put it into the metadata
-//        long duration = CandyPodUtils.getDurationInMilliSeconds(mItem);
-//        long duration = Long.parseLong(mItem.getITunesDuration());
-//        Timber.e("duration: " + duration);
-//        MediaMetadataCompat metadata = new MediaMetadataCompat.Builder()
-//                .putLong(MediaMetadataCompat.METADATA_KEY_DURATION, duration).build();
-//        mMediaSession.setMetadata(metadata);
-
-        // Initialize PlayerNotificationManager
-        initializeNotificationManager(mItem);
+        // The service is not immediately destroyed, and we can explicitly terminate our service
+        // when finished audio playback.
+        return START_STICKY;
+    }
 
+    /**
+     * Makes the episode at mQueueIndex the current episode, publishes its metadata and loads its
+     * artwork.
+     */
+    private void updateCurrentEpisode() {
+        mItem = mQueue.get(mQueueIndex);
+        mUrl = mItem.getEnclosures().get(0).getUrl();
         // If an episode image exists, use it. Otherwise, use the podcast image.
-        String itemImageUrl = CandyPodUtils.getItemImageUrl(mItem, mPodcastImage);
+        mImageUrl = CandyPodUtils.getItemImageUrl(mItem, mPodcastImage);
+        // The duration was parsed when the episode was ingested, so no string is parsed here
+        mDurationMillis = mItem.getDisplay() != null ? mItem.getDisplay().getDurationMillis()
+                : DurationParser.UNKNOWN;
+        mBitmap = null;
+        updateMetadata();
+        mStateBuilder.setActiveQueueItemId(mQueueIndex);
+        mMediaSession.setPlaybackState(mStateBuilder.build());
+
         // Load a bitmap image from the URL using asyncTask
-        new BitmapTask().execute(itemImageUrl);
+        new BitmapTask().execute(mImageUrl);
+    }
 
-        // The service is not immediately destroyed, and we can explicitly terminate our service
-        // when finished audio playback.
-        return START_STICKY;
+    /**
+     * Publishes the metadata of the current episode to the media session. The duration comes
+     * from the feed until the player knows the real one, and the artwork is added once the
+     * bitmap is loaded.
+     */
+    private void updateMetadata() {
+        MediaMetadataCompat.Builder builder = new MediaMetadataCompat.Builder()
+                .putString(MediaMetadataCompat.METADATA_KEY_MEDIA_ID, mUrl)
+                .putString(MediaMetadataCompat.METADATA_KEY_TITLE, mItem.getTitle())
+                .putString(MediaMetadataCompat.METADATA_KEY_DISPLAY_TITLE, mItem.getTitle())
+                .putString(MediaMetadataCompat.METADATA_KEY_ARTIST, mPodcastName)
+                .putString(MediaMetadataCompat.METADATA_KEY_ALBUM, mPodcastName)
+                .putString(MediaMetadataCompat.METADATA_KEY_DISPLAY_SUBTITLE, mPodcastName)
+                .putString(MediaMetadataCompat.METADATA_KEY_ART_URI, mImageUrl)
+                .putString(MediaMetadataCompat.METADATA_KEY_DISPLAY_ICON_URI, mImageUrl);
+        if (mDurationMillis != DurationParser.UNKNOWN) {
+            builder.putLong(MediaMetadataCompat.METADATA_KEY_DURATION, mDurationMillis);
+        }
+        if (mBitmap != null) {
+            // The bitmap is downsampled when loaded, so it is small enough to be sent to the
+            // controllers
+            builder.putBitmap(MediaMetadataCompat.METADATA_KEY_ART, mBitmap);
+        }
+        mMediaSession.setMetadata(builder.build());
+    }
+
+    /**
+     * Loads the episodes which follow the current episode in the list of the podcast, adds them
+     * to the media source and publishes them as the queue of the media session.
+     */
+    private void loadQueue() {
+        final String podcastId = mPodcastId;
+        final String enclosureUrl = mUrl;
+        final ConcatenatingMediaSource mediaSource = mMediaSource;
+        final AppExecutors executors = AppExecutors.getInstance();
+        executors.diskIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<EpisodeEntry> upcomingEpisodes = podcastId == null
+                        ? new ArrayList<EpisodeEntry>()
+                        : InjectorUtils.provideRepository(PodcastService.this)
+                                .getUpcomingEpisodesSync(podcastId, enclosureUrl);
+                executors.mainThread().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Ignore the result if another episode was started in the meantime
+                        if (mediaSource == mMediaSource) {
+                            appendToQueue(upcomingEpisodes);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Adds the episodes to the end of the queue and of the media source, and publishes the
+     * queue.
+     */
+    private void appendToQueue(List<EpisodeEntry> episodes) {
+        List<MediaSource> mediaSources = new ArrayList<>(episodes.size());
+        for (EpisodeEntry episode : episodes) {
+            mQueue.add(episode.toItem());
+            mediaSources.add(buildMediaSource(Uri.parse(episode.getEnclosureUrl())));
+        }
+        // Add all sources at once, so that the timeline is only updated once
+        mMediaSource.addMediaSources(mediaSources);
+
+        List<MediaSessionCompat.QueueItem> queue = new ArrayList<>(mQueue.size());
+        for (int i = 0; i < mQueue.size(); i++) {
+            queue.add(new MediaSessionCompat.QueueItem(buildDescription(mQueue.get(i)), i));
+        }
+        mMediaSession.setQueueTitle(mPodcastName);
+        mMediaSession.setQueue(queue);
+
+        prefetchNextEpisode();
+    }
+
+    private MediaDescriptionCompat buildDescription(Item item) {
+        String imageUrl = CandyPodUtils.getItemImageUrl(item, mPodcastImage);
+        return new MediaDescriptionCompat.Builder()
+                .setMediaId(item.getEnclosures().get(0).getUrl())
+                .setTitle(item.getTitle())
+                .setSubtitle(mPodcastName)
+                .setIconUri(imageUrl == null ? null : Uri.parse(imageUrl))
+                .build();
+    }
+
+    /**
+     * Caches the beginning of the next episode of the queue in the background, so that the
+     * transition to it, or skipping to it, does not wait for the network. The prefetch only
+     * starts once the current episode is ready, so it does not slow down the start of playback.
+     */
+    private void prefetchNextEpisode() {
+        int nextIndex = mQueueIndex + 1;
+        if (mExoPlayer == null || mExoPlayer.getPlaybackState() != Player.STATE_READY
+                || nextIndex >= mQueue.size() || nextIndex == mPrefetchIndex) {
+            return;
+        }
+        cancelPrefetch();
+        mPrefetchIndex = nextIndex;
+
+        final String url = mQueue.get(nextIndex).getEnclosures().get(0).getUrl();
+        // Cache the data under the same key as the CacheDataSource used for playback does
+        final DataSpec dataSpec = new DataSpec(Uri.parse(url), 0, QUEUE_PREFETCH_BYTES, null);
+        final Cache cache = DownloadUtil.getCache(this);
+        final DataSource upstream =
+                new DefaultDataSourceFactory(this, getHttpDataSourceFactory()).createDataSource();
+        final AtomicBoolean canceled = new AtomicBoolean();
+        mPrefetchCanceled = canceled;
+        AppExecutors.getInstance().networkIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    CacheUtil.cache(dataSpec, cache, upstream, null, canceled);
+                    Timber.d("Prefetched the next episode: " + url);
+                } catch (IOException e) {
+                    // The episode is loaded from the network when it is played
+                    Timber.d("Failed to prefetch the next episode: " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancels the running prefetch, if any.
+     */
+    private void cancelPrefetch() {
+        if (mPrefetchCanceled != null) {
+            mPrefetchCanceled.set(true);
+            mPrefetchCanceled = null;
+        }
     }
 
     /**
@@ -271,9 +527,8 @@ public class PodcastService extends MediaBrowserServiceCompat implements Player.
      * References: @see "https://medium.com/google-exoplayer/playback-notifications-with-exoplayer-a2f1a18cf93b"
      * "https://www.youtube.com/watch?v=svdq1BWl4r8" "https://github.com/google/ExoPlayer/tree/io18"
      * "https://google.github.io/ExoPlayer/doc/reference/com/google/android/exoplayer2/ui/PlayerNotificationManager.html"
-     *  @param item The current episode item
      */
-    private void initializeNotificationManager(Item item) {
+    private void initializeNotificationManager() {
         // Create a notification manager and a low-priority notification channel with the channel ID
         // and channel name
         mPlayerNotificationManager = PlayerNotificationManager.createWithNotificationChannel(
@@ -285,14 +540,14 @@ public class PodcastService extends MediaBrowserServiceCompat implements Player.
                 new PlayerNotificationManager.MediaDescriptionAdapter() {
                     @Override
                     public String getCurrentContentTitle(Player player) {
-                        return item.getTitle();
+                        return mItem.getTitle();
                     }
 
                     @Nullable
                     @Override
                     public PendingIntent createCurrentContentIntent(Player player) {
                         // Create a pending intent that relaunches the NowPlayingActivity
-                        return createContentPendingIntent(item);
+                        return createContentPendingIntent(mItem);
                     }
 
                     @Nullable
@@ -383,11 +638,18 @@ public class PodcastService extends MediaBrowserServiceCompat implements Player.
     }
 
     /**
-     * Release ExoPlayer.
+     * Release ExoPlayer. This is only done when the service is destroyed, since the player is
+     * reused for all episodes.
      */
     private void releasePlayer() {
+        cancelPrefetch();
+        mHandler.removeCallbacks(mFirstAudioCheck);
+        if (mExoPlayer == null) {
+            return;
+        }
         mExoPlayer.release();
         mExoPlayer = null;
+        mMediaSource = null;
     }
 
     @Override
@@ -416,14 +678,26 @@ public class PodcastService extends MediaBrowserServiceCompat implements Player.
         super.onDestroy();
     }
 
+    /**
+     * Returns the factory which loads the media over the shared OkHttp connection pool.
+     */
+    private DataSource.Factory getHttpDataSourceFactory() {
+        if (mHttpDataSourceFactory == null) {
+            String userAgent = Util.getUserAgent(this, getString(R.string.app_name));
+            mHttpDataSourceFactory =
+                    new OkHttpDataSourceFactory(OkHttpUtil.getMediaClient(this), userAgent);
+        }
+        return mHttpDataSourceFactory;
+    }
+
     /**
      * Create a MediaSource.
      * @param mediaUri
      */
     private MediaSource buildMediaSource(Uri mediaUri) {
-        String userAgent = Util.getUserAgent(this, getString(R.string.app_name));
-        DefaultDataSourceFactory dataSourceFactory = new DefaultDataSourceFactory(
-                this, userAgent);
+        // Report the bytes read from the cache and from the network to the playback trace
+        TransferListener transferListener = new TraceTransferListener(mediaUri.toString());
+        Cache cache = DownloadUtil.getCache(this);
 
         // Add support for caching to the player. The CacheDataSourceFactory sits between our
         // DataSourceFactory for loading from the network and the MediaSource which extracts the media.
@@ -431,9 +705,15 @@ public class PodcastService extends MediaBrowserServiceCompat implements Player.
         // "https://www.youtube.com/watch?v=svdq1BWl4r8"
         CacheDataSourceFactory cacheDataSourceFactory =
                 new CacheDataSourceFactory(
-                        DownloadUtil.getCache(this),
-                        dataSourceFactory, // The upstream DataSourceFactory for loading data from the network
-                        CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR);
+                        cache,
+                        // The upstream DataSourceFactory for loading data from the network
+                        new DefaultDataSourceFactory(this, transferListener,
+                                getHttpDataSourceFactory()),
+                        // The DataSourceFactory for reading data from the cache
+                        new FileDataSourceFactory(transferListener),
+                        new CacheDataSinkFactory(cache, CacheDataSource.DEFAULT_MAX_CACHE_FILE_SIZE),
+                        CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR,
+                        null);
         return new ExtractorMediaSource.Factory(cacheDataSourceFactory).createMediaSource(mediaUri);
     }
 
@@ -541,13 +821,76 @@ public class PodcastService extends MediaBrowserServiceCompat implements Player.
                 mExoPlayer.seekTo((int) pos);
             }
         }
+
+        @Override
+        public void onSkipToNext() {
+            if (mExoPlayer != null && mExoPlayer.getNextWindowIndex() != C.INDEX_UNSET) {
+                mExoPlayer.seekToDefaultPosition(mExoPlayer.getNextWindowIndex());
+            }
+        }
+
+        @Override
+        public void onSkipToPrevious() {
+            if (mExoPlayer != null && mExoPlayer.getPreviousWindowIndex() != C.INDEX_UNSET) {
+                mExoPlayer.seekToDefaultPosition(mExoPlayer.getPreviousWindowIndex());
+            }
+        }
+
+        @Override
+        public void onSkipToQueueItem(long id) {
+            if (mExoPlayer != null && id >= 0 && id < mQueue.size()) {
+                mExoPlayer.seekToDefaultPosition((int) id);
+            }
+        }
     }
 
     // Player Event Listeners
 
     @Override
     public void onTimelineChanged(Timeline timeline, @Nullable Object manifest, int reason) {
+        updateDurationFromPlayer();
+    }
 
+    /**
+     * Once the media is prepared, the player knows the real duration. Feeds often have a
+     * missing or rounded duration, so publish the real one if it differs.
+     */
+    private void updateDurationFromPlayer() {
+        long duration = mExoPlayer.getDuration();
+        if (duration != C.TIME_UNSET && (mDurationMillis == DurationParser.UNKNOWN
+                || Math.abs(duration - mDurationMillis) > DURATION_TOLERANCE_MILLIS)) {
+            mDurationMillis = duration;
+            updateMetadata();
+        }
+    }
+
+    @Override
+    public void onPositionDiscontinuity(int reason) {
+        // The player moved on to another episode of the queue, either at the end of an episode
+        // or because the user skipped to it
+        int windowIndex = mExoPlayer.getCurrentWindowIndex();
+        if (windowIndex != mQueueIndex && windowIndex < mQueue.size()) {
+            mQueueIndex = windowIndex;
+            updateCurrentEpisode();
+            // The timeline does not change for an episode which is already in the queue, so
+            // replace the duration of the feed with the one of the player, if it is known yet
+            updateDurationFromPlayer();
+            prefetchNextEpisode();
+            // The next episode may be downloaded while the previous one was streamed, or the
+            // other way around, so buffer according to the new episode
+            BufferProfile profile = BufferProfile.select(this, mUrl);
+            mLoadControl.setProfile(profile);
+
+            // Trace the episode, which was not started by an intent, so it has no start latency
+            mTrace = PlaybackMetrics.getInstance().startTrace(mUrl, mItem.getTitle());
+            mTrace.setPlayerReused(true);
+            mTrace.setBufferProfile(profile.getName());
+            updateTrace(mExoPlayer.getPlayWhenReady(), mExoPlayer.getPlaybackState());
+        }
+        if (reason == Player.DISCONTINUITY_REASON_SEEK
+                || reason == Player.DISCONTINUITY_REASON_SEEK_ADJUSTMENT) {
+            mSeeking = true;
+        }
     }
 
     @Override
@@ -593,6 +936,69 @@ public class PodcastService extends MediaBrowserServiceCompat implements Player.
                     mExoPlayer.getCurrentPosition(), 1f);
         }
         mMediaSession.setPlaybackState(mStateBuilder.build());
+
+        // Once the current episode is ready, its duration is known, and the beginning of the
+        // next one can be prefetched
+        if (playbackState == Player.STATE_READY) {
+            updateDurationFromPlayer();
+            prefetchNextEpisode();
+        }
+        updateTrace(playWhenReady, playbackState);
+    }
+
+    /**
+     * Records the player state in the trace of the current episode. Buffering while playing,
+     * after the episode was ready, is a rebuffer, unless the user has seeked.
+     */
+    private void updateTrace(boolean playWhenReady, int playbackState) {
+        if (mTrace == null) {
+            return;
+        }
+        if (playbackState == Player.STATE_BUFFERING) {
+            if (playWhenReady && !mSeeking
+                    && mTrace.hasReachedPhase(PlaybackTrace.PHASE_READY)) {
+                mTrace.startRebuffer();
+            }
+        } else {
+            mTrace.endRebuffer();
+            if (playbackState == Player.STATE_READY) {
+                mSeeking = false;
+                mTrace.markPhase(PlaybackTrace.PHASE_READY);
+            }
+        }
+
+        mHandler.removeCallbacks(mFirstAudioCheck);
+        if (playbackState == Player.STATE_READY && playWhenReady
+                && !mTrace.hasReachedPhase(PlaybackTrace.PHASE_FIRST_AUDIO)) {
+            if (BuildConfig.DEBUG_MODE) {
+                mFirstAudioStartPosition = mExoPlayer.getCurrentPosition();
+                mHandler.post(mFirstAudioCheck);
+            } else {
+                // Avoid polling in release builds, where the start of playback is close enough
+                onFirstAudio();
+            }
+        }
+        PlaybackMetrics.getInstance().notifyTraceChanged();
+    }
+
+    /**
+     * Records the first audio of the current episode. The start latency is added to the
+     * histogram and logged together with whether the player was reused, so that the start with
+     * a new player can be compared to the start with a reused one.
+     */
+    private void onFirstAudio() {
+        if (!mTrace.markPhase(PlaybackTrace.PHASE_FIRST_AUDIO)) {
+            return;
+        }
+        long latencyMillis = mTrace.getStartLatencyMillis();
+        if (latencyMillis >= 0) {
+            PlaybackMetrics.getInstance().addStartLatency(latencyMillis);
+            Timber.d("Playback started in " + latencyMillis + " ms, player reused: "
+                    + mTrace.isPlayerReused() + ", buffer profile: " + mTrace.getBufferProfile());
+            Analytics.logEventPlaybackStart(latencyMillis, mTrace.isPlayerReused(),
+                    mTrace.getBufferProfile());
+        }
+        PlaybackMetrics.getInstance().notifyTraceChanged();
     }
 
     /**
@@ -615,18 +1021,55 @@ public class PodcastService extends MediaBrowserServiceCompat implements Player.
         }
     }
 
+    /**
+     * Reports the bytes read for an episode to the playback trace, separately for the bytes
+     * read from the cache and from the network.
+     */
+    private static class TraceTransferListener implements TransferListener {
+
+        private final String mEpisodeUrl;
+
+        TraceTransferListener(String episodeUrl) {
+            mEpisodeUrl = episodeUrl;
+        }
+
+        @Override
+        public void onTransferInitializing(DataSource source, DataSpec dataSpec,
+                                           boolean isNetwork) {
+        }
+
+        @Override
+        public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        }
+
+        @Override
+        public void onBytesTransferred(DataSource source, DataSpec dataSpec, boolean isNetwork,
+                                       int bytesTransferred) {
+            PlaybackMetrics.getInstance().addBytes(mEpisodeUrl, isNetwork, bytesTransferred);
+        }
+
+        @Override
+        public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        }
+    }
+
     // Use AsyncTask to load the image from the URL
 
     /**
-     * Loads a bitmap image for a notification
+     * Loads a bitmap image for a notification and the media session metadata
      */
     public class BitmapTask extends AsyncTask<String, Void, Bitmap> {
 
+        /** The image URL this task loads */
+        private String mTaskImageUrl;
+
         @Override
         protected Bitmap doInBackground(String... params) {
+            mTaskImageUrl = params[0];
             Bitmap bitmap = null;
             try {
-                bitmap = CandyPodUtils.loadImage(params[0]);
+                bitmap = CandyPodUtils.loadImage(PodcastService.this, mTaskImageUrl,
+                        MEDIA_ART_MAX_SIZE_PX);
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -635,7 +1078,12 @@ public class PodcastService extends MediaBrowserServiceCompat implements Player.
 
         @Override
         protected void onPostExecute(Bitmap bitmap) {
+            // Ignore the image if another episode was started in the meantime
+            if (bitmap == null || !TextUtils.equals(mTaskImageUrl, mImageUrl)) {
+                return;
+            }
             mBitmap = bitmap;
+            updateMetadata();
         }
     }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.service;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.soojeongshin.candypod.utilities.Constants.BACK_BUFFER_MS;
+
+/**
+ * A {@link LoadControl} which applies the buffer durations of the selected
+ * {@link BufferProfile}. The player is reused for all episodes, so the profile is selected again
+ * for each episode, instead of creating a player with another LoadControl.
+ * <p>
+ * There is a DefaultLoadControl for each profile, and all of them share one allocator, because
+ * the player keeps using the allocator it got from the LoadControl. The player also reads the
+ * back buffer only once, when it is created, so the back buffer is the same for all profiles.
+ * The player events are passed to every DefaultLoadControl, so that the profile can be changed
+ * during playback, when the player moves on to the next episode of the queue.
+ */
+public class ProfileLoadControl implements LoadControl {
+
+    private final DefaultAllocator mAllocator =
+            new DefaultAllocator(true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+    private final Map<BufferProfile, DefaultLoadControl> mLoadControls = new HashMap<>();
+
+    /** The LoadControl of the selected profile, called on the playback thread */
+    private volatile DefaultLoadControl mLoadControl;
+    private volatile BufferProfile mProfile;
+
+    public ProfileLoadControl(BufferProfile profile) {
+        for (BufferProfile bufferProfile : BufferProfile.PROFILES) {
+            mLoadControls.put(bufferProfile, new DefaultLoadControl.Builder()
+                    .setAllocator(mAllocator)
+                    .setBufferDurationsMs(
+                            bufferProfile.getMinBufferMs(),
+                            bufferProfile.getMaxBufferMs(),
+                            bufferProfile.getBufferForPlaybackMs(),
+                            bufferProfile.getBufferForPlaybackAfterRebufferMs())
+                    // Spoken-word audio has a low bitrate, so the durations matter rather than
+                    // the target buffer size, which is computed for the renderers
+                    .setPrioritizeTimeOverSizeThresholds(true)
+                    .createDefaultLoadControl());
+        }
+        setProfile(profile);
+    }
+
+    /**
+     * Selects the profile, which applies to the next decision of the player.
+     */
+    public void setProfile(BufferProfile profile) {
+        mProfile = profile;
+        mLoadControl = mLoadControls.get(profile);
+    }
+
+    public BufferProfile getProfile() {
+        return mProfile;
+    }
+
+    @Override
+    public void onPrepared() {
+        for (DefaultLoadControl loadControl : mLoadControls.values()) {
+            loadControl.onPrepared();
+        }
+    }
+
+    @Override
+    public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroups,
+                                 TrackSelectionArray trackSelections) {
+        for (DefaultLoadControl loadControl : mLoadControls.values()) {
+            loadControl.onTracksSelected(renderers, trackGroups, trackSelections);
+        }
+    }
+
+    @Override
+    public void onStopped() {
+        for (DefaultLoadControl loadControl : mLoadControls.values()) {
+            loadControl.onStopped();
+        }
+    }
+
+    @Override
+    public void onReleased() {
+        for (DefaultLoadControl loadControl : mLoadControls.values()) {
+            loadControl.onReleased();
+        }
+    }
+
+    @Override
+    public Allocator getAllocator() {
+        return mAllocator;
+    }
+
+    @Override
+    public long getBackBufferDurationUs() {
+        return C.msToUs(BACK_BUFFER_MS);
+    }
+
+    @Override
+    public boolean retainBackBufferFromKeyframe() {
+        // Every audio sample is a keyframe
+        return false;
+    }
+
+    @Override
+    public boolean shouldContinueLoading(long bufferedDurationUs, float playbackSpeed) {
+        return mLoadControl.shouldContinueLoading(bufferedDurationUs, playbackSpeed);
+    }
+
+    @Override
+    public boolean shouldStartPlayback(long bufferedDurationUs, float playbackSpeed,
+                                       boolean rebuffering) {
+        return mLoadControl.shouldStartPlayback(bufferedDurationUs, playbackSpeed, rebuffering);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.sync;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.soojeongshin.candypod.analytics.Analytics;
+import com.soojeongshin.candypod.data.CandyPodRepository;
+import com.soojeongshin.candypod.data.DownloadEntry;
+import com.soojeongshin.candypod.data.FeedRefreshResult;
+import com.soojeongshin.candypod.service.PodcastDownloadService;
+import com.soojeongshin.candypod.utilities.CandyPodUtils;
+import com.soojeongshin.candypod.utilities.InjectorUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+import static com.soojeongshin.candypod.utilities.Constants.FEED_REFRESH_INTERVAL_HOURS;
+import static com.soojeongshin.candypod.utilities.Constants.FEED_REFRESH_MAX_CONCURRENCY;
+import static com.soojeongshin.candypod.utilities.Constants.KEY_AUTO_DOWNLOAD_COUNT;
+import static com.soojeongshin.candypod.utilities.Constants.KEY_CHANGED_COUNT;
+import static com.soojeongshin.candypod.utilities.Constants.KEY_ELAPSED_MILLIS;
+import static com.soojeongshin.candypod.utilities.Constants.KEY_FEED_COUNT;
+import static com.soojeongshin.candypod.utilities.Constants.KEY_MAX_CONCURRENCY;
+import static com.soojeongshin.candypod.utilities.Constants.WORK_FEED_REFRESH;
+
+/**
+ * Periodically refreshes the feeds of all subscribed podcasts, so that new episodes show up
+ * without the user opening each podcast. After the refresh, the auto-download rules of the
+ * podcasts are evaluated, and the new episodes are downloaded in one batch, so that they are
+ * already local when the user wants to listen.
+ * Reference: @see "https://developer.android.com/topic/libraries/architecture/workmanager/basics"
+ */
+public class FeedRefreshWorker extends Worker {
+
+    public FeedRefreshWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * Schedules the periodic feed refresh. The work only runs when the device is connected to
+     * the network and the battery is not low. If the work is already scheduled, it is kept.
+     * @param context Context used to get the WorkManager
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+
+        Data inputData = new Data.Builder()
+                .putInt(KEY_MAX_CONCURRENCY, FEED_REFRESH_MAX_CONCURRENCY)
+                .build();
+
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                FeedRefreshWorker.class, FEED_REFRESH_INTERVAL_HOURS, TimeUnit.HOURS)
+                .setConstraints(constraints)
+                .setInputData(inputData)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                WORK_FEED_REFRESH, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        CandyPodRepository repository = InjectorUtils.provideRepository(context);
+        int maxConcurrency = getInputData().getInt(KEY_MAX_CONCURRENCY,
+                FEED_REFRESH_MAX_CONCURRENCY);
+
+        FeedRefreshResult result;
+        try {
+            result = repository.refreshPodcastsSync(maxConcurrency);
+        } catch (InterruptedException e) {
+            // The work was stopped, e.g. because the constraints are no longer met
+            Timber.d("Feed refresh interrupted");
+            return Result.retry();
+        }
+
+        Timber.d("Refreshed " + result.getFeedCount() + " feeds, " + result.getChangedCount()
+                + " changed, in " + result.getElapsedMillis() + " ms");
+        Analytics.getInstance(context);
+        Analytics.logEventFeedRefresh(result.getFeedCount(), result.getChangedCount(),
+                result.getElapsedMillis());
+
+        // The rules are evaluated even if no feed changed, so that the episodes whose conditions
+        // were not met at the last refresh, e.g. because the device was not charging, are
+        // downloaded now
+        List<DownloadEntry> downloadEntries = repository.getAutoDownloadsSync(
+                CandyPodUtils.isOnUnmeteredNetwork(context), CandyPodUtils.isCharging(context));
+        if (!downloadEntries.isEmpty()) {
+            Timber.d("Auto-downloading " + downloadEntries.size() + " episodes");
+            PodcastDownloadService.startWithDownloads(context, downloadEntries);
+        }
+
+        Data outputData = new Data.Builder()
+                .putInt(KEY_FEED_COUNT, result.getFeedCount())
+                .putInt(KEY_CHANGED_COUNT, result.getChangedCount())
+                .putLong(KEY_ELAPSED_MILLIS, result.getElapsedMillis())
+                .putInt(KEY_AUTO_DOWNLOAD_COUNT, downloadEntries.size())
+                .build();
+        return Result.success(outputData);
+    }
+}
@@ -27,6 +27,7 @@ import android.view.MenuItem;
 
 import com.soojeongshin.candypod.R;
 import com.soojeongshin.candypod.databinding.ActivityMainBinding;
+import com.soojeongshin.candypod.sync.FeedRefreshWorker;
 import com.soojeongshin.candypod.ui.downloads.DownloadsFragment;
 import com.soojeongshin.candypod.ui.favorites.FavoritesFragment;
 import com.soojeongshin.candypod.ui.podcasts.PodcastsFragment;
@@ -51,6 +52,9 @@ public class MainActivity extends AppCompatActivity
         // Setup Timber
         Timber.plant(new Timber.DebugTree());
 
+        // Schedule the periodic refresh of the subscribed feeds. An existing schedule is kept.
+        FeedRefreshWorker.schedule(this);
+
         ActionBarDrawerToggle toggle = new ActionBarDrawerToggle(
                 this, mMainBinding.drawerLayout, mMainBinding.appBarMain.toolbar,
                 R.string.navigation_drawer_open, R.string.navigation_drawer_close);
@@ -16,7 +16,10 @@
 
 package com.soojeongshin.candypod.ui.add;
 
+import androidx.arch.core.util.Function;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
 import androidx.lifecycle.ViewModel;
 
 import com.soojeongshin.candypod.data.CandyPodRepository;
@@ -28,11 +31,21 @@ import com.soojeongshin.candypod.model.ITunesResponse;
 public class AddPodViewModel extends ViewModel {
 
     private final CandyPodRepository mRepository;
-    private LiveData<ITunesResponse> mITunesResponse;
+    private final MutableLiveData<String> mCountry = new MutableLiveData<>();
+    private final LiveData<ITunesResponse> mITunesResponse;
 
     public AddPodViewModel(CandyPodRepository repository, String country) {
         mRepository = repository;
-        mITunesResponse = mRepository.getITunesResponse(country);
+        // Switch to the chart of the selected country, so that the chart of the previous
+        // country does not update the UI when it is refreshed
+        mITunesResponse = Transformations.switchMap(mCountry,
+                new Function<String, LiveData<ITunesResponse>>() {
+                    @Override
+                    public LiveData<ITunesResponse> apply(String country) {
+                        return mRepository.getITunesResponse(country);
+                    }
+                });
+        mCountry.setValue(country);
     }
 
     public LiveData<ITunesResponse> getITunesResponse() {
@@ -43,6 +56,6 @@ public class AddPodViewModel extends ViewModel {
      * Sets a new value for a country.
      */
     public void setCountry(String country) {
-        mITunesResponse = mRepository.getITunesResponse(country);
+        mCountry.setValue(country);
     }
 }
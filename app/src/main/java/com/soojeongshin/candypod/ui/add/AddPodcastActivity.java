@@ -182,8 +182,10 @@ public class AddPodcastActivity extends AppCompatActivity
             @Override
             public void onChanged(@Nullable ITunesResponse iTunesResponse) {
                 if (iTunesResponse != null) {
-                    // Hide the loading indicator
+                    // Hide the loading indicator and the offline message, since the cached chart
+                    // is shown even when offline
                     mAddPodBinding.setIsLoading(false);
+                    mAddPodBinding.setIsOffline(false);
 
                     Feed feed = iTunesResponse.getFeed();
                     List<Result> results = feed.getResults();
@@ -351,10 +353,11 @@ public class AddPodcastActivity extends AppCompatActivity
         if (key.equals(getString(R.string.pref_country_key))) {
             // Get the value from the shared preferences
             String country = sharedPreferences.getString(key, getString(R.string.pref_country_default));
-            // Set a new value for a country.
+            // When online, show a loading indicator. When offline, show offline message.
+            showLoadingOrOffline();
+            // Set a new value for a country. The observed ITunesResponse switches to the chart
+            // of the new country.
             mAddPodViewModel.setCountry(country);
-            // Observe changes in ITunesResponse
-            observeITunesResponse();
         }
     }
 
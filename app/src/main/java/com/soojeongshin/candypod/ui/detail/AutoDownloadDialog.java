@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.ui.detail;
+
+import android.app.Dialog;
+import android.content.DialogInterface;
+import android.os.Bundle;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
+import androidx.databinding.DataBindingUtil;
+import androidx.fragment.app.DialogFragment;
+import androidx.lifecycle.ViewModelProviders;
+import android.view.LayoutInflater;
+
+import com.soojeongshin.candypod.R;
+import com.soojeongshin.candypod.data.AutoDownloadEntry;
+import com.soojeongshin.candypod.databinding.DialogAutoDownloadBinding;
+import com.soojeongshin.candypod.utilities.InjectorUtils;
+
+import static com.soojeongshin.candypod.utilities.Constants.ARG_CHARGING_ONLY;
+import static com.soojeongshin.candypod.utilities.Constants.ARG_EPISODE_COUNT;
+import static com.soojeongshin.candypod.utilities.Constants.ARG_HAS_RULE;
+import static com.soojeongshin.candypod.utilities.Constants.ARG_UNMETERED_ONLY;
+import static com.soojeongshin.candypod.utilities.Constants.AUTO_DOWNLOAD_DEFAULT_EPISODES;
+import static com.soojeongshin.candypod.utilities.Constants.AUTO_DOWNLOAD_MAX_EPISODES;
+import static com.soojeongshin.candypod.utilities.Constants.EXTRA_RESULT_ID;
+
+/**
+ * Creates a dialog where the user can set the auto-download rule of the podcast, which keeps the
+ * latest episodes downloaded after the feeds are refreshed, or turn the rule off.
+ */
+public class AutoDownloadDialog extends DialogFragment {
+
+    /** This field is used for data binding */
+    private DialogAutoDownloadBinding mDialogBinding;
+
+    /**
+     * Creates an AutoDownloadDialog which shows the given rule.
+     * @param podcastId The podcast ID
+     * @param autoDownloadEntry The current rule of the podcast, or null if it has no rule
+     */
+    public static AutoDownloadDialog newInstance(String podcastId,
+                                                 @Nullable AutoDownloadEntry autoDownloadEntry) {
+        Bundle args = new Bundle();
+        args.putString(EXTRA_RESULT_ID, podcastId);
+        args.putBoolean(ARG_HAS_RULE, autoDownloadEntry != null);
+        if (autoDownloadEntry != null) {
+            args.putInt(ARG_EPISODE_COUNT, autoDownloadEntry.getEpisodeCount());
+            args.putBoolean(ARG_UNMETERED_ONLY, autoDownloadEntry.isUnmeteredOnly());
+            args.putBoolean(ARG_CHARGING_ONLY, autoDownloadEntry.isChargingOnly());
+        }
+        AutoDownloadDialog dialog = new AutoDownloadDialog();
+        dialog.setArguments(args);
+        return dialog;
+    }
+
+    @NonNull
+    @Override
+    public Dialog onCreateDialog(@Nullable Bundle savedInstanceState) {
+        Bundle args = getArguments();
+        mDialogBinding = DataBindingUtil.inflate(LayoutInflater.from(getActivity()),
+                R.layout.dialog_auto_download, null, false);
+        mDialogBinding.npEpisodeCount.setMinValue(1);
+        mDialogBinding.npEpisodeCount.setMaxValue(AUTO_DOWNLOAD_MAX_EPISODES);
+        // The NumberPicker does not save its value, so it is restored from the saved state
+        Bundle state = savedInstanceState != null ? savedInstanceState : args;
+        mDialogBinding.npEpisodeCount.setValue(
+                state.getInt(ARG_EPISODE_COUNT, AUTO_DOWNLOAD_DEFAULT_EPISODES));
+        if (savedInstanceState == null) {
+            // A new rule only downloads on an unmetered network by default
+            mDialogBinding.cbUnmeteredOnly.setChecked(
+                    args.getBoolean(ARG_UNMETERED_ONLY, true));
+            mDialogBinding.cbChargingOnly.setChecked(args.getBoolean(ARG_CHARGING_ONLY, false));
+        }
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+        builder.setTitle(getString(R.string.title_auto_download_dialog));
+        builder.setView(mDialogBinding.getRoot());
+        builder.setPositiveButton(getString(R.string.auto_download_save),
+                new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        getViewModel().setAutoDownloadRule(
+                                mDialogBinding.npEpisodeCount.getValue(),
+                                mDialogBinding.cbUnmeteredOnly.isChecked(),
+                                mDialogBinding.cbChargingOnly.isChecked());
+                    }
+                });
+        builder.setNegativeButton(getString(android.R.string.cancel), null);
+        // Only a podcast which has a rule can turn it off
+        if (args.getBoolean(ARG_HAS_RULE)) {
+            builder.setNeutralButton(getString(R.string.auto_download_turn_off),
+                    new DialogInterface.OnClickListener() {
+                        @Override
+                        public void onClick(DialogInterface dialog, int which) {
+                            getViewModel().removeAutoDownloadRule();
+                        }
+                    });
+        }
+        return builder.create();
+    }
+
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putInt(ARG_EPISODE_COUNT, mDialogBinding.npEpisodeCount.getValue());
+    }
+
+    /**
+     * Returns the PodcastEntryViewModel of the DetailActivity.
+     */
+    private PodcastEntryViewModel getViewModel() {
+        PodcastEntryViewModelFactory podcastEntryFactory =
+                InjectorUtils.providePodcastEntryViewModelFactory(getActivity(),
+                        getArguments().getString(EXTRA_RESULT_ID));
+        return ViewModelProviders.of(getActivity(), podcastEntryFactory)
+                .get(PodcastEntryViewModel.class);
+    }
+}
@@ -26,13 +26,18 @@ import com.google.android.material.appbar.AppBarLayout;
 import androidx.core.app.ActivityOptionsCompat;
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.paging.PagedList;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.widget.ImageView;
 
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.request.RequestOptions;
 import com.soojeongshin.candypod.R;
 import com.soojeongshin.candypod.analytics.Analytics;
+import com.soojeongshin.candypod.data.AutoDownloadEntry;
+import com.soojeongshin.candypod.data.EpisodeEntry;
 import com.soojeongshin.candypod.data.PodcastEntry;
 import com.soojeongshin.candypod.databinding.ActivityDetailBinding;
 import com.soojeongshin.candypod.model.rss.Item;
@@ -42,12 +47,9 @@ import com.soojeongshin.candypod.utilities.CandyPodUtils;
 import com.soojeongshin.candypod.utilities.InjectorUtils;
 import com.google.firebase.analytics.FirebaseAnalytics;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import jp.wasabeef.glide.transformations.BlurTransformation;
 
-import static com.soojeongshin.candypod.utilities.Constants.ACTION_RELEASE_OLD_PLAYER;
+import static com.soojeongshin.candypod.utilities.Constants.ACTION_PLAY_EPISODE;
 import static com.soojeongshin.candypod.utilities.Constants.BLUR_RADIUS;
 import static com.soojeongshin.candypod.utilities.Constants.BLUR_SAMPLING;
 import static com.soojeongshin.candypod.utilities.Constants.EXTRA_ITEM;
@@ -61,6 +63,9 @@ import static com.soojeongshin.candypod.utilities.Constants.EXTRA_RESULT_NAME;
 public class DetailActivity extends AppCompatActivity
         implements DetailAdapter.DetailAdapterOnClickHandler {
 
+    /** Tag for AutoDownloadDialog */
+    private static final String TAG = DetailActivity.class.getSimpleName();
+
     /** This field is used for data binding */
     private ActivityDetailBinding mDetailBinding;
 
@@ -72,12 +77,12 @@ public class DetailActivity extends AppCompatActivity
     /** Member variable for the PodcastEntryViewModel to store and manage LiveData PodcastEntry */
     private PodcastEntryViewModel mPodcastEntryViewModel;
 
+    /** The auto-download rule of the podcast, or null if the podcast has no rule */
+    private AutoDownloadEntry mAutoDownloadEntry;
+
     /** Member variable for the DetailAdapter */
     private DetailAdapter mDetailAdapter;
 
-    /** Member variable for the list of {@link Item}s which is the episodes in the podcast */
-    private List<Item> mItemList;
-
     /** The Podcast image URL received from the PodcastsFragment will be passed to the
      * NowPlayingActivity via Intent */
     private String mPodcastImage;
@@ -145,6 +150,26 @@ public class DetailActivity extends AppCompatActivity
                 }
             }
         });
+
+        // Observe the paged episodes of the podcast and submit each new PagedList to the adapter
+        mPodcastEntryViewModel.getEpisodes().observe(this, new Observer<PagedList<EpisodeEntry>>() {
+            @Override
+            public void onChanged(@Nullable PagedList<EpisodeEntry> episodes) {
+                mDetailAdapter.submitList(episodes);
+            }
+        });
+
+        // Observe the auto-download rule, which is shown in the AutoDownloadDialog
+        mPodcastEntryViewModel.getAutoDownloadRule().observe(this,
+                new Observer<AutoDownloadEntry>() {
+                    @Override
+                    public void onChanged(@Nullable AutoDownloadEntry autoDownloadEntry) {
+                        mAutoDownloadEntry = autoDownloadEntry;
+                    }
+                });
+
+        // Check the feed for new episodes
+        mPodcastEntryViewModel.refreshEpisodes();
     }
 
     /**
@@ -157,11 +182,9 @@ public class DetailActivity extends AppCompatActivity
         mDetailBinding.rvDetail.setLayoutManager(layoutManager);
         mDetailBinding.rvDetail.setHasFixedSize(true);
 
-        // Create an empty ArrayList
-        mItemList = new ArrayList<>();
-        // The DetailAdapter is responsible for linking our item data with the Views that will
+        // The DetailAdapter is responsible for linking our episode data with the Views that will
         // end up displaying our episode data.
-        mDetailAdapter = new DetailAdapter(mItemList, this, mPodcastImage);
+        mDetailAdapter = new DetailAdapter(this, mPodcastImage);
         // Setting the adapter attaches it to the RecyclerView in our layout
         mDetailBinding.rvDetail.setAdapter(mDetailAdapter);
     }
@@ -190,11 +213,6 @@ public class DetailActivity extends AppCompatActivity
         // Set text
         mDetailBinding.tvTitle.setText(title);
         mDetailBinding.tvAuthor.setText(author);
-
-        // Read episodes from the PodcastEntry
-        mItemList = podcastEntry.getItems();
-        // Update the list of items and notify the adapter of any changes
-        mDetailAdapter.addAll(mItemList);
     }
 
     /**
@@ -212,6 +230,24 @@ public class DetailActivity extends AppCompatActivity
         }
     }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.detail, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        int id = item.getItemId();
+        if (id == R.id.action_auto_download) {
+            // Show a dialog where the user can set the auto-download rule of the podcast
+            AutoDownloadDialog.newInstance(mResultId, mAutoDownloadEntry)
+                    .show(getSupportFragmentManager(), TAG);
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
     /**
      * When the user press the up button in the app bar, finishes this DetailActivity.
      */
@@ -294,13 +330,15 @@ public class DetailActivity extends AppCompatActivity
 
 
         Intent serviceIntent = new Intent(this, PodcastService.class);
-        // Set the action to check if the old player should be released in PodcastService
-        serviceIntent.setAction(ACTION_RELEASE_OLD_PLAYER);
+        // Set the action to play the episode in PodcastService
+        serviceIntent.setAction(ACTION_PLAY_EPISODE);
         // Pass an Item object
         serviceIntent.putExtra(EXTRA_ITEM, b);
         // Pass podcast title and podcast image
         serviceIntent.putExtra(EXTRA_RESULT_NAME, mResultName);
         serviceIntent.putExtra(EXTRA_PODCAST_IMAGE, mPodcastImage);
+        // Pass the podcast ID, used to build the queue of the upcoming episodes
+        serviceIntent.putExtra(EXTRA_RESULT_ID, mResultId);
         // Start the PodcastService
         startService(serviceIntent);
 
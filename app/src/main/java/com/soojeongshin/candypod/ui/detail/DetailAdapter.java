@@ -18,8 +18,9 @@ package com.soojeongshin.candypod.ui.detail;
 
 import androidx.databinding.DataBindingUtil;
 import androidx.annotation.NonNull;
+import androidx.paging.PagedListAdapter;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
-import android.text.Html;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -28,22 +29,15 @@ import android.widget.ImageView;
 
 import com.bumptech.glide.Glide;
 import com.soojeongshin.candypod.R;
+import com.soojeongshin.candypod.data.EpisodeEntry;
 import com.soojeongshin.candypod.databinding.DetailListItemBinding;
+import com.soojeongshin.candypod.model.rss.EpisodeDisplay;
 import com.soojeongshin.candypod.model.rss.Item;
-import com.soojeongshin.candypod.utilities.CandyPodUtils;
-
-import java.util.List;
-
-import static com.soojeongshin.candypod.utilities.Constants.IMG_HTML_TAG;
-import static com.soojeongshin.candypod.utilities.Constants.REPLACEMENT_EMPTY;
 
 /**
- * Exposes a list of episodes from a list of {@link Item} to a {@link RecyclerView}.
+ * Exposes a paged list of episodes from the episode table to a {@link RecyclerView}.
  */
-public class DetailAdapter extends RecyclerView.Adapter<DetailAdapter.DetailViewHolder> {
-
-    /** Member variable for the list of {@link Item}s which is the episodes in the podcast */
-    private List<Item> mItems;
+public class DetailAdapter extends PagedListAdapter<EpisodeEntry, DetailAdapter.DetailViewHolder> {
 
     /** The podcast image URL used when there is no episode image */
     private String mPodcastImage;
@@ -61,16 +55,39 @@ public class DetailAdapter extends RecyclerView.Adapter<DetailAdapter.DetailView
         void onItemClick(Item item, ImageView imageView);
     }
 
+    /**
+     * Used by the PagedListAdapter to calculate the differences between two pages of episodes
+     * on a background thread.
+     */
+    private static final DiffUtil.ItemCallback<EpisodeEntry> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<EpisodeEntry>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull EpisodeEntry oldEpisode,
+                                               @NonNull EpisodeEntry newEpisode) {
+                    return oldEpisode.getId() == newEpisode.getId();
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull EpisodeEntry oldEpisode,
+                                                  @NonNull EpisodeEntry newEpisode) {
+                    return TextUtils.equals(oldEpisode.getTitle(), newEpisode.getTitle())
+                            && TextUtils.equals(oldEpisode.getDescription(), newEpisode.getDescription())
+                            && TextUtils.equals(oldEpisode.getPubDate(), newEpisode.getPubDate())
+                            && TextUtils.equals(oldEpisode.getDuration(), newEpisode.getDuration())
+                            && TextUtils.equals(oldEpisode.getImageUrl(), newEpisode.getImageUrl())
+                            && TextUtils.equals(oldEpisode.getEnclosureUrl(), newEpisode.getEnclosureUrl());
+                }
+            };
+
     /**
      * Creates a DetailAdapter.
      *
-     * @param items The list of items to display
      * @param onClickHandler The on-click handler for this adapter. This single handler is called
      *                      when an item is clicked.
      * @param podcastImage The podcast image URL used when there is no episode image.
      */
-    public DetailAdapter(List<Item> items, DetailAdapterOnClickHandler onClickHandler, String podcastImage) {
-        mItems = items;
+    public DetailAdapter(DetailAdapterOnClickHandler onClickHandler, String podcastImage) {
+        super(DIFF_CALLBACK);
         mOnClickHandler = onClickHandler;
         mPodcastImage = podcastImage;
     }
@@ -93,31 +110,13 @@ public class DetailAdapter extends RecyclerView.Adapter<DetailAdapter.DetailView
      */
     @Override
     public void onBindViewHolder(@NonNull DetailViewHolder holder, int position) {
-        Item item = mItems.get(position);
-        holder.bind(item);
-    }
-
-    /**
-     * This method simply return the number of items to display. It is used behind the scenes
-     * to help layout our Views and for animations.
-     *
-     * @return The number of items available in the podcast
-     */
-    @Override
-    public int getItemCount() {
-        if (null == mItems) return 0;
-        return mItems.size();
-    }
-
-    /**
-     * This method is to update a list of {@Link Item}s and notify the adapter of any changes.
-     *
-     * @param items The list of items to display
-     */
-    public void addAll(List<Item> items) {
-        mItems.clear();
-        mItems.addAll(items);
-        notifyDataSetChanged();
+        EpisodeEntry episode = getItem(position);
+        if (episode == null) {
+            // The episode is not loaded yet, so show a placeholder
+            holder.clear();
+        } else {
+            holder.bind(episode);
+        }
     }
 
     /**
@@ -141,50 +140,53 @@ public class DetailAdapter extends RecyclerView.Adapter<DetailAdapter.DetailView
         }
 
         /**
-         * This method will take an Item object as input and use that item to display the appropriate
-         * text within a list item.
+         * This method will take an EpisodeEntry object as input and use that episode to display
+         * the appropriate text within a list item.
          *
-         * @param item An episode of the podcast
+         * @param episode An episode of the podcast
          */
-        void bind(Item item) {
+        void bind(EpisodeEntry episode) {
             // If an episode image exists, use it. Otherwise, use the podcast image.
-            String itemImageUrl = CandyPodUtils.getItemImageUrl(item, mPodcastImage);
+            String itemImageUrl = episode.getImageUrl();
+            if (TextUtils.isEmpty(itemImageUrl)) {
+                itemImageUrl = mPodcastImage;
+            }
             // Use Glide library to upload the episode image
             Glide.with(itemView.getContext())
                     .load(itemImageUrl)
                     .into(mDetailListItemBinding.ivDetailArtwork);
 
             // Get the title of an episode and set text
-            String title = item.getTitle();
+            String title = episode.getTitle();
             mDetailListItemBinding.tvDetailTitle.setText(title);
 
-            // Get the description of an episode
-            String description = item.getDescription();
-            // If the description contains the img tag, remove it, then convert HTML to plain text.
-            // Reference: @see "https://stackoverflow.com/questions/11178533/how-to-skip-image-tag-in-html-data-in-android"
-            // @see "https://stackoverflow.com/questions/22573319/how-to-convert-html-text-to-plain-text-in-android"
-            if (description != null) {
-                String descriptionWithoutImageTag = description.replaceAll(IMG_HTML_TAG, REPLACEMENT_EMPTY);
-                mDetailListItemBinding.tvDetailDescription.setText(
-                        Html.fromHtml(Html.fromHtml(descriptionWithoutImageTag).toString()));
-            }
-
-            // Get the pub date of an episode and set text
-            String pubDate = item.getPubDate();
-            // Convert the pub date into something to display to users
-            String formattedPubDate = CandyPodUtils.getFormattedDateString(pubDate);
-            mDetailListItemBinding.tvDetailPubDate.setText(formattedPubDate);
+            // The description, the pub date and the duration are formatted when the episode is
+            // ingested, so only set the text here
+            EpisodeDisplay display = episode.getDisplay();
+            mDetailListItemBinding.tvDetailDescription.setText(display.getSnippet());
+            mDetailListItemBinding.tvDetailPubDate.setText(display.getDisplayPubDate());
 
-            // Get the duration of an episode and set text
-            String duration = item.getITunesDuration();
+            String duration = display.getDisplayDuration();
             if (TextUtils.isEmpty(duration)) {
                 // Hide the duration TextView when the duration is empty
                 mDetailListItemBinding.tvDetailDuration.setVisibility(View.GONE);
             } else {
+                mDetailListItemBinding.tvDetailDuration.setVisibility(View.VISIBLE);
                 mDetailListItemBinding.tvDetailDuration.setText(duration);
             }
         }
 
+        /**
+         * Clears the list item while the episode at this position is a placeholder.
+         */
+        void clear() {
+            Glide.with(itemView.getContext()).clear(mDetailListItemBinding.ivDetailArtwork);
+            mDetailListItemBinding.tvDetailTitle.setText(null);
+            mDetailListItemBinding.tvDetailDescription.setText(null);
+            mDetailListItemBinding.tvDetailPubDate.setText(null);
+            mDetailListItemBinding.tvDetailDuration.setText(null);
+        }
+
         /**
          * Called by th child views during a click.
          * @param v The View that was clicked
@@ -192,9 +194,16 @@ public class DetailAdapter extends RecyclerView.Adapter<DetailAdapter.DetailView
         @Override
         public void onClick(View v) {
             int adapterPosition = getAdapterPosition();
-            Item item = mItems.get(adapterPosition);
+            if (adapterPosition == RecyclerView.NO_POSITION) {
+                return;
+            }
+            EpisodeEntry episode = getItem(adapterPosition);
+            // Ignore clicks on placeholders
+            if (episode == null) {
+                return;
+            }
             // Trigger the callback onItemClick
-            mOnClickHandler.onItemClick(item, mDetailListItemBinding.ivDetailArtwork);
+            mOnClickHandler.onItemClick(episode.toItem(), mDetailListItemBinding.ivDetailArtwork);
         }
     }
 }
@@ -18,24 +18,76 @@ package com.soojeongshin.candypod.ui.detail;
 
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.ViewModel;
+import androidx.paging.PagedList;
 
+import com.soojeongshin.candypod.data.AutoDownloadEntry;
 import com.soojeongshin.candypod.data.CandyPodRepository;
+import com.soojeongshin.candypod.data.EpisodeEntry;
 import com.soojeongshin.candypod.data.PodcastEntry;
 
 /**
- * PodcastEntryViewModel class is designed to store and manage {@link LiveData} PodcastEntry.
+ * PodcastEntryViewModel class is designed to store and manage {@link LiveData} PodcastEntry,
+ * the episodes and the auto-download rule of the podcast.
  */
 public class PodcastEntryViewModel extends ViewModel {
 
     private final CandyPodRepository mRepository;
+    private final String mPodcastId;
     private LiveData<PodcastEntry> mPodcastEntry;
+    private LiveData<PagedList<EpisodeEntry>> mEpisodes;
+    private LiveData<AutoDownloadEntry> mAutoDownloadRule;
+    /** True once the feed of the podcast has been revalidated */
+    private boolean mRefreshed;
 
     public PodcastEntryViewModel(CandyPodRepository repository, String podcastId) {
         mRepository = repository;
+        mPodcastId = podcastId;
         mPodcastEntry = mRepository.getPodcastByPodcastId(podcastId);
     }
 
     public LiveData<PodcastEntry> getPodcastEntry() {
         return mPodcastEntry;
     }
+
+    /**
+     * Returns the paged episodes of the podcast. The query only runs for the screens that display
+     * the episodes.
+     */
+    public LiveData<PagedList<EpisodeEntry>> getEpisodes() {
+        if (mEpisodes == null) {
+            mEpisodes = mRepository.getPagedEpisodesByPodcastId(mPodcastId);
+        }
+        return mEpisodes;
+    }
+
+    /**
+     * Revalidates the feed of the podcast once for the lifetime of this ViewModel, so that
+     * configuration changes do not trigger another request. New episodes show up through
+     * {@link #getEpisodes()}.
+     */
+    public void refreshEpisodes() {
+        if (!mRefreshed) {
+            mRefreshed = true;
+            mRepository.refreshPodcast(mPodcastId);
+        }
+    }
+
+    /**
+     * Returns the auto-download rule of the podcast, which is null if the podcast has no rule.
+     */
+    public LiveData<AutoDownloadEntry> getAutoDownloadRule() {
+        if (mAutoDownloadRule == null) {
+            mAutoDownloadRule = mRepository.getAutoDownloadRule(mPodcastId);
+        }
+        return mAutoDownloadRule;
+    }
+
+    public void setAutoDownloadRule(int episodeCount, boolean unmeteredOnly,
+                                    boolean chargingOnly) {
+        mRepository.setAutoDownloadRule(mPodcastId, episodeCount, unmeteredOnly, chargingOnly);
+    }
+
+    public void removeAutoDownloadRule() {
+        mRepository.removeAutoDownloadRule(mPodcastId);
+    }
 }
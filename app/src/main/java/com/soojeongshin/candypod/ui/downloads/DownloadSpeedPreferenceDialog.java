@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.ui.downloads;
+
+import android.app.Dialog;
+import android.content.DialogInterface;
+import android.os.Bundle;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
+import androidx.fragment.app.DialogFragment;
+
+import com.soojeongshin.candypod.R;
+import com.soojeongshin.candypod.utilities.BandwidthLimiter;
+import com.soojeongshin.candypod.utilities.DownloadUtil;
+
+import static com.soojeongshin.candypod.utilities.Constants.BYTES_PER_KILOBYTE;
+
+/**
+ * Creates a dialog which is the same as ListPreference where the user can choose the maximum
+ * speed of all downloads together, so that downloads leave bandwidth for streaming.
+ */
+public class DownloadSpeedPreferenceDialog extends DialogFragment
+        implements DialogInterface.OnClickListener {
+
+    private CharSequence[] mEntries;
+    private int[] mEntryValues;
+    private int mPrefIndex;
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mEntries = getResources().getStringArray(R.array.pref_download_speed_options);
+        mEntryValues = getResources().getIntArray(R.array.pref_download_speed_values);
+    }
+
+    @NonNull
+    @Override
+    public Dialog onCreateDialog(@Nullable Bundle savedInstanceState) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+        builder.setTitle(getString(R.string.title_download_speed_dialog));
+        mPrefIndex = findIndexOfValue(DownloadUtil.getDownloadBandwidthLimit(getActivity()));
+        builder.setSingleChoiceItems(mEntries, mPrefIndex, this);
+        return builder.create();
+    }
+
+    @Override
+    public void onClick(DialogInterface dialog, int which) {
+        if (mPrefIndex != which) {
+            mPrefIndex = which;
+            // The running downloads are throttled to the new speed right away
+            DownloadUtil.setDownloadBandwidthLimit(getActivity(), getBytesPerSecond(mPrefIndex));
+        }
+        dialog.dismiss();
+    }
+
+    private long getBytesPerSecond(int index) {
+        // The value of the unlimited option is 0
+        return mEntryValues[index] == 0
+                ? BandwidthLimiter.UNLIMITED : mEntryValues[index] * BYTES_PER_KILOBYTE;
+    }
+
+    private int findIndexOfValue(long bytesPerSecond) {
+        for (int i = mEntryValues.length - 1; i >= 0; i--) {
+            if (getBytesPerSecond(i) == bytesPerSecond) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
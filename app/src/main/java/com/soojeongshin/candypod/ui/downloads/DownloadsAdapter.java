@@ -20,7 +20,6 @@ import android.content.Context;
 import androidx.databinding.DataBindingUtil;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
-import android.text.Html;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -31,13 +30,10 @@ import com.bumptech.glide.Glide;
 import com.soojeongshin.candypod.R;
 import com.soojeongshin.candypod.data.DownloadEntry;
 import com.soojeongshin.candypod.databinding.DownloadsListItemBinding;
-import com.soojeongshin.candypod.utilities.CandyPodUtils;
+import com.soojeongshin.candypod.model.rss.EpisodeDisplay;
 
 import java.util.List;
 
-import static com.soojeongshin.candypod.utilities.Constants.IMG_HTML_TAG;
-import static com.soojeongshin.candypod.utilities.Constants.REPLACEMENT_EMPTY;
-
 /**
  * Exposes a list of downloaded episodes from a list of {@link DownloadEntry} to a {@link RecyclerView}
  */
@@ -114,29 +110,18 @@ public class DownloadsAdapter extends RecyclerView.Adapter<DownloadsAdapter.Down
             String itemTitle = downloadEntry.getItemTitle();
             mDownloadsListItemBinding.tvEpisodeTitle.setText(itemTitle);
 
-            // Get the description of an episode and set the text
-            String description = downloadEntry.getItemDescription();
-            // If the description contains the img tag, remove it, then convert HTML to plain text.
-            // Reference: @see "https://stackoverflow.com/questions/11178533/how-to-skip-image-tag-in-html-data-in-android"
-            // @see "https://stackoverflow.com/questions/22573319/how-to-convert-html-text-to-plain-text-in-android"
-            if (description != null) {
-                String descriptionWithoutImageTag = description.replaceAll(IMG_HTML_TAG, REPLACEMENT_EMPTY);
-                mDownloadsListItemBinding.tvDescription.setText(
-                        Html.fromHtml(Html.fromHtml(descriptionWithoutImageTag).toString()));
-            }
-
-            // Get the pub date of an episode and set the text
-            String pubDate = downloadEntry.getItemPubDate();
-            // Convert the pub date into something to display to users
-            String formattedPubDate = CandyPodUtils.getFormattedDateString(pubDate);
-            mDownloadsListItemBinding.tvPubDate.setText(formattedPubDate);
+            // The description, the pub date and the duration are formatted when the entry is
+            // created, so only set the text here
+            EpisodeDisplay display = downloadEntry.getItemDisplay();
+            mDownloadsListItemBinding.tvDescription.setText(display.getSnippet());
+            mDownloadsListItemBinding.tvPubDate.setText(display.getDisplayPubDate());
 
-            // Get the duration of an episode and set the text
-            String duration = downloadEntry.getItemDuration();
+            String duration = display.getDisplayDuration();
             if (TextUtils.isEmpty(duration)) {
                 // Hide the duration TextView when the duration is empty
                 mDownloadsListItemBinding.tvDuration.setVisibility(View.GONE);
             } else {
+                mDownloadsListItemBinding.tvDuration.setVisibility(View.VISIBLE);
                 mDownloadsListItemBinding.tvDuration.setText(duration);
             }
         }
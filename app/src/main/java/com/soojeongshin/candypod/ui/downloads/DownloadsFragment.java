@@ -30,6 +30,9 @@ import androidx.core.app.ActivityOptionsCompat;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
@@ -48,7 +51,7 @@ import com.soojeongshin.candypod.utilities.InjectorUtils;
 import java.util.ArrayList;
 import java.util.List;
 
-import static com.soojeongshin.candypod.utilities.Constants.ACTION_RELEASE_OLD_PLAYER;
+import static com.soojeongshin.candypod.utilities.Constants.ACTION_PLAY_EPISODE;
 import static com.soojeongshin.candypod.utilities.Constants.EXTRA_ITEM;
 import static com.soojeongshin.candypod.utilities.Constants.EXTRA_PODCAST_IMAGE;
 import static com.soojeongshin.candypod.utilities.Constants.EXTRA_RESULT_ID;
@@ -60,6 +63,9 @@ import static com.soojeongshin.candypod.utilities.Constants.NO_DRAWABLES;
  */
 public class DownloadsFragment extends Fragment implements DownloadsAdapter.DownloadsAdapterOnClickHandler {
 
+    /** Tag for the preference dialogs */
+    private static final String TAG = DownloadsFragment.class.getSimpleName();
+
     /** This field is used for data binding */
     private FragmentDownloadsBinding mDownloadsBinding;
 
@@ -78,6 +84,13 @@ public class DownloadsFragment extends Fragment implements DownloadsAdapter.Down
         // Required empty public constructor
     }
 
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        // Add the download settings to the app bar
+        setHasOptionsMenu(true);
+    }
+
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
@@ -121,6 +134,27 @@ public class DownloadsFragment extends Fragment implements DownloadsAdapter.Down
         mDownloadsBinding.rvDownloads.setAdapter(mDownloadsAdapter);
     }
 
+    @Override
+    public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
+        inflater.inflate(R.menu.downloads, menu);
+        super.onCreateOptionsMenu(menu, inflater);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        int id = item.getItemId();
+        if (id == R.id.action_streaming_cache) {
+            // Show a dialog where the user can choose the space for the streamed episodes
+            new StreamingCachePreferenceDialog().show(getChildFragmentManager(), TAG);
+            return true;
+        } else if (id == R.id.action_download_speed) {
+            // Show a dialog where the user can choose the maximum download speed
+            new DownloadSpeedPreferenceDialog().show(getChildFragmentManager(), TAG);
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
     /**
      * Every time the downloaded episode data is updated, updates the UI.
      */
@@ -194,12 +228,14 @@ public class DownloadsFragment extends Fragment implements DownloadsAdapter.Down
         }
 
         Intent serviceIntent = new Intent(this.getActivity(), PodcastService.class);
-        // Set the action to check if the old player should be released in PodcastService
-        serviceIntent.setAction(ACTION_RELEASE_OLD_PLAYER);
+        // Set the action to play the episode in PodcastService
+        serviceIntent.setAction(ACTION_PLAY_EPISODE);
         serviceIntent.putExtra(EXTRA_ITEM, b);
         // Pass podcast title and podcast image
         serviceIntent.putExtra(EXTRA_RESULT_NAME, mPodcastTitle);
         serviceIntent.putExtra(EXTRA_PODCAST_IMAGE, mPodcastImage);
+        // Pass the podcast ID, used to build the queue of the upcoming episodes
+        serviceIntent.putExtra(EXTRA_RESULT_ID, mPodcastId);
         getActivity().startService(serviceIntent);
     }
 
@@ -230,7 +266,10 @@ public class DownloadsFragment extends Fragment implements DownloadsAdapter.Down
         List<ItemImage> itemImages = new ArrayList<>();
         itemImages.add(itemImage);
 
-        return new Item(itemTitle, itemDescription, iTunesSummary, pubDate, duration, enclosures, itemImages);
+        Item item = new Item(itemTitle, itemDescription, iTunesSummary, pubDate, duration,
+                enclosures, itemImages);
+        item.setDisplay(downloadEntry.getItemDisplay());
+        return item;
     }
 
     /**
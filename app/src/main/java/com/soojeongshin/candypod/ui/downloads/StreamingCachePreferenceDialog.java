@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.ui.downloads;
+
+import android.app.Dialog;
+import android.content.Context;
+import android.content.DialogInterface;
+import android.os.Bundle;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
+import androidx.fragment.app.DialogFragment;
+
+import com.soojeongshin.candypod.AppExecutors;
+import com.soojeongshin.candypod.R;
+import com.soojeongshin.candypod.utilities.DownloadUtil;
+
+import static com.soojeongshin.candypod.utilities.Constants.BYTES_PER_MEGABYTE;
+
+/**
+ * Creates a dialog which is the same as ListPreference where the user can choose how much
+ * space the streamed episodes can take in the cache. The downloaded episodes are not counted.
+ */
+public class StreamingCachePreferenceDialog extends DialogFragment
+        implements DialogInterface.OnClickListener {
+
+    private CharSequence[] mEntries;
+    private int[] mEntryValues;
+    private int mPrefIndex;
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mEntries = getResources().getStringArray(R.array.pref_streaming_cache_options);
+        mEntryValues = getResources().getIntArray(R.array.pref_streaming_cache_values);
+    }
+
+    @NonNull
+    @Override
+    public Dialog onCreateDialog(@Nullable Bundle savedInstanceState) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+        builder.setTitle(getString(R.string.title_streaming_cache_dialog));
+        mPrefIndex = findIndexOfValue(DownloadUtil.getStreamingCacheMaxBytes(getActivity()));
+        builder.setSingleChoiceItems(mEntries, mPrefIndex, this);
+        return builder.create();
+    }
+
+    @Override
+    public void onClick(DialogInterface dialog, int which) {
+        if (mPrefIndex != which) {
+            mPrefIndex = which;
+            final Context context = getActivity().getApplicationContext();
+            final long maxBytes = mEntryValues[mPrefIndex] * BYTES_PER_MEGABYTE;
+            // Saving the maximum evicts the streamed episodes which no longer fit, which deletes
+            // files, so do it off the main thread
+            AppExecutors.getInstance().diskIO().execute(new Runnable() {
+                @Override
+                public void run() {
+                    DownloadUtil.setStreamingCacheMaxBytes(context, maxBytes);
+                }
+            });
+        }
+        dialog.dismiss();
+    }
+
+    private int findIndexOfValue(long maxBytes) {
+        for (int i = mEntryValues.length - 1; i >= 0; i--) {
+            if (mEntryValues[i] * BYTES_PER_MEGABYTE == maxBytes) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -20,7 +20,6 @@ import android.content.Context;
 import androidx.databinding.DataBindingUtil;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
-import android.text.Html;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -29,14 +28,12 @@ import android.widget.ImageView;
 
 import com.bumptech.glide.Glide;
 import com.soojeongshin.candypod.R;
+import com.soojeongshin.candypod.model.rss.EpisodeDisplay;
 import com.soojeongshin.candypod.data.FavoriteEntry;
 import com.soojeongshin.candypod.databinding.FavoritesListItemBinding;
-import com.soojeongshin.candypod.utilities.CandyPodUtils;
 
 import java.util.List;
 
-import static com.soojeongshin.candypod.utilities.Constants.IMG_HTML_TAG;
-import static com.soojeongshin.candypod.utilities.Constants.REPLACEMENT_EMPTY;
 
 /**
  * Exposes a list of favorite episodes from a list of {@link FavoriteEntry} to a {@link RecyclerView}
@@ -158,29 +155,18 @@ public class FavoritesAdapter extends RecyclerView.Adapter<FavoritesAdapter.Favo
             String itemTitle = favoriteEntry.getItemTitle();
             mFavListItemBinding.tvEpisodeTitle.setText(itemTitle);
 
-            // Get the description of an episode and set the text
-            String description = favoriteEntry.getItemDescription();
-            // If the description contains the img tag, remove it, then convert HTML to plain text.
-            // Reference: @see "https://stackoverflow.com/questions/11178533/how-to-skip-image-tag-in-html-data-in-android"
-            // @see "https://stackoverflow.com/questions/22573319/how-to-convert-html-text-to-plain-text-in-android"
-            if (description != null) {
-                String descriptionWithoutImageTag = description.replaceAll(IMG_HTML_TAG, REPLACEMENT_EMPTY);
-                mFavListItemBinding.tvDescription.setText(
-                        Html.fromHtml(Html.fromHtml(descriptionWithoutImageTag).toString()));
-            }
-
-            // Get the pub date of an episode and set the text
-            String pubDate = favoriteEntry.getItemPubDate();
-            // Convert the pub date into something to display to users
-            String formattedPubDate = CandyPodUtils.getFormattedDateString(pubDate);
-            mFavListItemBinding.tvPubDate.setText(formattedPubDate);
+            // The description, the pub date and the duration are formatted when the entry is
+            // created, so only set the text here
+            EpisodeDisplay display = favoriteEntry.getItemDisplay();
+            mFavListItemBinding.tvDescription.setText(display.getSnippet());
+            mFavListItemBinding.tvPubDate.setText(display.getDisplayPubDate());
 
-            // Get the duration of an episode and set the text
-            String duration = favoriteEntry.getItemDuration();
+            String duration = display.getDisplayDuration();
             if (TextUtils.isEmpty(duration)) {
                 // Hide the duration TextView when the duration is empty
                 mFavListItemBinding.tvDuration.setVisibility(View.GONE);
             } else {
+                mFavListItemBinding.tvDuration.setVisibility(View.VISIBLE);
                 mFavListItemBinding.tvDuration.setText(duration);
             }
         }
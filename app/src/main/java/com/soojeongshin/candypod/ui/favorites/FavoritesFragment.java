@@ -47,7 +47,7 @@ import com.soojeongshin.candypod.utilities.InjectorUtils;
 import java.util.ArrayList;
 import java.util.List;
 
-import static com.soojeongshin.candypod.utilities.Constants.ACTION_RELEASE_OLD_PLAYER;
+import static com.soojeongshin.candypod.utilities.Constants.ACTION_PLAY_EPISODE;
 import static com.soojeongshin.candypod.utilities.Constants.EXTRA_ITEM;
 import static com.soojeongshin.candypod.utilities.Constants.EXTRA_PODCAST_IMAGE;
 import static com.soojeongshin.candypod.utilities.Constants.EXTRA_RESULT_ID;
@@ -193,13 +193,15 @@ public class FavoritesFragment extends Fragment implements FavoritesAdapter.Favo
 
         // Start the PodcastService
         Intent serviceIntent = new Intent(this.getActivity(), PodcastService.class);
-        // Set the action to check if the old player should be released in PodcastService
-        serviceIntent.setAction(ACTION_RELEASE_OLD_PLAYER);
+        // Set the action to play the episode in PodcastService
+        serviceIntent.setAction(ACTION_PLAY_EPISODE);
         // Pass item that contains episode data
         serviceIntent.putExtra(EXTRA_ITEM, b);
         // Pass podcast title and podcast image
         serviceIntent.putExtra(EXTRA_RESULT_NAME, mPodcastTitle);
         serviceIntent.putExtra(EXTRA_PODCAST_IMAGE, mPodcastImage);
+        // Pass the podcast ID, used to build the queue of the upcoming episodes
+        serviceIntent.putExtra(EXTRA_RESULT_ID, mPodcastId);
         getActivity().startService(serviceIntent);
     }
 
@@ -231,7 +233,10 @@ public class FavoritesFragment extends Fragment implements FavoritesAdapter.Favo
         List<ItemImage> itemImages = new ArrayList<>();
         itemImages.add(itemImage);
 
-        return new Item(itemTitle, itemDescription, iTunesSummary, pubDate, duration, enclosures, itemImages);
+        Item item = new Item(itemTitle, itemDescription, iTunesSummary, pubDate, duration,
+                enclosures, itemImages);
+        item.setDisplay(favoriteEntry.getItemDisplay());
+        return item;
     }
 
     /**
@@ -21,6 +21,7 @@ import androidx.lifecycle.ViewModel;
 
 import com.soojeongshin.candypod.data.CandyPodRepository;
 import com.soojeongshin.candypod.data.DownloadEntry;
+import com.soojeongshin.candypod.data.DownloadProgress;
 
 /**
  * DownloadEntryViewModel class is designed to store and manage {@link LiveData} DownloadEntry.
@@ -29,13 +30,19 @@ public class DownloadEntryViewModel extends ViewModel {
 
     private final CandyPodRepository mRepository;
     private LiveData<DownloadEntry> mDownloadEntry;
+    private LiveData<DownloadProgress> mDownloadProgress;
 
     public DownloadEntryViewModel(CandyPodRepository repository, String enclosureUrl) {
         mRepository = repository;
         mDownloadEntry = mRepository.getDownloadedEpisodeByEnclosureUrl(enclosureUrl);
+        mDownloadProgress = mRepository.getDownloadProgress(enclosureUrl);
     }
 
     public LiveData<DownloadEntry> getDownloadEntry() {
         return mDownloadEntry;
     }
+
+    public LiveData<DownloadProgress> getDownloadProgress() {
+        return mDownloadProgress;
+    }
 }
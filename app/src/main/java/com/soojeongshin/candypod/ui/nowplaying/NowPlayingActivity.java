@@ -19,6 +19,7 @@ package com.soojeongshin.candypod.ui.nowplaying;
 import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProviders;
 import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
 import androidx.databinding.DataBindingUtil;
 import android.graphics.Color;
@@ -39,6 +40,7 @@ import android.support.v4.media.session.PlaybackStateCompat;
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AppCompatActivity;
 import android.text.format.DateUtils;
+import android.text.format.Formatter;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
@@ -47,16 +49,20 @@ import android.widget.Toast;
 
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.request.RequestOptions;
-import com.google.android.exoplayer2.offline.DownloadManager;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.offline.DownloadManager.TaskState;
-import com.google.android.exoplayer2.offline.ProgressiveDownloadAction;
 import com.google.firebase.analytics.FirebaseAnalytics;
 import com.soojeongshin.candypod.AppExecutors;
+import com.soojeongshin.candypod.BuildConfig;
 import com.soojeongshin.candypod.R;
 import com.soojeongshin.candypod.analytics.Analytics;
+import com.soojeongshin.candypod.analytics.PlaybackMetrics;
+import com.soojeongshin.candypod.analytics.PlaybackTrace;
 import com.soojeongshin.candypod.data.CandyPodDatabase;
 import com.soojeongshin.candypod.data.DownloadEntry;
+import com.soojeongshin.candypod.data.DownloadProgress;
 import com.soojeongshin.candypod.data.FavoriteEntry;
+import com.soojeongshin.candypod.data.StorageUsage;
 import com.soojeongshin.candypod.databinding.ActivityNowPlayingBinding;
 import com.soojeongshin.candypod.model.rss.Item;
 import com.soojeongshin.candypod.service.PodcastDownloadService;
@@ -64,7 +70,9 @@ import com.soojeongshin.candypod.service.PodcastService;
 import com.soojeongshin.candypod.utilities.CandyPodUtils;
 import com.soojeongshin.candypod.utilities.DownloadUtil;
 import com.soojeongshin.candypod.utilities.InjectorUtils;
+import com.soojeongshin.candypod.utilities.SegmentedDownloadAction;
 
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -75,7 +83,6 @@ import timber.log.Timber;
 
 import static com.soojeongshin.candypod.utilities.Constants.BLUR_RADIUS;
 import static com.soojeongshin.candypod.utilities.Constants.BLUR_SAMPLING;
-import static com.soojeongshin.candypod.utilities.Constants.EXTRA_DOWNLOAD_ENTRY;
 import static com.soojeongshin.candypod.utilities.Constants.EXTRA_ITEM;
 import static com.soojeongshin.candypod.utilities.Constants.EXTRA_PODCAST_IMAGE;
 import static com.soojeongshin.candypod.utilities.Constants.EXTRA_RESULT_ID;
@@ -89,7 +96,7 @@ import static com.soojeongshin.candypod.utilities.Constants.TYPE_AUDIO;
 /**
  * Reference: @see "https://developer.android.com/guide/topics/media-apps/audio-app/building-a-mediabrowser-client"
  */
-public class NowPlayingActivity extends AppCompatActivity implements DownloadManager.Listener {
+public class NowPlayingActivity extends AppCompatActivity {
 
     /** The podcast episode */
     private Item mItem;
@@ -160,6 +167,11 @@ public class NowPlayingActivity extends AppCompatActivity implements DownloadMan
 
         setupUI();
 
+        // Show how the playback of the current episode started in debug builds
+        if (BuildConfig.DEBUG_MODE) {
+            showPlaybackTrace();
+        }
+
         // Get the database instance
         mDb = CandyPodDatabase.getInstance(getApplicationContext());
 
@@ -260,8 +272,6 @@ public class NowPlayingActivity extends AppCompatActivity implements DownloadMan
         super.onStart();
         // Connect to the MediaBrowserService
         mMediaBrowser.connect();
-        // Add a DownloadManager.Listener. Please note that we must remove the listener in onStop()
-        DownloadUtil.getDownloadManager(this).addListener(this);
     }
 
     @Override
@@ -281,8 +291,6 @@ public class NowPlayingActivity extends AppCompatActivity implements DownloadMan
             MediaControllerCompat.getMediaController(this).unregisterCallback(controllerCallback);
         }
         mMediaBrowser.disconnect();
-        // Remove a DownloadManager.Listener
-        DownloadUtil.getDownloadManager(this).removeListener(this);
     }
 
     @Override
@@ -486,9 +494,12 @@ public class NowPlayingActivity extends AppCompatActivity implements DownloadMan
         if (metadata == null) {
             return;
         }
-        int duration = (int) metadata.getLong(MediaMetadataCompat.METADATA_KEY_DURATION)
-                * FORMAT_ELAPSED_TIME;
-        mNowPlayingBinding.playingInfo.seekBar.setMax(duration);
+        // The duration is in milliseconds, like the playback position
+        long duration = metadata.getLong(MediaMetadataCompat.METADATA_KEY_DURATION);
+        if (duration <= 0) {
+            return;
+        }
+        mNowPlayingBinding.playingInfo.seekBar.setMax((int) duration);
         mNowPlayingBinding.playingInfo.tvEnd.setText(
                 DateUtils.formatElapsedTime(duration / FORMAT_ELAPSED_TIME));
     }
@@ -624,6 +635,7 @@ public class NowPlayingActivity extends AppCompatActivity implements DownloadMan
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.now_playing, menu);
+        menu.findItem(R.id.action_export_playback_metrics).setVisible(BuildConfig.DEBUG_MODE);
         return true;
     }
 
@@ -647,6 +659,10 @@ public class NowPlayingActivity extends AppCompatActivity implements DownloadMan
                 // Share the episode data
                 shareEpisode();
                 return true;
+            case R.id.action_export_playback_metrics:
+                // Share the playback start latency histogram and the latest traces
+                exportPlaybackMetrics();
+                return true;
             default:
                 return super.onOptionsItemSelected(item);
         }
@@ -673,6 +689,54 @@ public class NowPlayingActivity extends AppCompatActivity implements DownloadMan
         Analytics.logEventShare(mPodcastName, mItem.getTitle());
     }
 
+    /**
+     * Shows the trace of the start of playback of the current episode in the debug overlay.
+     */
+    private void showPlaybackTrace() {
+        mNowPlayingBinding.tvDebugOverlay.setVisibility(View.VISIBLE);
+        PlaybackMetrics.getInstance().getCurrentTrace().observe(this,
+                new Observer<PlaybackTrace>() {
+                    @Override
+                    public void onChanged(@Nullable PlaybackTrace playbackTrace) {
+                        if (playbackTrace != null) {
+                            mNowPlayingBinding.tvDebugOverlay.setText(playbackTrace.format());
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Uses the ShareCompat Intent builder to export the playback metrics report, followed by
+     * the storage used by each podcast, as plain text. The storage report reads the cache index
+     * and the database, so it is built on a background thread.
+     */
+    private void exportPlaybackMetrics() {
+        final Context context = getApplicationContext();
+        AppExecutors.getInstance().diskIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                List<StorageUsage> usages = InjectorUtils.provideRepository(context)
+                        .getStorageUsageSync(DownloadUtil.getCachedBytes(context));
+                final String report = PlaybackMetrics.getInstance().formatReport() + "\n\n"
+                        + StorageUsage.formatReport(usages,
+                        DownloadUtil.getStreamingCacheMaxBytes(context));
+                AppExecutors.getInstance().mainThread().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        Intent shareIntent = ShareCompat.IntentBuilder
+                                .from(NowPlayingActivity.this)
+                                .setType(SHARE_INTENT_TYPE_TEXT)
+                                .setText(report)
+                                .setChooserTitle(
+                                        getString(R.string.chooser_title_playback_metrics))
+                                .createChooserIntent();
+                        startActivity(shareIntent);
+                    }
+                });
+            }
+        });
+    }
+
     /**
      * Returns true when the current episode is in the favorites, otherwise returns false.
      */
@@ -714,6 +778,15 @@ public class NowPlayingActivity extends AppCompatActivity implements DownloadMan
                 invalidateOptionsMenu();
             }
         });
+
+        // Observe the download progress of the episode
+        mDownloadEntryViewModel.getDownloadProgress().observe(this,
+                new Observer<DownloadProgress>() {
+            @Override
+            public void onChanged(@Nullable DownloadProgress downloadProgress) {
+                onDownloadProgressChanged(downloadProgress);
+            }
+        });
         return mIsDownloaded;
     }
 
@@ -837,26 +910,17 @@ public class NowPlayingActivity extends AppCompatActivity implements DownloadMan
      * When the user clicks the download button, triggers the download to start from our activity.
      */
     private void startServiceWithDownloadAction() {
-        Uri uri = Uri.parse(mEnclosureUrl);
-        // The episode title to display in a notification for a completed download
-        String itemTitle = mItem.getTitle();
-        byte[] itemTitleBytes = itemTitle.getBytes();
-        // Create a progressive stream download action
-        ProgressiveDownloadAction downloadAction = ProgressiveDownloadAction.createDownloadAction(
-                uri, itemTitleBytes,
-                null);
+        // Create a segmented download action, which fetches the episode in parallel ranges.
+        // The action carries the episode, which is inserted into the database once the download
+        // completes, and shows the episode title in a notification for a completed download.
+        SegmentedDownloadAction downloadAction = SegmentedDownloadAction.createDownloadAction(
+                getDownloadEntry());
         // Start the service with that action
         PodcastDownloadService.startWithAction(
                 NowPlayingActivity.this,
                 PodcastDownloadService.class,
                 downloadAction,
                 false);
-
-        Intent intent = new Intent(NowPlayingActivity.this, PodcastDownloadService.class);
-        Bundle b = new Bundle();
-        b.putParcelable(EXTRA_DOWNLOAD_ENTRY, getDownloadEntry());
-        intent.putExtra(EXTRA_DOWNLOAD_ENTRY, b);
-        startService(intent);
     }
 
     /**
@@ -864,9 +928,9 @@ public class NowPlayingActivity extends AppCompatActivity implements DownloadMan
      */
     private void startServiceWithRemoveAction() {
         Uri uri = Uri.parse(mEnclosureUrl);
-        // Create a progressive stream remove action
-        ProgressiveDownloadAction removeAction = ProgressiveDownloadAction.createRemoveAction(
-                uri, null, null);
+        // Create a remove action, which removes the episode and its segments from the cache
+        SegmentedDownloadAction removeAction = SegmentedDownloadAction.createRemoveAction(
+                uri, null);
         // Start the service with that action
         PodcastDownloadService.startWithAction(
                 NowPlayingActivity.this,
@@ -875,33 +939,58 @@ public class NowPlayingActivity extends AppCompatActivity implements DownloadMan
                 false);
     }
 
-    // DownloadManager.Listener
-
-    @Override
-    public void onInitialized(DownloadManager downloadManager) {
-
-    }
-
-    @Override
-    public void onTaskStateChanged(DownloadManager downloadManager, DownloadManager.TaskState taskState) {
+    /**
+     * Called when the download progress of the episode changed, or with null once the download
+     * or removal finished.
+     */
+    private void onDownloadProgressChanged(@Nullable DownloadProgress downloadProgress) {
+        showDownloadProgress(downloadProgress);
+        if (downloadProgress == null) {
+            return;
+        }
         // Please note that inserting a downloaded episode after the 'download' action completed
         // is done in the onTaskStateChanged() of PodcastDownloadService. Even if the user leaves
         // NowPlayingActivity, the episode can be inserted into the database after the download completed.
-        if (taskState.state == TaskState.STATE_COMPLETED && taskState.action.isRemoveAction) {
+        int state = downloadProgress.getState();
+        if (state == TaskState.STATE_COMPLETED && downloadProgress.isRemoveAction()) {
             // When the 'remove' action is completed, delete the downloaded episode from the database.
             deleteDownloadedEpisode();
             mStateStarted = false;
-        } else if (taskState.state == TaskState.STATE_FAILED) {
+        } else if (state == TaskState.STATE_FAILED) {
             mStateStarted = false;
             // Show a toast message that indicates download failed
             Toast.makeText(this, getString(R.string.toast_download_failed),
                     Toast.LENGTH_SHORT).show();
-        } else if (taskState.state == TaskState.STATE_STARTED && !taskState.action.isRemoveAction) {
+        } else if (state == TaskState.STATE_STARTED && !downloadProgress.isRemoveAction()) {
             // Set mStateStarted to true
             mStateStarted = true;
         }
     }
 
+    /**
+     * Shows the progress of the running download as the subtitle of the action bar, e.g.
+     * "Downloading 42% · 1.2 MB/s · 03:10 left".
+     */
+    private void showDownloadProgress(@Nullable DownloadProgress downloadProgress) {
+        ActionBar actionBar = getSupportActionBar();
+        if (actionBar == null) {
+            return;
+        }
+        if (downloadProgress == null || downloadProgress.isRemoveAction()
+                || downloadProgress.getState() != TaskState.STATE_STARTED) {
+            actionBar.setSubtitle(null);
+            return;
+        }
+        int percentage = (int) Math.max(0f, downloadProgress.getPercentage());
+        if (downloadProgress.getEtaMillis() == C.TIME_UNSET) {
+            actionBar.setSubtitle(getString(R.string.download_progress, percentage));
+        } else {
+            actionBar.setSubtitle(getString(R.string.download_progress_eta, percentage,
+                    Formatter.formatShortFileSize(this, downloadProgress.getBytesPerSecond()),
+                    DateUtils.formatElapsedTime(downloadProgress.getEtaMillis() / 1000)));
+        }
+    }
+
     /**
      * Deletes the downloaded episode from the database.
      */
@@ -919,9 +1008,4 @@ public class NowPlayingActivity extends AppCompatActivity implements DownloadMan
         Toast.makeText(this, getString(R.string.toast_remove_downloaded_episode),
                 Toast.LENGTH_SHORT).show();
     }
-
-    @Override
-    public void onIdle(DownloadManager downloadManager) {
-
-    }
 }
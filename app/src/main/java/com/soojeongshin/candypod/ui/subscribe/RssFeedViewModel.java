@@ -20,8 +20,12 @@ import androidx.lifecycle.LiveData;
 import androidx.lifecycle.ViewModel;
 
 import com.soojeongshin.candypod.data.CandyPodRepository;
+import com.soojeongshin.candypod.data.EpisodeEntry;
+import com.soojeongshin.candypod.data.PodcastEntry;
 import com.soojeongshin.candypod.model.rss.RssFeed;
 
+import java.util.List;
+
 /**
  * RssFeedViewModel class is designed to store and manage {@link LiveData} RssFeed
  */
@@ -39,4 +43,11 @@ public class RssFeedViewModel extends ViewModel {
     public LiveData<RssFeed> getRssFeed() {
         return mRssFeed;
     }
+
+    /**
+     * Subscribes to the podcast, see {@link CandyPodRepository#subscribe}.
+     */
+    public void subscribe(PodcastEntry podcastEntry, List<EpisodeEntry> previewEpisodes) {
+        mRepository.subscribe(podcastEntry, previewEpisodes);
+    }
 }
@@ -40,6 +40,7 @@ import com.bumptech.glide.request.target.ImageViewTarget;
 import com.soojeongshin.candypod.AppExecutors;
 import com.soojeongshin.candypod.R;
 import com.soojeongshin.candypod.data.CandyPodDatabase;
+import com.soojeongshin.candypod.data.EpisodeEntry;
 import com.soojeongshin.candypod.data.PodcastEntry;
 import com.soojeongshin.candypod.databinding.ActivitySubscribeBinding;
 import com.soojeongshin.candypod.model.LookupResponse;
@@ -85,6 +86,8 @@ public class SubscribeActivity extends AppCompatActivity {
     /** The podcast image used when there is no episode image */
     private String mPodcastImage;
     private String mResultArtwork100;
+    /** The feed URL of the podcast, stored with the podcast when the user subscribes */
+    private String mFeedUrl;
 
     /** ViewModel for SubscribeActivity */
     private SubscribeViewModel mSubscribeViewModel;
@@ -210,6 +213,7 @@ public class SubscribeActivity extends AppCompatActivity {
                         // Hide the loading indicator
                         mSubscribeBinding.setIsLoading(false);
                     } else {
+                        mFeedUrl = feedUrl;
                         // Get the RssFeedViewModel from the factory
                         setupRssFeedViewModel(feedUrl);
                         // Observe changes in the RssFeed
@@ -371,7 +375,7 @@ public class SubscribeActivity extends AppCompatActivity {
         if (mItemList != null && !mItemList.isEmpty()) {
             // Create the PodcastEntry based on the data
             mPodcastEntry = new PodcastEntry(mResultId, title, description, author,
-                    artworkImageUrl, mItemList, new Date());
+                    artworkImageUrl, new Date(), mFeedUrl);
         }
     }
 
@@ -424,13 +428,9 @@ public class SubscribeActivity extends AppCompatActivity {
         // Check if the PodcastEntry is not null
         if (mPodcastEntry != null) {
             if (!mIsSubscribed) {
-                AppExecutors.getInstance().diskIO().execute(new Runnable() {
-                    @Override
-                    public void run() {
-                        // Insert the podcast data into the database by using the podcastDao
-                        mDb.podcastDao().insertPodcast(mPodcastEntry);
-                    }
-                });
+                // Insert the podcast data and its episodes into the database
+                mRssFeedViewModel.subscribe(mPodcastEntry,
+                        EpisodeEntry.fromItems(mResultId, mItemList));
             } else {
                 mPodcastEntry = mPodcastEntryViewModel.getPodcastEntry().getValue();
                 AppExecutors.getInstance().diskIO().execute(new Runnable() {
@@ -19,7 +19,6 @@ package com.soojeongshin.candypod.ui.subscribe;
 import androidx.databinding.DataBindingUtil;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
-import android.text.Html;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -27,14 +26,13 @@ import android.view.ViewGroup;
 
 import com.bumptech.glide.Glide;
 import com.soojeongshin.candypod.R;
+import com.soojeongshin.candypod.model.rss.EpisodeDisplay;
 import com.soojeongshin.candypod.databinding.SubscribeListItemBinding;
 import com.soojeongshin.candypod.model.rss.Item;
 import com.soojeongshin.candypod.utilities.CandyPodUtils;
 
 import java.util.List;
 
-import static com.soojeongshin.candypod.utilities.Constants.IMG_HTML_TAG;
-import static com.soojeongshin.candypod.utilities.Constants.REPLACEMENT_EMPTY;
 
 /**
  * Exposes a list of episodes from a list of {@link Item} to a {@link RecyclerView}.
@@ -147,16 +145,10 @@ public class SubscribeAdapter extends RecyclerView.Adapter<SubscribeAdapter.Subs
             String title = item.getTitle();
             mSubscribeListItemBinding.tvItemTitle.setText(title);
 
-            // Get the description of an episode
-            String description = item.getDescription();
-            // If the description contains the img tag, remove it, then convert HTML to plain text.
-            // Reference: @see "https://stackoverflow.com/questions/11178533/how-to-skip-image-tag-in-html-data-in-android"
-            // @see "https://stackoverflow.com/questions/22573319/how-to-convert-html-text-to-plain-text-in-android"
-            if (description != null) {
-                String descriptionWithoutImageTag = description.replaceAll(IMG_HTML_TAG, REPLACEMENT_EMPTY);
-                mSubscribeListItemBinding.tvItemDescription.setText(
-                        Html.fromHtml(Html.fromHtml(descriptionWithoutImageTag).toString()));
-            }
+            // The description, the pub date and the duration are formatted when the feed is
+            // parsed, so only set the text here
+            EpisodeDisplay display = item.getDisplay();
+            mSubscribeListItemBinding.tvItemDescription.setText(display.getSnippet());
 
             // If an episode image exists, use it. Otherwise, use the podcast image.
             String imageUrl = CandyPodUtils.getItemImageUrl(item, mPodcastImage);
@@ -165,21 +157,15 @@ public class SubscribeAdapter extends RecyclerView.Adapter<SubscribeAdapter.Subs
                     .load(imageUrl)
                     .into(mSubscribeListItemBinding.ivItemArtwork);
 
-            // Get the pub date of an episode
-            String pubDate = item.getPubDate();
-            if (pubDate != null) {
-                // Convert the pub date into something to display to users
-                String formattedPubDate = CandyPodUtils.getFormattedDateString(pubDate);
-                mSubscribeListItemBinding.tvItemPubDate.setText(formattedPubDate);
-            }
+            mSubscribeListItemBinding.tvItemPubDate.setText(display.getDisplayPubDate());
 
-            // Get the duration of an episode
-            String iTunesDuration = item.getITunesDuration();
-            if (TextUtils.isEmpty(iTunesDuration)) {
+            String duration = display.getDisplayDuration();
+            if (TextUtils.isEmpty(duration)) {
                 // Hide the duration TextView when the duration is empty
                 mSubscribeListItemBinding.tvItemDuration.setVisibility(View.GONE);
             } else {
-                mSubscribeListItemBinding.tvItemDuration.setText(iTunesDuration);
+                mSubscribeListItemBinding.tvItemDuration.setVisibility(View.VISIBLE);
+                mSubscribeListItemBinding.tvItemDuration.setText(duration);
             }
         }
     }
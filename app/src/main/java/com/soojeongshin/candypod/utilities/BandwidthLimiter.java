@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.utilities;
+
+import android.os.SystemClock;
+
+/**
+ * Limits the rate at which the downloads read from the network, shared by all downloads so that
+ * the limit applies to their sum. The limiter lets a read through as long as there are bytes
+ * left in the current second, and makes the following reads wait for the bytes it overdrew.
+ */
+public class BandwidthLimiter {
+
+    /** Used when the downloads are not limited */
+    public static final long UNLIMITED = 0;
+
+    private long mBytesPerSecond;
+    private long mAvailableBytes;
+    private long mLastRefillMillis;
+
+    /**
+     * Creates a BandwidthLimiter.
+     * @param bytesPerSecond The maximum number of bytes per second, or UNLIMITED
+     */
+    public BandwidthLimiter(long bytesPerSecond) {
+        mBytesPerSecond = bytesPerSecond;
+        mLastRefillMillis = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Changes the maximum number of bytes per second. The waiting reads are woken up, so that a
+     * higher or removed limit takes effect immediately.
+     * @param bytesPerSecond The maximum number of bytes per second, or UNLIMITED
+     */
+    public synchronized void setBytesPerSecond(long bytesPerSecond) {
+        mBytesPerSecond = bytesPerSecond;
+        mAvailableBytes = 0;
+        mLastRefillMillis = SystemClock.elapsedRealtime();
+        notifyAll();
+    }
+
+    public synchronized long getBytesPerSecond() {
+        return mBytesPerSecond;
+    }
+
+    /**
+     * Blocks until the given number of bytes, which were just read, fit in the limit.
+     * @param bytes The number of bytes read
+     */
+    public synchronized void acquire(int bytes) throws InterruptedException {
+        while (mBytesPerSecond != UNLIMITED) {
+            refill();
+            if (mAvailableBytes > 0) {
+                mAvailableBytes -= bytes;
+                return;
+            }
+            // Wait until the overdrawn bytes are paid back
+            wait(1 + -mAvailableBytes * 1000 / mBytesPerSecond);
+        }
+    }
+
+    private void refill() {
+        long now = SystemClock.elapsedRealtime();
+        // At most one second of bytes is saved up, so that an idle period is not followed by
+        // a burst
+        long elapsedMillis = Math.min(now - mLastRefillMillis, 1000);
+        mAvailableBytes = Math.min(mBytesPerSecond,
+                mAvailableBytes + elapsedMillis * mBytesPerSecond / 1000);
+        mLastRefillMillis = now;
+    }
+}
@@ -20,12 +20,15 @@ import android.appwidget.AppWidgetManager;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.os.BatteryManager;
 import android.preference.PreferenceManager;
+import androidx.core.net.ConnectivityManagerCompat;
 import androidx.recyclerview.widget.RecyclerView;
 import android.text.TextUtils;
 import android.view.animation.AnimationUtils;
@@ -37,129 +40,71 @@ import com.soojeongshin.candypod.model.rss.ItemImage;
 import com.soojeongshin.candypod.widget.PodcastWidgetProvider;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.TimeUnit;
 
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 import timber.log.Timber;
 
-import static com.soojeongshin.candypod.utilities.Constants.FORMATTED_PATTERN;
-import static com.soojeongshin.candypod.utilities.Constants.PUB_DATE_PATTERN;
-import static com.soojeongshin.candypod.utilities.Constants.PUB_DATE_PATTERN_TIME_ZONE;
-import static com.soojeongshin.candypod.utilities.Constants.REQUEST_METHOD_GET;
-import static com.soojeongshin.candypod.utilities.Constants.SPLIT_COLON;
-import static com.soojeongshin.candypod.utilities.Constants.SPLIT_INDEX_ONE;
-import static com.soojeongshin.candypod.utilities.Constants.SPLIT_INDEX_TWO;
-import static com.soojeongshin.candypod.utilities.Constants.SPLIT_INDEX_ZERO;
-
 public class CandyPodUtils {
 
     /**
-     * Converts the publication date into something to display to users.
-     * @param pubDate The publication date (i.e. Tue, 25 Nov 2018 05:00:00 -0000)
-     * @return The formatted date (i.e. Nov 25, 2018)
-     */
-    public static String getFormattedDateString(String pubDate) {
-        SimpleDateFormat simpleDateFormat =
-                new SimpleDateFormat(PUB_DATE_PATTERN, Locale.US);
-        Date currentTime = null;
-        try {
-            currentTime = simpleDateFormat.parse(pubDate);
-        } catch (ParseException e) {
-            Timber.e("Error formatting date: " + e.getMessage());
-            // If the pubDate pattern is different from "Tue, 25 Nov 2018 05:00:00 -0000",
-            // use getFormattedDateStringFromGmt() method.
-            return getFormattedDateStringFromGmt(pubDate);
-        }
-
-        SimpleDateFormat formatter = new SimpleDateFormat(FORMATTED_PATTERN, Locale.US);
-        return formatter.format(currentTime);
-    }
-
-    /**
-     * Converts the publication date into something to display to users.
-     *
-     * @param pubDate The publication date (i.e. Tue, 25 Nov 2018 05:00 GMT)
-     * @return The formatted date (i.e. Nov 25, 2018)
-     */
-    private static String getFormattedDateStringFromGmt(String pubDate) {
-        SimpleDateFormat simpleDateFormat =
-                new SimpleDateFormat(PUB_DATE_PATTERN_TIME_ZONE, Locale.US);
-        Date currentTime = null;
-        try {
-            currentTime = simpleDateFormat.parse(pubDate);
-        } catch (ParseException e) {
-            Timber.e("Error formatting date: " + e.getMessage());
-            // If failed converting a date, use pubDate.
-            return pubDate;
-        }
-
-        SimpleDateFormat formatter = new SimpleDateFormat(FORMATTED_PATTERN, Locale.US);
-        return formatter.format(currentTime);
-    }
-
-    /**
-     * Makes a HTTP request and returns Bitmap from the given image URL.
+     * Makes a HTTP request with the shared OkHttpClient and returns Bitmap from the given
+     * image URL. Artwork is served from the HTTP cache when it is still fresh. The image is
+     * downsampled by a power of two while it is decoded, so that the bitmap is not much larger
+     * than maxSize, since podcast artwork is often 3000 pixels wide.
+     * @param context Context used to get the shared OkHttpClient
      * @param urlString The podcast image URL
+     * @param maxSize The size in pixels which the width and the height are reduced towards
      *
      * Reference: @see "https://stackoverflow.com/questions/8992964/android-load-from-url-to-bitmap"
-     *                 "https://developer.android.com/reference/java/net/HttpURLConnection"
+     * "https://developer.android.com/topic/performance/graphics/load-bitmap"
      */
-    public static Bitmap loadImage(String urlString) throws IOException {
-        HttpURLConnection connection = null;
-        InputStream stream = null;
-        URL url = createUrl(urlString);
-        Bitmap bitmap = null;
+    public static Bitmap loadImage(Context context, String urlString, int maxSize)
+            throws IOException {
+        // If the URL is null or malformed, then return early
+        HttpUrl url = urlString == null ? null : HttpUrl.parse(urlString);
+        if (url == null) {
+            return null;
+        }
+
+        Request request = new Request.Builder().url(url).build();
+        Response response = OkHttpUtil.getClient(context).newCall(request).execute();
+        byte[] bytes;
         try {
-            // If the URL is null, then return early
-            if (url == null) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                Timber.e("Error response code: " + response.code());
                 return null;
             }
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod(REQUEST_METHOD_GET);
-            connection.connect();
-            if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-                stream = connection.getInputStream();
-            } else {
-                Timber.e("Error response code: " + connection.getResponseCode());
-            }
-
-            BitmapFactory.Options bmOptions = new BitmapFactory.Options();
-            bmOptions.inSampleSize = 1;
-            bitmap = BitmapFactory.decodeStream(stream, null, bmOptions);
-
-        } catch (IOException e) {
-            e.printStackTrace();
+            bytes = body.bytes();
         } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
-            if (stream != null) {
-                stream.close();
-            }
+            response.close();
         }
-        return bitmap;
+
+        // Read the dimensions first, then decode the downsampled image
+        BitmapFactory.Options bmOptions = new BitmapFactory.Options();
+        bmOptions.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, bmOptions);
+        bmOptions.inSampleSize = calculateInSampleSize(bmOptions.outWidth, bmOptions.outHeight,
+                maxSize);
+        bmOptions.inJustDecodeBounds = false;
+        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, bmOptions);
     }
 
     /**
-     * Builds the URL from the given string URL.
-     * @param urlString The podcast image URL
+     * Returns the largest power of two which keeps both the width and the height at least
+     * maxSize when they are divided by it.
      */
-    private static URL createUrl(String urlString) {
-        URL url = null;
-        try {
-            url = new URL(urlString);
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
+    private static int calculateInSampleSize(int width, int height, int maxSize) {
+        int inSampleSize = 1;
+        while (width / (inSampleSize * 2) >= maxSize && height / (inSampleSize * 2) >= maxSize) {
+            inSampleSize *= 2;
         }
-        return url;
+        return inSampleSize;
     }
 
     // Update App widgets
@@ -234,6 +179,30 @@ public class CandyPodUtils {
         return networkInfo != null && networkInfo.isConnected();
     }
 
+    /**
+     * Check if the device is connected to a network which is not metered and not roaming,
+     * which is usually Wi-Fi or Ethernet.
+     * @return True if connected to an unmetered network
+     */
+    public static boolean isOnUnmeteredNetwork(Context context) {
+        ConnectivityManager connectivityManager = (ConnectivityManager)
+                context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected() && !networkInfo.isRoaming()
+                && !ConnectivityManagerCompat.isActiveNetworkMetered(connectivityManager);
+    }
+
+    /**
+     * Check if the device is plugged in to a charger, from the sticky battery status broadcast.
+     * @return True if charging
+     */
+    public static boolean isCharging(Context context) {
+        Intent batteryStatus = context.registerReceiver(null,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return batteryStatus != null
+                && batteryStatus.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+    }
+
     /**
      * Runs the layout animation for RecyclerView.
      * Reference: @see "https://proandroiddev.com/enter-animation-using-recyclerview-and-layoutanimation-part-1-list-75a874a5d213"
@@ -259,18 +228,4 @@ public class CandyPodUtils {
         Locale locale = new Locale(languageCode);
         return locale.getDisplayLanguage(Locale.ENGLISH);
     }
-
-    /**
-     * Converts hh:mm:ss string to seconds.
-     * @param item Item object that holds the current episode data
-     * Reference: @see "https://stackoverflow.com/questions/8257641/java-how-to-convert-a-string-hhmmss-to-a-duration"
-     */
-    public static long getDurationInMilliSeconds(Item item) {
-        String timestampStr = item.getITunesDuration();
-        String[] tokens = timestampStr.split(SPLIT_COLON);
-        int hours = Integer.parseInt(tokens[SPLIT_INDEX_ZERO]);
-        int minutes = Integer.parseInt(tokens[SPLIT_INDEX_ONE]);
-        int seconds = Integer.parseInt(tokens[SPLIT_INDEX_TWO]);
-        return TimeUnit.HOURS.toSeconds(hours) + TimeUnit.MINUTES.toSeconds(minutes) + seconds;
-    }
 }
\ No newline at end of file
@@ -28,6 +28,9 @@ public class Constants {
     /** Base URL for iTunes Search API */
     public static final String I_TUNES_BASE_URL = "https://rss.itunes.apple.com/api/v1/";
 
+    /** The time a cached top podcasts chart is shown without refreshing it */
+    public static final long TOP_CHART_CACHE_TTL_HOURS = 6;
+
     /** URL for a lookup request */
     public static final String I_TUNES_LOOKUP = "https://itunes.apple.com/lookup";
 
@@ -45,17 +48,26 @@ public class Constants {
     public static final String EXTRA_RESULT_NAME = "extra_result_name";
     public static final String EXTRA_ITEM = "extra_item";
     public static final String EXTRA_PODCAST_IMAGE = "extra_podcast_image";
-    public static final String EXTRA_DOWNLOAD_ENTRY = "extra_download_entry";
+    public static final String EXTRA_DOWNLOAD_ENTRIES = "extra_download_entries";
     public static final String EXTRA_RESULT_ARTWORK_100 = "extra_result_artwork_100";
 
-    public static final String ACTION_RELEASE_OLD_PLAYER = "action_release_old_player";
+    /** The action of the intent which starts PodcastService to play an episode */
+    public static final String ACTION_PLAY_EPISODE = "action_play_episode";
+    /** The action of the intent which starts PodcastDownloadService to download a batch of
+     * episodes */
+    public static final String ACTION_DOWNLOAD_EPISODES = "action_download_episodes";
 
     /** Database name */
     public static final String DATABASE_NAME = "podcast";
 
-    /** Used to replace the HTML img tag with empty string */
-    public static final String IMG_HTML_TAG = "<img.+?>";
-    public static final String REPLACEMENT_EMPTY = "";
+    /** The maximum length of the plain text description shown in the episode lists */
+    public static final int SNIPPET_MAX_LENGTH = 300;
+
+    /** The number of episodes loaded at once in the DetailActivity */
+    public static final int EPISODE_PAGE_SIZE = 20;
+    public static final int EPISODE_INITIAL_LOAD_SIZE = 40;
+    /** How far from the edge of the loaded episodes the next page is loaded */
+    public static final int EPISODE_PREFETCH_DISTANCE = 10;
 
     /** The value of column width in the GridAutofitLayoutManager */
     public static final int GRID_AUTO_FIT_COLUMN_WIDTH = 380;
@@ -83,6 +95,26 @@ public class Constants {
     public static final int FAST_FORWARD_INCREMENT = 30000; // 30 sec
     public static final int REWIND_INCREMENT = 10000; // 10 sec
 
+    /** The maximum number of upcoming episodes in the media session queue */
+    public static final int QUEUE_MAX_SIZE = 10;
+    /** The number of bytes of the next episode in the queue which are prefetched into the cache */
+    public static final long QUEUE_PREFETCH_BYTES = 1024 * 1024; // About a minute of audio
+    /** The maximum width and height of the artwork bitmap published in the media metadata */
+    public static final int MEDIA_ART_MAX_SIZE_PX = 512;
+    /** The difference between the duration of the feed and of the media that is ignored (milliseconds) */
+    public static final long DURATION_TOLERANCE_MILLIS = 1000;
+
+    /** The duration kept behind the playback position, so that rewinding does not reload it
+     * (milliseconds) */
+    public static final int BACK_BUFFER_MS = 15000; // 15 sec, more than the rewind increment
+
+    /** The number of playback start latencies kept for the histogram */
+    public static final int PLAYBACK_LATENCY_HISTORY_SIZE = 100;
+    /** The number of playback traces of the latest episodes kept for the report */
+    public static final int PLAYBACK_TRACE_HISTORY_SIZE = 20;
+    /** The interval at which the playback position is checked for the first audio (milliseconds) */
+    public static final long FIRST_AUDIO_POLL_INTERVAL_MILLIS = 10;
+
     /** Constant used to format elapsed time */
     public static final int FORMAT_ELAPSED_TIME = 1000;
     /** The initial delay, the time to delay first execution */
@@ -90,15 +122,37 @@ public class Constants {
     /** The period between successive executions */
     public static final long PROGRESS_UPDATE_INITIAL_INTERVAL = 100;
 
+    /** The unique name of the periodic work which refreshes the subscribed feeds */
+    public static final String WORK_FEED_REFRESH = "work_feed_refresh";
+    /** How often the subscribed feeds are refreshed in the background (hours) */
+    public static final long FEED_REFRESH_INTERVAL_HOURS = 6;
+    /** The default number of feeds refreshed at the same time */
+    public static final int FEED_REFRESH_MAX_CONCURRENCY = 3;
+    /** The maximum number of episodes parsed for the preview of a feed in the subscribe screen */
+    public static final int RSS_PREVIEW_ITEM_LIMIT = 50;
+    /** Keys for the input and output data of the feed refresh work */
+    public static final String KEY_MAX_CONCURRENCY = "key_max_concurrency";
+    public static final String KEY_FEED_COUNT = "key_feed_count";
+    public static final String KEY_CHANGED_COUNT = "key_changed_count";
+    public static final String KEY_ELAPSED_MILLIS = "key_elapsed_millis";
+    public static final String KEY_AUTO_DOWNLOAD_COUNT = "key_auto_download_count";
+
+    /** The maximum number of the latest episodes an auto-download rule keeps downloaded */
+    public static final int AUTO_DOWNLOAD_MAX_EPISODES = 10;
+    /** The number of episodes which is suggested for a new auto-download rule */
+    public static final int AUTO_DOWNLOAD_DEFAULT_EPISODES = 3;
+    /** Keys for the arguments of the auto-download dialog */
+    public static final String ARG_HAS_RULE = "arg_has_rule";
+    public static final String ARG_EPISODE_COUNT = "arg_episode_count";
+    public static final String ARG_UNMETERED_ONLY = "arg_unmetered_only";
+    public static final String ARG_CHARGING_ONLY = "arg_charging_only";
+    /** The maximum number of episodes sent to the download service in one intent, so that the
+     * intent stays well below the size limit of a transaction */
+    public static final int DOWNLOAD_BATCH_SIZE = 10;
+
     /** Scheduler Job id in the PodcastDownloadService*/
     public static final int JOB_ID = 1;
 
-    /** Strings used to convert ITunes duration */
-    public static final String SPLIT_COLON = ":";
-    public static final int SPLIT_INDEX_ZERO = 0;
-    public static final int SPLIT_INDEX_ONE = 1;
-    public static final int SPLIT_INDEX_TWO = 2;
-
     /** The pubDate pattern */
     public static final String PUB_DATE_PATTERN = "EEE, d MMM yyyy HH:mm:ss Z";
     public static final String PUB_DATE_PATTERN_TIME_ZONE = "EEE, d MMM yyyy HH:mm z";
@@ -108,8 +162,9 @@ public class Constants {
     /** Type of the share intent data */
     public static final String SHARE_INTENT_TYPE_TEXT = "text/plain";
 
-    /** The type of request method for reading information from the server */
-    public static final String REQUEST_METHOD_GET = "GET";
+    /** The response headers used for the conditional GET of the feed */
+    public static final String HEADER_ETAG = "ETag";
+    public static final String HEADER_LAST_MODIFIED = "Last-Modified";
 
     /** The default value of String from SharedPreference */
     public static final String PREF_DEF_VALUE = "";
@@ -137,6 +192,47 @@ public class Constants {
     public static final String FILE_DOWNLOADS = "downloads";
     /** Action file */
     public static final String FILE_ACTIONS = "actions";
+    /** The directory of the segments of the episodes being downloaded */
+    public static final String FILE_SEGMENTS = "segments";
+    /** HTTP cache directory */
+    public static final String FILE_HTTP_CACHE = "http";
+
+    /** The maximum size of the HTTP cache in bytes */
+    public static final long HTTP_CACHE_SIZE_BYTES = 20 * 1024 * 1024;
+
+    /** The default maximum size of the streamed episodes in the media cache in bytes. The
+     * downloaded episodes are not counted. */
+    public static final long STREAMING_CACHE_MAX_BYTES = 500L * 1024 * 1024; // About 8 hours of audio
+    /** The number of bytes in a kilobyte, which the download speed setting is chosen in */
+    public static final long BYTES_PER_KILOBYTE = 1024;
+    /** The number of bytes in a megabyte, which the size settings are chosen in */
+    public static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+    /** The maximum number of episodes which are downloaded at the same time */
+    public static final int DOWNLOAD_MAX_SIMULTANEOUS = 2;
+    /** The number of times a download is retried, each segment resuming where it stopped */
+    public static final int DOWNLOAD_MIN_RETRY_COUNT = 5;
+    /** The maximum number of segments of an episode which are fetched in parallel */
+    public static final int DOWNLOAD_SEGMENT_COUNT = 4;
+    /** The minimum length of a segment, so that short episodes are not split (bytes) */
+    public static final long DOWNLOAD_MIN_SEGMENT_BYTES = 4 * 1024 * 1024;
+    /** The size of the buffer used to fetch and copy a segment (bytes) */
+    public static final int DOWNLOAD_BUFFER_SIZE_BYTES = 32 * 1024;
+    /** The maximum time cancel waits for the segments to stop (milliseconds) */
+    public static final long DOWNLOAD_CANCEL_TIMEOUT_MILLIS = 1000;
+    /** The interval at which the progress of the running downloads is shown (milliseconds) */
+    public static final long DOWNLOAD_PROGRESS_UPDATE_INTERVAL_MILLIS = 500;
+    /** The maximum number of enclosure URLs looked up in one query of the storage report */
+    public static final int STORAGE_USAGE_QUERY_BATCH_SIZE = 500;
+    /** The maximum number of idle connections kept in the shared connection pool */
+    public static final int HTTP_MAX_IDLE_CONNECTIONS = 5;
+    /** The time an idle connection is kept alive in the shared connection pool */
+    public static final long HTTP_KEEP_ALIVE_MINUTES = 5;
+    /** The max-age used for iTunes API responses which have no cache headers */
+    public static final int API_CACHE_MAX_AGE_SECONDS = 60 * 60;
+    /** The maximum number of search responses kept in memory */
+    public static final int SEARCH_CACHE_SIZE = 20;
+    /** The maximum number of lookup responses kept in memory */
+    public static final int LOOKUP_CACHE_SIZE = 50;
 
     /** A key for saving the current state */
     public static final String STATE_SEARCH_QUERY = "state_search_query";
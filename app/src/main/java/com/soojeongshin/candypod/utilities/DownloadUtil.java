@@ -17,20 +17,39 @@
 package com.soojeongshin.candypod.utilities;
 
 import android.content.Context;
+import android.net.Uri;
+import android.preference.PreferenceManager;
 
+import androidx.annotation.VisibleForTesting;
+
+import com.soojeongshin.candypod.AppExecutors;
 import com.soojeongshin.candypod.R;
+import com.soojeongshin.candypod.data.CandyPodDatabase;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ext.okhttp.OkHttpDataSourceFactory;
 import com.google.android.exoplayer2.offline.DownloadManager;
+import com.google.android.exoplayer2.offline.DownloaderConstructorHelper;
 import com.google.android.exoplayer2.offline.ProgressiveDownloadAction;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
 import com.google.android.exoplayer2.upstream.cache.Cache;
-import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.google.android.exoplayer2.upstream.cache.CacheUtil;
 import com.google.android.exoplayer2.upstream.cache.SimpleCache;
 import com.google.android.exoplayer2.util.Util;
 
 import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import static com.soojeongshin.candypod.utilities.Constants.DOWNLOAD_MAX_SIMULTANEOUS;
+import static com.soojeongshin.candypod.utilities.Constants.DOWNLOAD_MIN_RETRY_COUNT;
 import static com.soojeongshin.candypod.utilities.Constants.FILE_ACTIONS;
 import static com.soojeongshin.candypod.utilities.Constants.FILE_DOWNLOADS;
+import static com.soojeongshin.candypod.utilities.Constants.FILE_SEGMENTS;
+import static com.soojeongshin.candypod.utilities.Constants.STREAMING_CACHE_MAX_BYTES;
 
 /**
  * Reference: @see "https://github.com/google/ExoPlayer/tree/io18"
@@ -38,22 +57,130 @@ import static com.soojeongshin.candypod.utilities.Constants.FILE_DOWNLOADS;
 public class DownloadUtil {
 
     private static Cache sCache;
+    private static StreamingCacheEvictor sEvictor;
     private static DownloadManager sDownloadManager;
+    private static DataSource.Factory sUpstreamFactory;
+    private static BandwidthLimiter sBandwidthLimiter;
+    private static File sSegmentDirectory;
 
     /**
      * As we're sharing the same cache for playback and downloading, we have a singleton for our
-     * whole process.
+     * whole process. The downloaded episodes are kept, and the streamed episodes are evicted
+     * once they take more than the streaming cache budget.
      */
     public static synchronized Cache getCache(Context context) {
         if (sCache == null) {
             // Create a file which points to a directory where we're going to store the downloads
             File cacheDirectory = new File(context.getExternalFilesDir(null), FILE_DOWNLOADS);
             // Instantiate a simple cache
-            sCache = new SimpleCache(cacheDirectory, new NoOpCacheEvictor());
+            sEvictor = new StreamingCacheEvictor(getStreamingCacheMaxBytes(context));
+            sCache = new SimpleCache(cacheDirectory, sEvictor);
+            loadPinnedKeys(context.getApplicationContext(), sCache, sEvictor);
         }
         return sCache;
     }
 
+    /**
+     * Loads the enclosure URLs of the downloaded episodes in the background, so that the evictor
+     * keeps them.
+     */
+    private static void loadPinnedKeys(final Context context, final Cache cache,
+                                       final StreamingCacheEvictor evictor) {
+        AppExecutors.getInstance().diskIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                List<String> urls = CandyPodDatabase.getInstance(context).podcastDao()
+                        .syncLoadDownloadedEnclosureUrls();
+                // The evictor is only used while holding the lock of the cache
+                synchronized (cache) {
+                    evictor.setPinnedKeys(cache, urls);
+                }
+            }
+        });
+    }
+
+    /**
+     * Keeps the episode at the given URL in the cache, because it is being downloaded.
+     * @param context Context used to get the cache
+     * @param url The enclosure URL of the episode
+     */
+    public static void pinDownload(Context context, String url) {
+        Cache cache = getCache(context);
+        synchronized (cache) {
+            sEvictor.pin(url);
+        }
+    }
+
+    /**
+     * Lets the episode at the given URL be evicted from the cache, because its download was
+     * removed.
+     * @param context Context used to get the cache
+     * @param url The enclosure URL of the episode
+     */
+    public static void unpinDownload(Context context, String url) {
+        Cache cache = getCache(context);
+        synchronized (cache) {
+            sEvictor.unpin(cache, url);
+        }
+    }
+
+    /**
+     * Returns the number of cached bytes of each episode in the cache, by enclosure URL.
+     * @param context Context used to get the cache
+     */
+    public static Map<String, Long> getCachedBytes(Context context) {
+        Cache cache = getCache(context);
+        Map<String, Long> cachedBytes = new HashMap<>();
+        synchronized (cache) {
+            for (String key : cache.getKeys()) {
+                long bytes = 0;
+                for (CacheSpan span : cache.getCachedSpans(key)) {
+                    bytes += span.length;
+                }
+                cachedBytes.put(key, bytes);
+            }
+        }
+        return cachedBytes;
+    }
+
+    /**
+     * Returns the maximum number of bytes of the streamed episodes, which the user can change.
+     */
+    public static long getStreamingCacheMaxBytes(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context).getLong(
+                context.getString(R.string.pref_streaming_cache_max_bytes_key),
+                STREAMING_CACHE_MAX_BYTES);
+    }
+
+    /**
+     * Saves the maximum number of bytes of the streamed episodes and evicts the least recently
+     * used streamed episodes which no longer fit.
+     * @param context Context used to get the cache
+     * @param maxBytes The maximum number of bytes of the streamed episodes
+     */
+    public static void setStreamingCacheMaxBytes(Context context, long maxBytes) {
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putLong(context.getString(R.string.pref_streaming_cache_max_bytes_key), maxBytes)
+                .apply();
+        Cache cache = getCache(context);
+        synchronized (cache) {
+            sEvictor.setMaxStreamingBytes(cache, maxBytes);
+        }
+    }
+
+    /**
+     * Returns true if the whole media at the given URL is in the cache, e.g. because the episode
+     * was downloaded. The check only reads the index of the cache, so it is cheap.
+     * @param context Context used to get the cache
+     * @param url The enclosure URL of the episode
+     */
+    public static boolean isFullyCached(Context context, String url) {
+        CacheUtil.CachingCounters counters = new CacheUtil.CachingCounters();
+        CacheUtil.getCached(new DataSpec(Uri.parse(url)), getCache(context), counters);
+        return counters.contentLength != C.LENGTH_UNSET
+                && counters.alreadyCachedBytes >= counters.contentLength;
+    }
+
     /**
      * Creates a singleton instance of a DownloadManager for our whole process.
      */
@@ -62,20 +189,135 @@ public class DownloadUtil {
             // Create a file, because it needs to persist some information about downloads that are
             // in progress
             File actionFile = new File(context.getExternalCacheDir(), FILE_ACTIONS);
+            // The segments of the episodes are fetched into this directory before they are
+            // copied into the cache
+            sSegmentDirectory = new File(context.getExternalCacheDir(), FILE_SEGMENTS);
+            sBandwidthLimiter = new BandwidthLimiter(getDownloadBandwidthLimit(context));
+            // DataSourceFactory for loading data to populate the cache, which shares the OkHttp
+            // connection pool with playback and the API calls, limited to the bandwidth ceiling
+            sUpstreamFactory = new ThrottledDataSource.Factory(
+                    new DefaultDataSourceFactory(
+                            context,
+                            new OkHttpDataSourceFactory(
+                                    OkHttpUtil.getMediaClient(context),
+                                    Util.getUserAgent(context,
+                                            context.getString(R.string.app_name)))),
+                    sBandwidthLimiter);
             // Instantiate a DownloadManager
             sDownloadManager =
                     new DownloadManager(
                             // The same cache as the one we're using for the cache during playback
-                            getCache(context),
-                            // DataSourceFactory for loading data to populate the cache
-                            new DefaultDataSourceFactory(
-                                    context,
-                                    Util.getUserAgent(context, context.getString(R.string.app_name))),
+                            new DownloaderConstructorHelper(getCache(context), sUpstreamFactory),
+                            DOWNLOAD_MAX_SIMULTANEOUS,
+                            DOWNLOAD_MIN_RETRY_COUNT,
                             actionFile,
-                            // Deserializer for progressive download action, because we're downloading
-                            // progressive media
+                            // Deserializer for segmented download action, and for progressive
+                            // download action, which was used before and may still be in the
+                            // action file
+                            SegmentedDownloadAction.DESERIALIZER,
                             ProgressiveDownloadAction.DESERIALIZER);
+            sDownloadManager.addListener(new PinningListener(context.getApplicationContext()));
         }
         return sDownloadManager;
     }
+
+    /**
+     * Returns the factory of the data sources which the segments are fetched with.
+     * Only valid once the DownloadManager is created.
+     */
+    static DataSource.Factory getUpstreamFactory() {
+        return sUpstreamFactory;
+    }
+
+    /**
+     * Returns the directory of the segments being fetched.
+     * Only valid once the DownloadManager is created.
+     */
+    static File getSegmentDirectory() {
+        return sSegmentDirectory;
+    }
+
+    /**
+     * Sets the factory and the directory the segments are fetched with, without creating the
+     * DownloadManager, so that a test can download with its own DownloadManager.
+     */
+    @VisibleForTesting
+    static synchronized void setSegmentFetching(DataSource.Factory upstreamFactory,
+                                                File segmentDirectory) {
+        sUpstreamFactory = upstreamFactory;
+        sSegmentDirectory = segmentDirectory;
+    }
+
+    /**
+     * Returns the maximum number of bytes per second of all downloads together, or
+     * {@link BandwidthLimiter#UNLIMITED}.
+     */
+    public static long getDownloadBandwidthLimit(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context).getLong(
+                context.getString(R.string.pref_download_bandwidth_limit_key),
+                BandwidthLimiter.UNLIMITED);
+    }
+
+    /**
+     * Saves the maximum number of bytes per second of all downloads together, and applies it to
+     * the running downloads.
+     * @param context Context used to get the SharedPreferences
+     * @param bytesPerSecond The maximum number of bytes per second, or
+     *                       {@link BandwidthLimiter#UNLIMITED}
+     */
+    public static void setDownloadBandwidthLimit(Context context, long bytesPerSecond) {
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putLong(context.getString(R.string.pref_download_bandwidth_limit_key),
+                        bytesPerSecond)
+                .apply();
+        synchronized (DownloadUtil.class) {
+            if (sBandwidthLimiter != null) {
+                sBandwidthLimiter.setBytesPerSecond(bytesPerSecond);
+            }
+        }
+    }
+
+    /**
+     * Pins the episodes while they are downloaded, including the downloads which are restored
+     * from the action file, and unpins them once their download is removed, has failed or was
+     * canceled, so that the partly downloaded episodes are evicted like streamed ones. The
+     * episodes are only inserted into the database once downloaded, so a failed download is not
+     * pinned again the next time the cache is created.
+     */
+    private static class PinningListener implements DownloadManager.Listener {
+
+        private final Context mContext;
+
+        PinningListener(Context context) {
+            mContext = context;
+        }
+
+        @Override
+        public void onInitialized(DownloadManager downloadManager) {
+            // Do nothing
+        }
+
+        @Override
+        public void onTaskStateChanged(DownloadManager downloadManager,
+                                       DownloadManager.TaskState taskState) {
+            String url = taskState.action.uri.toString();
+            if (!taskState.action.isRemoveAction
+                    && (taskState.state == DownloadManager.TaskState.STATE_QUEUED
+                    || taskState.state == DownloadManager.TaskState.STATE_STARTED)) {
+                pinDownload(mContext, url);
+            } else if (taskState.action.isRemoveAction
+                    && taskState.state == DownloadManager.TaskState.STATE_COMPLETED) {
+                unpinDownload(mContext, url);
+            } else if (!taskState.action.isRemoveAction
+                    && (taskState.state == DownloadManager.TaskState.STATE_FAILED
+                    || taskState.state == DownloadManager.TaskState.STATE_CANCELED)) {
+                unpinDownload(mContext, url);
+            }
+        }
+
+        @Override
+        public void onIdle(DownloadManager downloadManager) {
+            // Do nothing
+        }
+    }
 }
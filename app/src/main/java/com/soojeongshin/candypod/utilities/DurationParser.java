@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.utilities;
+
+/**
+ * Parses the itunes:duration of an episode into milliseconds.
+ * <p>
+ * Apple documents the duration as a number of seconds, but feeds also use hh:mm:ss, mm:ss and
+ * h:mm:ss, and some add a fraction of a second. The duration is read one character at a time,
+ * so parsing does not allocate or throw, and anything else is reported as {@link #UNKNOWN}.
+ * <p>
+ * This class only uses the Java library, so that it can be run by the JMH benchmarks.
+ */
+public class DurationParser {
+
+    /** Returned when the duration is empty or malformed */
+    public static final long UNKNOWN = 0;
+
+    /** The hh:mm:ss format has at most three fields */
+    private static final int MAX_FIELDS = 3;
+
+    /** Enough digits for any real duration, which also keeps the arithmetic from overflowing */
+    private static final int MAX_DIGITS = 9;
+
+    /** Only milliseconds of a fraction of a second are kept */
+    private static final int MAX_FRACTION_DIGITS = 3;
+
+    private static final int SECONDS_PER_MINUTE = 60;
+    private static final int MILLIS_PER_SECOND = 1000;
+
+    private DurationParser() {
+        // Restrict instantiation
+    }
+
+    /**
+     * Parses the duration into milliseconds.
+     * @param duration The duration of an episode (i.e. 01:02:03, 62:03, 3723 or 3723.5)
+     * @return The duration in milliseconds, or {@link #UNKNOWN} if the duration is empty or
+     * malformed
+     */
+    public static long parseMillis(String duration) {
+        if (duration == null) {
+            return UNKNOWN;
+        }
+        int end = duration.length();
+        while (end > 0 && duration.charAt(end - 1) == ' ') {
+            end--;
+        }
+        int i = 0;
+        while (i < end && duration.charAt(i) == ' ') {
+            i++;
+        }
+
+        long seconds = 0;
+        int fieldCount = 0;
+        while (true) {
+            // Read the digits of a field
+            long field = 0;
+            int start = i;
+            while (i < end && isDigit(duration.charAt(i))) {
+                if (i - start == MAX_DIGITS) {
+                    return UNKNOWN;
+                }
+                field = field * 10 + (duration.charAt(i++) - '0');
+            }
+            if (i == start) {
+                return UNKNOWN;
+            }
+            // Minutes and seconds after the first field must be less than 60,
+            // while the first field may be larger, i.e. 62:03
+            if (fieldCount > 0 && field >= SECONDS_PER_MINUTE) {
+                return UNKNOWN;
+            }
+            seconds = seconds * SECONDS_PER_MINUTE + field;
+            fieldCount++;
+
+            if (i == end) {
+                return seconds * MILLIS_PER_SECOND;
+            }
+            char c = duration.charAt(i++);
+            if (c == '.') {
+                // A fraction of a second can only follow the last field
+                return parseFraction(duration, i, end, seconds);
+            }
+            if (c != ':' || fieldCount == MAX_FIELDS) {
+                return UNKNOWN;
+            }
+        }
+    }
+
+    /**
+     * Adds the fraction of a second between the given indices to the seconds.
+     */
+    private static long parseFraction(String duration, int start, int end, long seconds) {
+        if (start == end) {
+            return UNKNOWN;
+        }
+        int millis = 0;
+        int scale = 100;
+        for (int i = start; i < end; i++) {
+            char c = duration.charAt(i);
+            if (!isDigit(c)) {
+                return UNKNOWN;
+            }
+            if (i - start < MAX_FRACTION_DIGITS) {
+                millis += (c - '0') * scale;
+                scale /= 10;
+            }
+        }
+        return seconds * MILLIS_PER_SECOND + millis;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
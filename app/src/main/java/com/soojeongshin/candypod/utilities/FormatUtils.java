@@ -0,0 +1,204 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.utilities;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats the episode metadata for display. Unlike {@link CandyPodUtils}, this class only uses
+ * the Java library, so that it can be run by the JMH benchmarks in the benchmark module.
+ */
+public class FormatUtils {
+
+    private static final String HTML_COMMENT_START = "<!--";
+    private static final String HTML_COMMENT_END = "-->";
+
+    /** The longest entity, including the ampersand, that is decoded (i.e. &#x1F3A7) */
+    private static final int MAX_ENTITY_LENGTH = 10;
+
+    private static final char NO_BREAK_SPACE = '\u00A0';
+
+    /** The tags which separate words in the plain text */
+    private static final String[] BLOCK_TAGS = {"p", "br", "div", "li", "ul", "ol", "tr",
+            "td", "h1", "h2", "h3", "h4", "h5", "h6", "hr", "blockquote"};
+
+    /** The named entities which are commonly found in the episode descriptions */
+    private static final String[] ENTITY_NAMES = {"amp", "lt", "gt", "quot", "apos", "nbsp",
+            "hellip", "mdash", "ndash", "lsquo", "rsquo", "ldquo", "rdquo", "copy"};
+    private static final int[] ENTITY_VALUES = {'&', '<', '>', '"', '\'', NO_BREAK_SPACE,
+            '\u2026', '\u2014', '\u2013', '\u2018', '\u2019', '\u201C', '\u201D', '\u00A9'};
+
+    private FormatUtils() {
+        // Restrict instantiation
+    }
+
+    /**
+     * Formats the duration to display to users, i.e. 1:02:03, or 2:03 when it is shorter than
+     * an hour.
+     * @param durationMillis The duration in milliseconds
+     */
+    public static String formatDuration(long durationMillis) {
+        long totalSeconds = TimeUnit.MILLISECONDS.toSeconds(durationMillis);
+        long hours = totalSeconds / 3600;
+        long minutes = (totalSeconds / 60) % 60;
+        long seconds = totalSeconds % 60;
+        StringBuilder builder = new StringBuilder(8);
+        if (hours > 0) {
+            builder.append(hours).append(':');
+            appendTwoDigits(builder, minutes);
+        } else {
+            builder.append(minutes);
+        }
+        builder.append(':');
+        appendTwoDigits(builder, seconds);
+        return builder.toString();
+    }
+
+    private static void appendTwoDigits(StringBuilder builder, long value) {
+        if (value < 10) {
+            builder.append('0');
+        }
+        builder.append(value);
+    }
+
+    /**
+     * Converts the HTML description into plain text for the episode lists. Tags are removed,
+     * entities are decoded and whitespace is collapsed in a single pass, which stops once
+     * maxLength characters have been written, so long show notes are not read to the end.
+     * @param html The episode description
+     * @param maxLength The maximum length of the text
+     */
+    public static String toPlainText(String html, int maxLength) {
+        if (html == null) {
+            return null;
+        }
+        int length = html.length();
+        StringBuilder text = new StringBuilder(Math.min(length, maxLength));
+        boolean pendingSpace = false;
+        int i = 0;
+        while (i < length && text.length() < maxLength) {
+            char c = html.charAt(i);
+            if (c == '<' && isTagStart(html, i + 1)) {
+                int end;
+                if (html.startsWith(HTML_COMMENT_START, i)) {
+                    end = html.indexOf(HTML_COMMENT_END, i);
+                    if (end >= 0) {
+                        end += HTML_COMMENT_END.length() - 1;
+                    }
+                } else {
+                    end = html.indexOf('>', i);
+                }
+                if (end < 0) {
+                    // The tag is not closed, so the rest is not text
+                    break;
+                }
+                // Block tags, such as p and br, separate words, while inline tags do not
+                if (isBlockTag(html, i + 1, end)) {
+                    pendingSpace = true;
+                }
+                i = end + 1;
+                continue;
+            }
+            int codePoint = c;
+            int next = i + 1;
+            if (c == '&') {
+                int end = html.indexOf(';', i);
+                if (end > i && end - i <= MAX_ENTITY_LENGTH) {
+                    int decoded = decodeEntity(html, i + 1, end);
+                    if (decoded != -1) {
+                        codePoint = decoded;
+                        next = end + 1;
+                    }
+                }
+            }
+            if (Character.isWhitespace(codePoint) || codePoint == NO_BREAK_SPACE) {
+                pendingSpace = true;
+            } else {
+                if (pendingSpace && text.length() > 0) {
+                    text.append(' ');
+                }
+                pendingSpace = false;
+                text.appendCodePoint(codePoint);
+            }
+            i = next;
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns true if the character at the given index starts a tag name, an end tag or a
+     * comment, so that a less-than sign in the text is not taken as a tag.
+     */
+    private static boolean isTagStart(String html, int index) {
+        if (index >= html.length()) {
+            return false;
+        }
+        char c = html.charAt(index);
+        return c == '/' || c == '!' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isBlockTag(String html, int start, int end) {
+        if (html.charAt(start) == '/') {
+            start++;
+        }
+        for (String tag : BLOCK_TAGS) {
+            int tagEnd = start + tag.length();
+            if (tagEnd <= end && html.regionMatches(true, start, tag, 0, tag.length())
+                    && !Character.isLetterOrDigit(html.charAt(tagEnd))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decodes the entity between the ampersand and the semicolon.
+     * @return The code point of the entity, or -1 if it is unknown
+     */
+    private static int decodeEntity(String html, int start, int end) {
+        if (html.charAt(start) == '#') {
+            int radix = 10;
+            int index = start + 1;
+            if (index < end && (html.charAt(index) == 'x' || html.charAt(index) == 'X')) {
+                radix = 16;
+                index++;
+            }
+            if (index == end) {
+                return -1;
+            }
+            int codePoint = 0;
+            for (; index < end; index++) {
+                int digit = Character.digit(html.charAt(index), radix);
+                if (digit < 0) {
+                    return -1;
+                }
+                codePoint = codePoint * radix + digit;
+                if (codePoint > Character.MAX_CODE_POINT) {
+                    return -1;
+                }
+            }
+            return codePoint;
+        }
+        for (int i = 0; i < ENTITY_NAMES.length; i++) {
+            String name = ENTITY_NAMES[i];
+            if (name.length() == end - start && html.startsWith(name, start)) {
+                return ENTITY_VALUES[i];
+            }
+        }
+        return -1;
+    }
+}
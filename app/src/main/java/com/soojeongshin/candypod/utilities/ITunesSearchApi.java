@@ -26,10 +26,14 @@ import java.lang.annotation.RetentionPolicy;
 
 import retrofit2.Call;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
+import retrofit2.http.Headers;
 import retrofit2.http.Path;
 import retrofit2.http.Query;
 import retrofit2.http.Url;
 
+import static com.soojeongshin.candypod.utilities.Constants.RSS_PREVIEW_ITEM_LIMIT;
+
 /**
  * Retrofit turns HTTP API into a Java interface.
  */
@@ -59,14 +63,46 @@ public interface ITunesSearchApi {
             @Query("term") String term
     );
 
-    @GET @Xml
-    Call<RssFeed> getRssFeed(
+    /**
+     * Returns the latest episodes of the RSS feed for the preview in the subscribe screen. Only
+     * the first items are parsed, and the rest of the feed is not downloaded. Feeds are not
+     * stored in the HTTP cache, which they would fill, evicting the charts and the artwork.
+     * @param url The feed URL
+     */
+    @GET @Xml @ItemLimit(RSS_PREVIEW_ITEM_LIMIT)
+    @Headers("Cache-Control: no-store")
+    Call<RssFeed> getRssFeedPreview(
             @Url String url
     );
 
+    /**
+     * Conditional GET of the RSS feed. Null validators are not sent. If the feed has not changed,
+     * the server responds with 304 Not Modified and the body is not parsed. The episodes are
+     * stored in the database, so the feed is not stored in the HTTP cache.
+     * @param url The feed URL
+     * @param ifNoneMatch The ETag of the last response
+     * @param ifModifiedSince The Last-Modified of the last response
+     */
+    @GET @Xml
+    @Headers("Cache-Control: no-store")
+    Call<RssFeed> getRssFeedIfModified(
+            @Url String url,
+            @Header("If-None-Match") String ifNoneMatch,
+            @Header("If-Modified-Since") String ifModifiedSince
+    );
+
     @Retention(RetentionPolicy.RUNTIME)
     @interface Json {}
 
     @Retention(RetentionPolicy.RUNTIME)
     @interface Xml {}
+
+    /**
+     * Limits the number of items parsed from an RSS feed, e.g. for a preview of the latest
+     * episodes. The rest of the feed is not downloaded. A limit of 0 parses no items.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface ItemLimit {
+        int value();
+    }
 }
@@ -21,6 +21,7 @@ import android.content.Context;
 import com.soojeongshin.candypod.AppExecutors;
 import com.soojeongshin.candypod.data.CandyPodDatabase;
 import com.soojeongshin.candypod.data.CandyPodRepository;
+import com.soojeongshin.candypod.data.DownloadProgressTracker;
 import com.soojeongshin.candypod.ui.add.AddPodViewModelFactory;
 import com.soojeongshin.candypod.ui.nowplaying.DownloadEntryViewModelFactory;
 import com.soojeongshin.candypod.ui.detail.PodcastEntryViewModelFactory;
@@ -40,8 +41,11 @@ public class InjectorUtils {
     public static CandyPodRepository provideRepository(Context context) {
         CandyPodDatabase database = CandyPodDatabase.getInstance(context.getApplicationContext());
         AppExecutors executors = AppExecutors.getInstance();
-        ITunesSearchApi iTunesSearchApi = RetrofitClient.getClient().create(ITunesSearchApi.class);
-        return CandyPodRepository.getInstance(database.podcastDao(), iTunesSearchApi, executors);
+        ITunesSearchApi iTunesSearchApi = RetrofitClient.getClient(context).create(ITunesSearchApi.class);
+        DownloadProgressTracker downloadProgressTracker =
+                DownloadProgressTracker.getInstance(context.getApplicationContext());
+        return CandyPodRepository.getInstance(database.podcastDao(), iTunesSearchApi, executors,
+                downloadProgressTracker);
     }
 
     public static AddPodViewModelFactory provideAddPodViewModelFactory(Context context, String country) {
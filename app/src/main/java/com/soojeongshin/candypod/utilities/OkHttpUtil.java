@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.utilities;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import static com.soojeongshin.candypod.utilities.Constants.API_CACHE_MAX_AGE_SECONDS;
+import static com.soojeongshin.candypod.utilities.Constants.FILE_HTTP_CACHE;
+import static com.soojeongshin.candypod.utilities.Constants.HTTP_CACHE_SIZE_BYTES;
+import static com.soojeongshin.candypod.utilities.Constants.HTTP_KEEP_ALIVE_MINUTES;
+import static com.soojeongshin.candypod.utilities.Constants.HTTP_MAX_IDLE_CONNECTIONS;
+
+/**
+ * Provides the OkHttpClient shared by Retrofit, artwork loading and ExoPlayer, so that all
+ * network traffic goes through one connection pool and connections, including their TLS
+ * sessions, are reused across them.
+ * Reference: @see "https://square.github.io/okhttp/3.x/okhttp/okhttp3/OkHttpClient.html"
+ */
+public class OkHttpUtil {
+
+    /** The hosts of the iTunes APIs, whose responses are cached when they have no cache headers */
+    private static final String[] API_HOSTS = {"rss.itunes.apple.com", "itunes.apple.com"};
+
+    private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+    private static final String HEADER_EXPIRES = "Expires";
+
+    private static OkHttpClient sClient;
+    private static OkHttpClient sMediaClient;
+
+    /**
+     * Returns the shared client, which has an HTTP cache on disk and supports HTTP/2.
+     */
+    public static synchronized OkHttpClient getClient(Context context) {
+        if (sClient == null) {
+            File cacheDirectory = new File(context.getApplicationContext().getCacheDir(),
+                    FILE_HTTP_CACHE);
+            sClient = new OkHttpClient.Builder()
+                    .cache(new Cache(cacheDirectory, HTTP_CACHE_SIZE_BYTES))
+                    .connectionPool(new ConnectionPool(HTTP_MAX_IDLE_CONNECTIONS,
+                            HTTP_KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                    .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                    .addNetworkInterceptor(new ApiCacheInterceptor())
+                    .build();
+        }
+        return sClient;
+    }
+
+    /**
+     * Returns the client used by ExoPlayer for streaming and downloading episodes. It shares the
+     * connection pool and the dispatcher with the shared client, but does not use the HTTP cache,
+     * because the audio is cached by ExoPlayer and would evict the small API responses.
+     */
+    public static synchronized OkHttpClient getMediaClient(Context context) {
+        if (sMediaClient == null) {
+            sMediaClient = getClient(context).newBuilder()
+                    .cache(null)
+                    .build();
+        }
+        return sMediaClient;
+    }
+
+    /**
+     * The iTunes APIs do not always send cache headers, so a default max-age is added to their
+     * responses. This lets repeated top chart, search and lookup requests be served from the
+     * HTTP cache. Responses which already have cache headers, and responses from other hosts,
+     * such as RSS feeds, are left unchanged.
+     */
+    private static class ApiCacheInterceptor implements Interceptor {
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            Response response = chain.proceed(request);
+            if (!isApiHost(request.url().host())
+                    || response.header(HEADER_CACHE_CONTROL) != null
+                    || response.header(HEADER_EXPIRES) != null) {
+                return response;
+            }
+            return response.newBuilder()
+                    .header(HEADER_CACHE_CONTROL, "public, max-age=" + API_CACHE_MAX_AGE_SECONDS)
+                    .build();
+        }
+
+        private static boolean isApiHost(String host) {
+            for (String apiHost : API_HOSTS) {
+                if (apiHost.equals(host)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
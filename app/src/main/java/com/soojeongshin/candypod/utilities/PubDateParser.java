@@ -0,0 +1,321 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.utilities;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static com.soojeongshin.candypod.utilities.Constants.FORMATTED_PATTERN;
+import static com.soojeongshin.candypod.utilities.Constants.PUB_DATE_PATTERN;
+import static com.soojeongshin.candypod.utilities.Constants.PUB_DATE_PATTERN_TIME_ZONE;
+
+/**
+ * Parses the RFC 822 and RFC 1123 dates used by the pubDate of RSS feeds into milliseconds
+ * since the epoch.
+ * <p>
+ * The common forms, i.e. "Tue, 25 Nov 2018 05:00:00 -0000", "25 Nov 18 05:00 GMT" or
+ * "Tue, 25 Nov 2018 05:00:00 EST", are parsed by hand without allocating or throwing. Other
+ * forms, such as time zones which are not listed in RFC 822, fall back to SimpleDateFormat.
+ * SimpleDateFormat is not thread-safe, so each thread keeps its own formatters, and they are
+ * used with a ParsePosition, which reports a failure without throwing a ParseException.
+ * <p>
+ * This class only uses the Java library, so that it can be run by the JMH benchmarks.
+ */
+public class PubDateParser {
+
+    /** Returned when the date can't be parsed */
+    public static final long UNKNOWN = 0;
+
+    private static final String[] MONTHS = {"jan", "feb", "mar", "apr", "may", "jun", "jul",
+            "aug", "sep", "oct", "nov", "dec"};
+
+    /** The time zone names defined by RFC 822, and their offsets in hours */
+    private static final String[] ZONE_NAMES = {"GMT", "UT", "UTC", "Z", "EST", "EDT", "CST",
+            "CDT", "MST", "MDT", "PST", "PDT"};
+    private static final int[] ZONE_OFFSET_HOURS = {0, 0, 0, 0, -5, -4, -6, -5, -7, -6, -8, -7};
+
+    private static final long SECONDS_PER_DAY = 86400;
+    private static final int SECONDS_PER_HOUR = 3600;
+    private static final int SECONDS_PER_MINUTE = 60;
+
+    /** The patterns tried when the date can't be parsed by hand */
+    private static final String[] FALLBACK_PATTERNS = {PUB_DATE_PATTERN,
+            PUB_DATE_PATTERN_TIME_ZONE};
+
+    private static final ThreadLocal<SimpleDateFormat[]> sFallbackFormats =
+            new ThreadLocal<SimpleDateFormat[]>() {
+                @Override
+                protected SimpleDateFormat[] initialValue() {
+                    SimpleDateFormat[] formats = new SimpleDateFormat[FALLBACK_PATTERNS.length];
+                    for (int i = 0; i < formats.length; i++) {
+                        formats[i] = new SimpleDateFormat(FALLBACK_PATTERNS[i], Locale.US);
+                    }
+                    return formats;
+                }
+            };
+
+    private static final ThreadLocal<SimpleDateFormat> sDisplayFormat =
+            new ThreadLocal<SimpleDateFormat>() {
+                @Override
+                protected SimpleDateFormat initialValue() {
+                    return new SimpleDateFormat(FORMATTED_PATTERN, Locale.US);
+                }
+            };
+
+    private PubDateParser() {
+        // Restrict instantiation
+    }
+
+    /**
+     * Parses the publication date into milliseconds since the epoch. This method is
+     * thread-safe.
+     * @param pubDate The publication date (i.e. Tue, 25 Nov 2018 05:00:00 -0000)
+     * @return The time in milliseconds, or {@link #UNKNOWN} if the date can't be parsed
+     */
+    public static long parse(String pubDate) {
+        if (pubDate == null) {
+            return UNKNOWN;
+        }
+        long millis = parseRfc822(pubDate);
+        if (millis == UNKNOWN) {
+            millis = parseWithFallbackFormats(pubDate);
+        }
+        return millis;
+    }
+
+    /**
+     * Formats the time in milliseconds as a date to display to users (i.e. Nov 25, 2018), in
+     * the default time zone. This method is thread-safe.
+     */
+    public static String format(long millis) {
+        SimpleDateFormat format = sDisplayFormat.get();
+        // The default time zone may have changed since the formatter was created
+        format.setTimeZone(TimeZone.getDefault());
+        return format.format(new Date(millis));
+    }
+
+    /**
+     * Parses [day-name ","] day month year hour ":" minute [":" second] [zone].
+     * @return The time in milliseconds, or {@link #UNKNOWN} if the date is in another form
+     */
+    private static long parseRfc822(String s) {
+        int length = s.length();
+        int i = skipSpaces(s, 0);
+
+        // The day name is optional and is not validated
+        if (i < length && isLetter(s.charAt(i))) {
+            while (i < length && isLetter(s.charAt(i))) {
+                i++;
+            }
+            if (i < length && s.charAt(i) == ',') {
+                i++;
+            }
+            i = skipSpaces(s, i);
+        }
+
+        int start = i;
+        int day = 0;
+        while (i < length && isDigit(s.charAt(i)) && i - start < 2) {
+            day = day * 10 + (s.charAt(i++) - '0');
+        }
+        if (i == start || day < 1 || day > 31) {
+            return UNKNOWN;
+        }
+        i = skipSeparator(s, i);
+
+        // Full month names are accepted by their first three letters
+        int month = -1;
+        if (i + 3 <= length) {
+            for (int m = 0; m < MONTHS.length; m++) {
+                if (s.regionMatches(true, i, MONTHS[m], 0, 3)) {
+                    month = m + 1;
+                    break;
+                }
+            }
+        }
+        if (month == -1) {
+            return UNKNOWN;
+        }
+        i += 3;
+        while (i < length && isLetter(s.charAt(i))) {
+            i++;
+        }
+        i = skipSeparator(s, i);
+
+        start = i;
+        int year = 0;
+        while (i < length && isDigit(s.charAt(i)) && i - start < 4) {
+            year = year * 10 + (s.charAt(i++) - '0');
+        }
+        if (i - start == 2) {
+            // RFC 2822 interprets two digit years from 50 as 19xx
+            year += year < 50 ? 2000 : 1900;
+        } else if (i - start != 4) {
+            return UNKNOWN;
+        }
+        int afterYear = i;
+        i = skipSpaces(s, i);
+        if (i == afterYear) {
+            return UNKNOWN;
+        }
+
+        int hour = parseTwoDigits(s, i, true);
+        if (hour < 0) {
+            return UNKNOWN;
+        }
+        i += i + 1 < length && isDigit(s.charAt(i + 1)) ? 2 : 1;
+        if (i >= length || s.charAt(i) != ':') {
+            return UNKNOWN;
+        }
+        int minute = parseTwoDigits(s, i + 1, false);
+        if (minute < 0) {
+            return UNKNOWN;
+        }
+        i += 3;
+        int second = 0;
+        if (i < length && s.charAt(i) == ':') {
+            second = parseTwoDigits(s, i + 1, false);
+            if (second < 0) {
+                return UNKNOWN;
+            }
+            i += 3;
+        }
+        if (hour > 23 || minute > 59 || second > 60) {
+            return UNKNOWN;
+        }
+
+        i = skipSpaces(s, i);
+        int offsetSeconds = 0;
+        if (i < length) {
+            char c = s.charAt(i);
+            if (c == '+' || c == '-') {
+                int offsetHours = parseTwoDigits(s, i + 1, false);
+                int next = i + 3;
+                if (next < length && s.charAt(next) == ':') {
+                    next++;
+                }
+                int offsetMinutes = parseTwoDigits(s, next, false);
+                if (offsetHours < 0 || offsetMinutes < 0 || offsetMinutes > 59) {
+                    return UNKNOWN;
+                }
+                offsetSeconds = offsetHours * SECONDS_PER_HOUR
+                        + offsetMinutes * SECONDS_PER_MINUTE;
+                if (c == '-') {
+                    offsetSeconds = -offsetSeconds;
+                }
+                i = next + 2;
+            } else {
+                int zoneEnd = i;
+                while (zoneEnd < length && isLetter(s.charAt(zoneEnd))) {
+                    zoneEnd++;
+                }
+                int zone = findZone(s, i, zoneEnd);
+                if (zone == -1) {
+                    // Leave other time zone names to SimpleDateFormat
+                    return UNKNOWN;
+                }
+                offsetSeconds = ZONE_OFFSET_HOURS[zone] * SECONDS_PER_HOUR;
+                i = zoneEnd;
+            }
+        }
+        if (skipSpaces(s, i) != length) {
+            return UNKNOWN;
+        }
+
+        long epochSeconds = daysFromCivil(year, month, day) * SECONDS_PER_DAY
+                + hour * SECONDS_PER_HOUR + minute * SECONDS_PER_MINUTE + second
+                - offsetSeconds;
+        return epochSeconds * 1000;
+    }
+
+    private static long parseWithFallbackFormats(String pubDate) {
+        for (SimpleDateFormat format : sFallbackFormats.get()) {
+            ParsePosition position = new ParsePosition(0);
+            Date date = format.parse(pubDate, position);
+            if (date != null) {
+                return date.getTime();
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Returns the number of days from 1970-01-01 to the given date in the proleptic Gregorian
+     * calendar.
+     * Reference: @see "http://howardhinnant.github.io/date_algorithms.html#days_from_civil"
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    /**
+     * Returns the number at the given index, which has two digits, or one or two digits if
+     * allowSingleDigit is true, or -1 if there is no number.
+     */
+    private static int parseTwoDigits(String s, int index, boolean allowSingleDigit) {
+        if (index >= s.length() || !isDigit(s.charAt(index))) {
+            return -1;
+        }
+        int value = s.charAt(index) - '0';
+        if (index + 1 < s.length() && isDigit(s.charAt(index + 1))) {
+            return value * 10 + (s.charAt(index + 1) - '0');
+        }
+        return allowSingleDigit ? value : -1;
+    }
+
+    private static int findZone(String s, int start, int end) {
+        int length = end - start;
+        for (int i = 0; i < ZONE_NAMES.length; i++) {
+            String name = ZONE_NAMES[i];
+            if (name.length() == length && s.regionMatches(true, start, name, 0, length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipSpaces(String s, int index) {
+        while (index < s.length() && s.charAt(index) == ' ') {
+            index++;
+        }
+        return index;
+    }
+
+    /** Skips the spaces or the dash between the day, the month and the year */
+    private static int skipSeparator(String s, int index) {
+        if (index < s.length() && s.charAt(index) == '-') {
+            return index + 1;
+        }
+        return skipSpaces(s, index);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
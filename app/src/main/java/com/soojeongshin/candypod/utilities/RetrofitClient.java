@@ -16,6 +16,8 @@
 
 package com.soojeongshin.candypod.utilities;
 
+import android.content.Context;
+
 import com.soojeongshin.candypod.BuildConfig;
 
 import okhttp3.OkHttpClient;
@@ -25,18 +27,19 @@ import retrofit2.Retrofit;
 import static com.soojeongshin.candypod.utilities.Constants.I_TUNES_BASE_URL;
 
 /**
- * Creates a Retrofit object.
+ * Creates a Retrofit object which uses the shared OkHttpClient, see {@link OkHttpUtil}.
  */
 public class RetrofitClient {
 
     /** Static variable for Retrofit */
     private static Retrofit sRetrofit = null;
 
-    public static Retrofit getClient() {
+    public static synchronized Retrofit getClient(Context context) {
         if (sRetrofit == null) {
             // Add OkHttp interceptor which logs HTTP request and response data only when the debug mode is true.
+            // The builder shares the connection pool and the cache of the shared client.
             // Reference: @see "https://stackoverflow.com/questions/32514410/logging-with-retrofit-2"
-            OkHttpClient.Builder okHttpClientBuilder = new OkHttpClient.Builder();
+            OkHttpClient.Builder okHttpClientBuilder = OkHttpUtil.getClient(context).newBuilder();
             if (BuildConfig.DEBUG_MODE) {
                 HttpLoggingInterceptor interceptor = new HttpLoggingInterceptor();
                 interceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.utilities;
+
+import com.soojeongshin.candypod.model.rss.RssFeed;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+
+/**
+ * {@link Converter} which streams the response body through the {@link RssFeedParser} instead
+ * of building the whole document with reflection.
+ */
+public class RssFeedConverter implements Converter<ResponseBody, RssFeed> {
+
+    private final RssFeedParser mParser;
+
+    /**
+     * @param maxItems The maximum number of items to parse, see {@link RssFeedParser}
+     */
+    RssFeedConverter(int maxItems) {
+        mParser = new RssFeedParser(maxItems);
+    }
+
+    @Override
+    public RssFeed convert(ResponseBody value) throws IOException {
+        try {
+            // Use the charset from the Content-Type header if there is one. Otherwise, the
+            // parser detects the encoding from the XML declaration.
+            String encoding = null;
+            MediaType contentType = value.contentType();
+            if (contentType != null) {
+                Charset charset = contentType.charset();
+                if (charset != null) {
+                    encoding = charset.name();
+                }
+            }
+            return mParser.parse(value.byteStream(), encoding);
+        } finally {
+            value.close();
+        }
+    }
+}
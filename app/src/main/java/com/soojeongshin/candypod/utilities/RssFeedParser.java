@@ -0,0 +1,317 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.utilities;
+
+import com.soojeongshin.candypod.model.rss.EpisodeDisplay;
+import com.soojeongshin.candypod.model.rss.ArtworkImage;
+import com.soojeongshin.candypod.model.rss.Category;
+import com.soojeongshin.candypod.model.rss.Channel;
+import com.soojeongshin.candypod.model.rss.Enclosure;
+import com.soojeongshin.candypod.model.rss.Item;
+import com.soojeongshin.candypod.model.rss.ItemImage;
+import com.soojeongshin.candypod.model.rss.RssFeed;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses an RSS feed into {@link RssFeed} with an {@link XmlPullParser}.
+ * <p>
+ * The feed is read as a stream, one item at a time, and only the elements used by the models
+ * are kept. Everything else, such as the full show notes in content:encoded, is skipped without
+ * being turned into strings. Elements are matched by local name, like the non-strict SimpleXML
+ * binding did.
+ *
+ * Reference: @see "https://developer.android.com/training/basics/network-ops/xml"
+ */
+public class RssFeedParser {
+
+    /** Used when all items of the feed should be parsed */
+    public static final int NO_ITEM_LIMIT = Integer.MAX_VALUE;
+
+    private static final String TAG_CHANNEL = "channel";
+    private static final String TAG_ITEM = "item";
+    private static final String TAG_TITLE = "title";
+    private static final String TAG_DESCRIPTION = "description";
+    private static final String TAG_SUMMARY = "summary";
+    private static final String TAG_AUTHOR = "author";
+    private static final String TAG_LANGUAGE = "language";
+    private static final String TAG_CATEGORY = "category";
+    private static final String TAG_IMAGE = "image";
+    private static final String TAG_URL = "url";
+    private static final String TAG_PUB_DATE = "pubDate";
+    private static final String TAG_DURATION = "duration";
+    private static final String TAG_ENCLOSURE = "enclosure";
+    private static final String TAG_GUID = "guid";
+
+    private static final String ATTR_HREF = "href";
+    private static final String ATTR_TEXT = "text";
+    private static final String ATTR_URL = "url";
+    private static final String ATTR_TYPE = "type";
+    private static final String ATTR_LENGTH = "length";
+
+    /** The factory is thread-safe once created, so it is shared by all parsers */
+    private static XmlPullParserFactory sFactory;
+
+    /** The maximum number of items to parse */
+    private final int mMaxItems;
+
+    /**
+     * Creates an RssFeedParser.
+     * @param maxItems The maximum number of items to parse, 0 to parse no items. Once reached,
+     *                 the rest of the stream is not read, so channel elements after the items
+     *                 are not parsed.
+     */
+    public RssFeedParser(int maxItems) {
+        mMaxItems = maxItems;
+    }
+
+    private static synchronized XmlPullParserFactory getFactory() throws XmlPullParserException {
+        if (sFactory == null) {
+            sFactory = XmlPullParserFactory.newInstance();
+            sFactory.setNamespaceAware(true);
+        }
+        return sFactory;
+    }
+
+    /**
+     * Parses the RSS feed from the given stream.
+     * @param in The stream of the feed XML
+     * @param encoding The encoding of the stream, or null to detect it from the XML declaration
+     */
+    public RssFeed parse(InputStream in, String encoding) throws IOException {
+        try {
+            XmlPullParser parser = getFactory().newPullParser();
+            parser.setInput(in, encoding);
+            return readRss(parser);
+        } catch (XmlPullParserException e) {
+            throw new IOException("Error parsing the RSS feed: " + e.getMessage(), e);
+        }
+    }
+
+    private RssFeed readRss(XmlPullParser parser) throws XmlPullParserException, IOException {
+        RssFeed rssFeed = new RssFeed();
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG && TAG_CHANNEL.equals(parser.getName())) {
+                rssFeed.setChannel(readChannel(parser));
+                break;
+            }
+            eventType = parser.next();
+        }
+        return rssFeed;
+    }
+
+    private Channel readChannel(XmlPullParser parser) throws XmlPullParserException, IOException {
+        Channel channel = new Channel();
+        List<Category> categories = new ArrayList<>();
+        List<ArtworkImage> artworkImages = new ArrayList<>();
+        List<Item> items = new ArrayList<>();
+        channel.setCategory(categories);
+        channel.setImages(artworkImages);
+        channel.setItemList(items);
+
+        int depth = parser.getDepth();
+        while (nextStartTag(parser, depth)) {
+            String name = parser.getName();
+            boolean isRss = isRssElement(parser);
+            if (TAG_ITEM.equals(name)) {
+                if (items.size() >= mMaxItems) {
+                    // No items are parsed, e.g. when the limit is 0
+                    break;
+                }
+                items.add(readItem(parser));
+                if (items.size() >= mMaxItems) {
+                    // Stop reading the stream, the rest of the feed is not needed
+                    break;
+                }
+            } else if (TAG_TITLE.equals(name) && isRss) {
+                channel.setTitle(readText(parser));
+            } else if (TAG_DESCRIPTION.equals(name) && isRss) {
+                channel.setDescription(readText(parser));
+            } else if (TAG_AUTHOR.equals(name) && !isRss) {
+                channel.setITunesAuthor(readText(parser));
+            } else if (TAG_LANGUAGE.equals(name)) {
+                channel.setLanguage(readText(parser));
+            } else if (TAG_CATEGORY.equals(name) && !isRss) {
+                Category category = new Category();
+                category.setText(parser.getAttributeValue(null, ATTR_TEXT));
+                categories.add(category);
+                skip(parser);
+            } else if (TAG_IMAGE.equals(name)) {
+                artworkImages.add(readArtworkImage(parser));
+            } else {
+                skip(parser);
+            }
+        }
+        return channel;
+    }
+
+    private Item readItem(XmlPullParser parser) throws XmlPullParserException, IOException {
+        Item item = new Item();
+        List<Enclosure> enclosures = null;
+        List<ItemImage> itemImages = null;
+
+        int depth = parser.getDepth();
+        while (nextStartTag(parser, depth)) {
+            String name = parser.getName();
+            boolean isRss = isRssElement(parser);
+            if (TAG_TITLE.equals(name) && isRss) {
+                item.setTitle(readText(parser));
+            } else if (TAG_DESCRIPTION.equals(name) && isRss) {
+                item.setDescription(readText(parser));
+            } else if (TAG_SUMMARY.equals(name)) {
+                item.setITunesSummary(readText(parser));
+            } else if (TAG_PUB_DATE.equals(name)) {
+                item.setPubDate(readText(parser));
+            } else if (TAG_DURATION.equals(name)) {
+                item.setITunesDuration(readText(parser));
+            } else if (TAG_GUID.equals(name)) {
+                item.setGuid(readText(parser));
+            } else if (TAG_ENCLOSURE.equals(name)) {
+                if (enclosures == null) {
+                    enclosures = new ArrayList<>(1);
+                }
+                enclosures.add(new Enclosure(
+                        parser.getAttributeValue(null, ATTR_URL),
+                        parser.getAttributeValue(null, ATTR_TYPE),
+                        parser.getAttributeValue(null, ATTR_LENGTH)));
+                skip(parser);
+            } else if (TAG_IMAGE.equals(name)) {
+                if (itemImages == null) {
+                    itemImages = new ArrayList<>(1);
+                }
+                itemImages.add(new ItemImage(parser.getAttributeValue(null, ATTR_HREF)));
+                skip(parser);
+            } else {
+                skip(parser);
+            }
+        }
+        item.setEnclosures(enclosures);
+        item.setItemImages(itemImages);
+        // Compute the display fields while the feed is parsed in the background, so that they
+        // are not computed when the item is bound or stored
+        item.setDisplay(EpisodeDisplay.from(item.getDescription(), item.getPubDate(),
+                item.getITunesDuration()));
+        return item;
+    }
+
+    /**
+     * Reads both the RSS image, which has a url child element, and the itunes:image, which has
+     * an href attribute.
+     */
+    private ArtworkImage readArtworkImage(XmlPullParser parser)
+            throws XmlPullParserException, IOException {
+        ArtworkImage artworkImage = new ArtworkImage();
+        artworkImage.setImageHref(parser.getAttributeValue(null, ATTR_HREF));
+        int depth = parser.getDepth();
+        while (nextStartTag(parser, depth)) {
+            if (TAG_URL.equals(parser.getName())) {
+                artworkImage.setImageUrl(readText(parser));
+            } else {
+                skip(parser);
+            }
+        }
+        return artworkImage;
+    }
+
+    /**
+     * Moves to the next start tag that is a direct child of the element at the given depth.
+     * @return False when the end tag of the element at the given depth is reached
+     */
+    private static boolean nextStartTag(XmlPullParser parser, int depth)
+            throws XmlPullParserException, IOException {
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.END_TAG && parser.getDepth() == depth) {
+                return false;
+            }
+            if (eventType == XmlPullParser.START_TAG && parser.getDepth() == depth + 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the text of the current element, including CDATA sections, and moves to its end
+     * tag. Child elements are skipped.
+     */
+    private static String readText(XmlPullParser parser) throws XmlPullParserException, IOException {
+        StringBuilder text = null;
+        String first = null;
+        int depth = parser.getDepth();
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.END_TAG && parser.getDepth() == depth) {
+                break;
+            }
+            if (eventType == XmlPullParser.START_TAG) {
+                skip(parser);
+            } else if (eventType == XmlPullParser.TEXT) {
+                // Most elements have a single text event, so only allocate a builder when
+                // the text is split by entities or comments
+                if (first == null) {
+                    first = parser.getText();
+                } else {
+                    if (text == null) {
+                        text = new StringBuilder(first);
+                    }
+                    text.append(parser.getText());
+                }
+            }
+        }
+        String result = text == null ? first : text.toString();
+        return result == null ? null : result.trim();
+    }
+
+    /**
+     * Skips the current element and all of its children.
+     */
+    private static void skip(XmlPullParser parser) throws XmlPullParserException, IOException {
+        int depth = 1;
+        while (depth != 0) {
+            switch (parser.next()) {
+                case XmlPullParser.END_TAG:
+                    depth--;
+                    break;
+                case XmlPullParser.START_TAG:
+                    depth++;
+                    break;
+                case XmlPullParser.END_DOCUMENT:
+                    return;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the current element has no namespace, which means it is a plain RSS
+     * element rather than an iTunes or other extension element.
+     */
+    private static boolean isRssElement(XmlPullParser parser) {
+        String namespace = parser.getNamespace();
+        return namespace == null || namespace.isEmpty();
+    }
+}
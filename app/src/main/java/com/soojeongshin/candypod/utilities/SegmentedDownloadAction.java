@@ -0,0 +1,170 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.utilities;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.offline.DownloadAction;
+import com.google.android.exoplayer2.offline.Downloader;
+import com.google.android.exoplayer2.offline.DownloaderConstructorHelper;
+import com.google.android.exoplayer2.util.Util;
+import com.soojeongshin.candypod.data.DownloadEntry;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * An action to download or remove an episode with a {@link SegmentedDownloader}. Like the
+ * progressive download action, the enclosure URL is the key of the episode in the cache, so the
+ * downloaded episode is played from the cache.
+ * <p>
+ * A download action carries the {@link DownloadEntry} of the episode, which is inserted into
+ * the database once the download completes. The entry is saved with the action in the action
+ * file of the DownloadManager, so it survives a restart of the app together with the download.
+ * Reference: @see "https://github.com/google/ExoPlayer/blob/release-v2/library/core/src/main/java/com/google/android/exoplayer2/offline/ProgressiveDownloadAction.java"
+ */
+public class SegmentedDownloadAction extends DownloadAction {
+
+    private static final String TYPE = "segmented";
+    /** Version 1 added the download entry */
+    private static final int VERSION = 1;
+
+    /** Restores the actions which were saved in the action file */
+    public static final Deserializer DESERIALIZER = new Deserializer(TYPE, VERSION) {
+        @Override
+        public SegmentedDownloadAction readFromStream(int version, DataInputStream input)
+                throws IOException {
+            Uri uri = Uri.parse(input.readUTF());
+            boolean isRemoveAction = input.readBoolean();
+            byte[] data = new byte[input.readInt()];
+            input.readFully(data);
+            DownloadEntry downloadEntry = null;
+            if (version >= 1 && input.readBoolean()) {
+                downloadEntry = readDownloadEntry(input);
+            }
+            return new SegmentedDownloadAction(uri, isRemoveAction, data, downloadEntry);
+        }
+    };
+
+    @Nullable
+    private final DownloadEntry mDownloadEntry;
+
+    private SegmentedDownloadAction(Uri uri, boolean isRemoveAction, byte[] data,
+                                    @Nullable DownloadEntry downloadEntry) {
+        super(TYPE, VERSION, uri, isRemoveAction, data != null ? data : new byte[0]);
+        mDownloadEntry = downloadEntry;
+    }
+
+    /**
+     * Creates an action to download the episode.
+     * @param downloadEntry The episode, whose enclosure URL is downloaded and whose title is
+     *                      shown in the notification
+     */
+    public static SegmentedDownloadAction createDownloadAction(DownloadEntry downloadEntry) {
+        String itemTitle = downloadEntry.getItemTitle() != null
+                ? downloadEntry.getItemTitle() : "";
+        return new SegmentedDownloadAction(Uri.parse(downloadEntry.getItemEnclosureUrl()), false,
+                Util.getUtf8Bytes(itemTitle), downloadEntry);
+    }
+
+    /**
+     * Creates an action to remove the downloaded episode from the cache.
+     * @param uri The enclosure URL of the episode
+     * @param data The episode title, may be null
+     */
+    public static SegmentedDownloadAction createRemoveAction(Uri uri, byte[] data) {
+        return new SegmentedDownloadAction(uri, true, data, null);
+    }
+
+    /**
+     * Returns the episode which is downloaded, or null for a remove action.
+     */
+    @Nullable
+    public DownloadEntry getDownloadEntry() {
+        return mDownloadEntry;
+    }
+
+    @Override
+    public Downloader createDownloader(DownloaderConstructorHelper downloaderConstructorHelper) {
+        return new SegmentedDownloader(uri, downloaderConstructorHelper.getCache(),
+                DownloadUtil.getUpstreamFactory(), DownloadUtil.getSegmentDirectory());
+    }
+
+    @Override
+    public void writeToStream(DataOutputStream output) throws IOException {
+        output.writeUTF(uri.toString());
+        output.writeBoolean(isRemoveAction);
+        output.writeInt(data.length);
+        output.write(data);
+        output.writeBoolean(mDownloadEntry != null);
+        if (mDownloadEntry != null) {
+            writeDownloadEntry(output, mDownloadEntry);
+        }
+    }
+
+    private static void writeDownloadEntry(DataOutputStream output, DownloadEntry downloadEntry)
+            throws IOException {
+        writeString(output, downloadEntry.getPodcastId());
+        writeString(output, downloadEntry.getTitle());
+        writeString(output, downloadEntry.getArtworkImageUrl());
+        writeString(output, downloadEntry.getItemTitle());
+        writeString(output, downloadEntry.getItemDescription());
+        writeString(output, downloadEntry.getItemPubDate());
+        writeString(output, downloadEntry.getItemDuration());
+        writeString(output, downloadEntry.getItemEnclosureUrl());
+        writeString(output, downloadEntry.getItemEnclosureType());
+        writeString(output, downloadEntry.getItemEnclosureLength());
+        writeString(output, downloadEntry.getItemImageUrl());
+    }
+
+    /**
+     * Reads the entry written by {@link #writeDownloadEntry}. The display fields are computed
+     * again from the description, the pub date and the duration.
+     */
+    private static DownloadEntry readDownloadEntry(DataInputStream input) throws IOException {
+        return new DownloadEntry(readString(input), readString(input), readString(input),
+                readString(input), readString(input), readString(input), readString(input),
+                readString(input), readString(input), readString(input), readString(input));
+    }
+
+    /**
+     * Writes a string which may be null. writeUTF is not used, because it is limited to 64 KB
+     * and the description of an episode can be longer.
+     */
+    private static void writeString(DataOutputStream output, @Nullable String value)
+            throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            byte[] bytes = Util.getUtf8Bytes(value);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    @Nullable
+    private static String readString(DataInputStream input) throws IOException {
+        if (!input.readBoolean()) {
+            return null;
+        }
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return Util.fromUtf8Bytes(bytes);
+    }
+}
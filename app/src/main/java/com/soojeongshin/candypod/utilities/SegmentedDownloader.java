@@ -0,0 +1,526 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.utilities;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.offline.Downloader;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheUtil;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import timber.log.Timber;
+
+import static com.soojeongshin.candypod.utilities.Constants.DOWNLOAD_BUFFER_SIZE_BYTES;
+import static com.soojeongshin.candypod.utilities.Constants.DOWNLOAD_CANCEL_TIMEOUT_MILLIS;
+import static com.soojeongshin.candypod.utilities.Constants.DOWNLOAD_MIN_SEGMENT_BYTES;
+import static com.soojeongshin.candypod.utilities.Constants.DOWNLOAD_SEGMENT_COUNT;
+
+/**
+ * Downloads an episode as several HTTP range segments which are fetched in parallel, so that a
+ * slow or dropped connection only holds back its own part of the episode.
+ * <p>
+ * The cache lets only one writer at a time write the content of a key, so the segments are not
+ * written to the cache directly. Each segment is fetched into its own file first, and appended
+ * to when the download is retried, so that a segment resumes where it stopped. Once fetched,
+ * the segment is copied into the cache and its file is deleted. The segments which are already
+ * in the cache are skipped.
+ * <p>
+ * The episode is only split if the server answers a range request with a partial response,
+ * otherwise it is downloaded as a single segment.
+ */
+public class SegmentedDownloader implements Downloader {
+
+    /** The running downloaders by cache key, used to report the progress of each segment */
+    private static final Map<String, SegmentedDownloader> sRunningDownloaders = new HashMap<>();
+
+    private final Uri mUri;
+    private final String mKey;
+    private final Cache mCache;
+    private final DataSource.Factory mUpstreamFactory;
+    private final File mSegmentDirectory;
+    /** The prefix of the files of the segments, which is a digest of the key */
+    private final String mFilePrefix;
+    private final AtomicBoolean mCanceled = new AtomicBoolean();
+
+    private volatile long mContentLength = C.LENGTH_UNSET;
+    private volatile boolean mRangeSupported;
+    private volatile Segment[] mSegments;
+    private volatile ExecutorService mExecutor;
+
+    /**
+     * Creates a SegmentedDownloader.
+     * @param uri The enclosure URL of the episode, which is also the key in the cache
+     * @param cache The cache the episode is downloaded into
+     * @param upstreamFactory The factory of the data sources which read from the network
+     * @param segmentDirectory The directory of the files of the segments being fetched
+     */
+    public SegmentedDownloader(Uri uri, Cache cache, DataSource.Factory upstreamFactory,
+                               File segmentDirectory) {
+        mUri = uri;
+        mKey = uri.toString();
+        mCache = cache;
+        mUpstreamFactory = upstreamFactory;
+        mSegmentDirectory = segmentDirectory;
+        mFilePrefix = sha1Hex(mKey) + ".";
+    }
+
+    /**
+     * Returns the download progress of each segment of the episode with the given key, or null
+     * if the episode is not being downloaded.
+     * @param key The enclosure URL of the episode
+     */
+    public static float[] getSegmentPercentages(String key) {
+        SegmentedDownloader downloader;
+        synchronized (sRunningDownloaders) {
+            downloader = sRunningDownloaders.get(key);
+        }
+        Segment[] segments = downloader != null ? downloader.mSegments : null;
+        if (segments == null) {
+            return null;
+        }
+        float[] percentages = new float[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            percentages[i] = segments[i].getPercentage();
+        }
+        return percentages;
+    }
+
+    @Override
+    public void download() throws InterruptedException, IOException {
+        synchronized (sRunningDownloaders) {
+            sRunningDownloaders.put(mKey, this);
+        }
+        try {
+            if (mSegments == null) {
+                mContentLength = probeContentLength();
+                mSegments = createSegments(mContentLength);
+            }
+            mExecutor = Executors.newFixedThreadPool(mSegments.length);
+            List<Future<Void>> futures = new ArrayList<>(mSegments.length);
+            for (final Segment segment : mSegments) {
+                futures.add(mExecutor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        downloadSegment(segment);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof InterruptedException) {
+                        throw (InterruptedException) cause;
+                    }
+                    throw new IOException(cause);
+                }
+            }
+        } finally {
+            // Stops the other segments if one of them failed, and waits until they have
+            // stopped, so that none of them still writes when the download is retried or removed
+            if (mExecutor != null) {
+                stopSegments(mExecutor, Long.MAX_VALUE);
+            }
+            synchronized (sRunningDownloaders) {
+                sRunningDownloaders.remove(mKey);
+            }
+        }
+    }
+
+    @Override
+    public void cancel() {
+        mCanceled.set(true);
+        ExecutorService executor = mExecutor;
+        if (executor != null) {
+            // Only waits briefly, because cancel is called on the thread of the DownloadManager.
+            // The download thread waits for the segments before it stops either way.
+            stopSegments(executor, DOWNLOAD_CANCEL_TIMEOUT_MILLIS);
+        }
+    }
+
+    /**
+     * Interrupts the threads of the segments and waits until they have stopped.
+     * @param executor The executor the segments run on
+     * @param timeoutMillis The maximum time to wait
+     */
+    private void stopSegments(ExecutorService executor, long timeoutMillis) {
+        executor.shutdownNow();
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                        Timber.w("The segments of " + mKey + " did not stop in time");
+                    }
+                    return;
+                } catch (InterruptedException e) {
+                    // Keep waiting, the segments are stopping already
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public long getDownloadedBytes() {
+        Segment[] segments = mSegments;
+        if (segments == null) {
+            return 0;
+        }
+        long downloadedBytes = 0;
+        for (Segment segment : segments) {
+            downloadedBytes += segment.mDownloadedBytes;
+        }
+        return downloadedBytes;
+    }
+
+    @Override
+    public float getDownloadPercentage() {
+        long contentLength = mContentLength;
+        if (contentLength == C.LENGTH_UNSET || contentLength == 0) {
+            return C.PERCENTAGE_UNSET;
+        }
+        return Math.min(100f, getDownloadedBytes() * 100f / contentLength);
+    }
+
+    @Override
+    public void remove() {
+        CacheUtil.remove(mCache, mKey);
+        deleteSegmentFiles(null);
+    }
+
+    /**
+     * Requests the first byte of the episode to find out its length and whether the server
+     * supports range requests. A server which supports them answers with a partial response
+     * which has the length of the episode in its Content-Range header. Otherwise the response
+     * is the whole episode, which is closed before reading the body. If the server does not
+     * tell the length, the length is read from the cache if it is known.
+     */
+    private long probeContentLength() throws IOException {
+        long contentLength = C.LENGTH_UNSET;
+        DataSource dataSource = mUpstreamFactory.createDataSource();
+        try {
+            dataSource.open(new DataSpec(mUri, 0, 1, mKey));
+            Map<String, List<String>> headers = dataSource.getResponseHeaders();
+            String contentRange = getHeader(headers, "Content-Range");
+            mRangeSupported = contentRange != null;
+            if (contentRange != null) {
+                // e.g. "bytes 0-0/12345", or "bytes 0-0/*" if the length is unknown
+                contentLength = parseLength(
+                        contentRange.substring(contentRange.lastIndexOf('/') + 1));
+            } else {
+                contentLength = parseLength(getHeader(headers, "Content-Length"));
+            }
+        } finally {
+            Util.closeQuietly(dataSource);
+        }
+        if (contentLength == C.LENGTH_UNSET) {
+            CacheUtil.CachingCounters counters = new CacheUtil.CachingCounters();
+            CacheUtil.getCached(new DataSpec(mUri, 0, C.LENGTH_UNSET, mKey), mCache, counters);
+            contentLength = counters.contentLength;
+        }
+        return contentLength;
+    }
+
+    /**
+     * Returns the first value of the header with the given name, which is case insensitive, or
+     * null if the header is missing.
+     */
+    private static String getHeader(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && header.getValue() != null
+                    && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the length in the given header value, or LENGTH_UNSET if it is missing or invalid.
+     */
+    private static long parseLength(String value) {
+        if (value == null) {
+            return C.LENGTH_UNSET;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return C.LENGTH_UNSET;
+        }
+    }
+
+    /**
+     * Splits the episode into segments of the same length. An episode of unknown length, one
+     * which is too short to be worth splitting, or one from a server which does not support
+     * range requests, is downloaded as a single segment. The last
+     * segment is requested to the end of the episode, so that the length of the episode is
+     * stored in the cache when it is written.
+     */
+    private Segment[] createSegments(long contentLength) {
+        String prefix = mFilePrefix + contentLength + ".";
+        // The files of an earlier attempt are only valid if the length has not changed
+        deleteSegmentFiles(prefix);
+        if (!mRangeSupported || contentLength == C.LENGTH_UNSET
+                || contentLength < 2 * DOWNLOAD_MIN_SEGMENT_BYTES) {
+            return new Segment[] {new Segment(0, contentLength, true, new File(mSegmentDirectory,
+                    prefix + 0))};
+        }
+        int count = (int) Math.min(DOWNLOAD_SEGMENT_COUNT,
+                contentLength / DOWNLOAD_MIN_SEGMENT_BYTES);
+        long segmentLength = (contentLength + count - 1) / count;
+        Segment[] segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            long start = i * segmentLength;
+            segments[i] = new Segment(start, Math.min(segmentLength, contentLength - start),
+                    i == count - 1, new File(mSegmentDirectory, prefix + i));
+        }
+        return segments;
+    }
+
+    /**
+     * Deletes the files of the segments of this episode, except the ones with the given prefix.
+     * @param keepPrefix The prefix of the files to keep, or null to delete all of them
+     */
+    private void deleteSegmentFiles(String keepPrefix) {
+        File[] files = mSegmentDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(mFilePrefix) && (keepPrefix == null || !name.startsWith(keepPrefix))) {
+                if (!file.delete()) {
+                    Timber.w("Failed to delete the segment file " + name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the SHA-1 digest of the given key as a hex string, which names the files of the
+     * segments. Unlike the hash code of the key, it does not collide for different episodes.
+     */
+    private static String sha1Hex(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest(key.getBytes(Charset.forName("UTF-8")));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android device provides SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void downloadSegment(Segment segment) throws IOException, InterruptedException {
+        if (segment.mLength != C.LENGTH_UNSET
+                && mCache.getCachedLength(mKey, segment.mStart, segment.mLength)
+                >= segment.mLength) {
+            // Already in the cache, e.g. because the segment was copied before a retry
+            segment.mDownloadedBytes = segment.mLength;
+            return;
+        }
+        fetchSegment(segment);
+        copySegmentToCache(segment);
+        if (!segment.mFile.delete()) {
+            Timber.w("Failed to delete the segment file " + segment.mFile.getName());
+        }
+        Timber.d("Downloaded segment at " + segment.mStart + " of " + mKey);
+    }
+
+    /**
+     * Fetches the part of the segment which is not in its file yet, and appends it to the file.
+     */
+    private void fetchSegment(Segment segment) throws IOException, InterruptedException {
+        if (!mSegmentDirectory.exists() && !mSegmentDirectory.mkdirs()) {
+            throw new IOException("Failed to create " + mSegmentDirectory);
+        }
+        long fetchedBytes = segment.mFile.length();
+        segment.mDownloadedBytes = fetchedBytes;
+        if (segment.mLength != C.LENGTH_UNSET && fetchedBytes >= segment.mLength) {
+            return;
+        }
+        long length = segment.mOpenEnded ? C.LENGTH_UNSET : segment.mLength - fetchedBytes;
+        DataSource dataSource = mUpstreamFactory.createDataSource();
+        OutputStream output = null;
+        try {
+            dataSource.open(new DataSpec(mUri, segment.mStart + fetchedBytes, length, mKey));
+            output = new FileOutputStream(segment.mFile, true);
+            byte[] buffer = new byte[DOWNLOAD_BUFFER_SIZE_BYTES];
+            int bytesRead;
+            while ((bytesRead = dataSource.read(buffer, 0, buffer.length))
+                    != C.RESULT_END_OF_INPUT) {
+                if (mCanceled.get() || Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                output.write(buffer, 0, bytesRead);
+                segment.mDownloadedBytes += bytesRead;
+            }
+        } finally {
+            Util.closeQuietly(dataSource);
+            Util.closeQuietly(output);
+        }
+    }
+
+    /**
+     * Copies the fetched segment into the cache. Waits while another writer, e.g. playback,
+     * holds the lock of the key. The parts of the segment which are already cached are skipped.
+     */
+    private void copySegmentToCache(Segment segment) throws IOException, InterruptedException {
+        CacheDataSource cacheDataSource = new CacheDataSource(mCache,
+                new SegmentFileDataSource(segment), CacheDataSource.FLAG_BLOCK_ON_CACHE);
+        long length = segment.mOpenEnded ? C.LENGTH_UNSET : segment.mLength;
+        CacheUtil.cache(new DataSpec(mUri, segment.mStart, length, mKey), mCache,
+                cacheDataSource, new byte[DOWNLOAD_BUFFER_SIZE_BYTES], null, 0, null,
+                mCanceled, true);
+    }
+
+    /**
+     * A range of the episode and the file it is fetched into.
+     */
+    private static class Segment {
+
+        private final long mStart;
+        /** The length of the segment, or LENGTH_UNSET if the episode length is unknown */
+        private final long mLength;
+        /** True if the segment is requested to the end of the episode */
+        private final boolean mOpenEnded;
+        private final File mFile;
+        private volatile long mDownloadedBytes;
+
+        Segment(long start, long length, boolean openEnded, File file) {
+            mStart = start;
+            mLength = length;
+            mOpenEnded = openEnded;
+            mFile = file;
+        }
+
+        float getPercentage() {
+            if (mLength == C.LENGTH_UNSET || mLength == 0) {
+                return C.PERCENTAGE_UNSET;
+            }
+            return Math.min(100f, mDownloadedBytes * 100f / mLength);
+        }
+    }
+
+    /**
+     * Reads a fetched segment from its file. The positions of the requests are positions in the
+     * episode, which are mapped to positions in the file.
+     */
+    private static class SegmentFileDataSource implements DataSource {
+
+        private final Segment mSegment;
+        private RandomAccessFile mFile;
+        private Uri mUri;
+        private long mBytesRemaining;
+
+        SegmentFileDataSource(Segment segment) {
+            mSegment = segment;
+        }
+
+        @Override
+        public void addTransferListener(TransferListener transferListener) {
+            // Do nothing
+        }
+
+        @Override
+        public long open(DataSpec dataSpec) throws IOException {
+            mUri = dataSpec.uri;
+            mFile = new RandomAccessFile(mSegment.mFile, "r");
+            long offset = dataSpec.absoluteStreamPosition - mSegment.mStart;
+            long fileRemaining = mFile.length() - offset;
+            mBytesRemaining = dataSpec.length == C.LENGTH_UNSET ? fileRemaining : dataSpec.length;
+            if (offset < 0 || mBytesRemaining < 0 || mBytesRemaining > fileRemaining) {
+                throw new EOFException();
+            }
+            mFile.seek(offset);
+            return mBytesRemaining;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int readLength) throws IOException {
+            if (readLength == 0) {
+                return 0;
+            } else if (mBytesRemaining == 0) {
+                return C.RESULT_END_OF_INPUT;
+            }
+            int bytesRead = mFile.read(buffer, offset, (int) Math.min(mBytesRemaining,
+                    readLength));
+            if (bytesRead == -1) {
+                throw new EOFException();
+            }
+            mBytesRemaining -= bytesRead;
+            return bytesRead;
+        }
+
+        @Override
+        public Uri getUri() {
+            return mUri;
+        }
+
+        @Override
+        public void close() throws IOException {
+            mUri = null;
+            if (mFile != null) {
+                try {
+                    mFile.close();
+                } finally {
+                    mFile = null;
+                }
+            }
+        }
+    }
+}
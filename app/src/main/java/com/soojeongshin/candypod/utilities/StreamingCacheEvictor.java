@@ -0,0 +1,187 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.utilities;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Evicts the least recently used streamed episodes once they take more than a given number of
+ * bytes, while keeping the downloaded episodes.
+ * <p>
+ * The cache is shared by playback and the downloads, so it has two regions. The content whose
+ * key, the enclosure URL, is pinned belongs to a download and is never evicted. The rest was
+ * cached while streaming and is kept within the byte budget. Until the pinned keys have been
+ * loaded from the database, nothing is evicted, so that a download is never mistaken for a
+ * streamed episode.
+ * <p>
+ * The evictor is called by the {@link Cache} while it holds its own lock. The methods which are
+ * called from outside the cache must be called while holding the lock of the cache as well, see
+ * {@link DownloadUtil}.
+ * Reference: @see "https://github.com/google/ExoPlayer/blob/release-v2/library/core/src/main/java/com/google/android/exoplayer2/upstream/cache/LeastRecentlyUsedCacheEvictor.java"
+ */
+public class StreamingCacheEvictor implements CacheEvictor {
+
+    /** The keys of the downloaded episodes and of the episodes being downloaded */
+    private final Set<String> mPinnedKeys = new HashSet<>();
+    /** The spans of the streamed episodes, the least recently used first */
+    private final TreeSet<CacheSpan> mStreamingSpans = new TreeSet<>(new Comparator<CacheSpan>() {
+        @Override
+        public int compare(CacheSpan lhs, CacheSpan rhs) {
+            if (lhs.lastAccessTimestamp != rhs.lastAccessTimestamp) {
+                return lhs.lastAccessTimestamp < rhs.lastAccessTimestamp ? -1 : 1;
+            }
+            return lhs.compareTo(rhs);
+        }
+    });
+
+    private long mMaxStreamingBytes;
+    private long mStreamingBytes;
+    private boolean mPinnedKeysLoaded;
+
+    /**
+     * Creates a StreamingCacheEvictor.
+     * @param maxStreamingBytes The maximum number of bytes of the streamed episodes
+     */
+    public StreamingCacheEvictor(long maxStreamingBytes) {
+        mMaxStreamingBytes = maxStreamingBytes;
+    }
+
+    @Override
+    public boolean requiresCacheSpanTouches() {
+        return true;
+    }
+
+    @Override
+    public void onCacheInitialized() {
+        // Do nothing
+    }
+
+    @Override
+    public void onStartFile(Cache cache, String key, long position, long length) {
+        if (length != C.LENGTH_UNSET && !mPinnedKeys.contains(key)) {
+            evict(cache, length);
+        }
+    }
+
+    @Override
+    public void onSpanAdded(Cache cache, CacheSpan span) {
+        if (!mPinnedKeys.contains(span.key)) {
+            mStreamingSpans.add(span);
+            mStreamingBytes += span.length;
+            evict(cache, 0);
+        }
+    }
+
+    @Override
+    public void onSpanRemoved(Cache cache, CacheSpan span) {
+        if (mStreamingSpans.remove(span)) {
+            mStreamingBytes -= span.length;
+        }
+    }
+
+    @Override
+    public void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+        onSpanRemoved(cache, oldSpan);
+        onSpanAdded(cache, newSpan);
+    }
+
+    /**
+     * Sets the keys of the downloaded episodes, which are loaded from the database once the
+     * cache is created, and starts evicting the streamed episodes.
+     * @param cache The cache which uses this evictor
+     * @param keys The enclosure URLs of the downloaded episodes
+     */
+    public void setPinnedKeys(Cache cache, Collection<String> keys) {
+        for (String key : keys) {
+            pin(key);
+        }
+        mPinnedKeysLoaded = true;
+        evict(cache, 0);
+    }
+
+    /**
+     * Keeps the episode with the given key, because it is being downloaded.
+     * @param key The enclosure URL of the episode
+     */
+    public void pin(String key) {
+        if (!mPinnedKeys.add(key)) {
+            return;
+        }
+        // The streamed part of the episode is now part of the download
+        Iterator<CacheSpan> iterator = mStreamingSpans.iterator();
+        while (iterator.hasNext()) {
+            CacheSpan span = iterator.next();
+            if (key.equals(span.key)) {
+                iterator.remove();
+                mStreamingBytes -= span.length;
+            }
+        }
+    }
+
+    /**
+     * Lets the episode with the given key be evicted again, because its download was removed.
+     * Whatever is still cached of the episode counts as streamed.
+     * @param cache The cache which uses this evictor
+     * @param key The enclosure URL of the episode
+     */
+    public void unpin(Cache cache, String key) {
+        if (!mPinnedKeys.remove(key)) {
+            return;
+        }
+        for (CacheSpan span : cache.getCachedSpans(key)) {
+            if (mStreamingSpans.add(span)) {
+                mStreamingBytes += span.length;
+            }
+        }
+        evict(cache, 0);
+    }
+
+    /**
+     * Changes the maximum number of bytes of the streamed episodes, evicting them if needed.
+     */
+    public void setMaxStreamingBytes(Cache cache, long maxStreamingBytes) {
+        mMaxStreamingBytes = maxStreamingBytes;
+        evict(cache, 0);
+    }
+
+    /**
+     * Removes the least recently used streamed spans until the given number of bytes fits in
+     * the budget.
+     */
+    private void evict(Cache cache, long requiredBytes) {
+        if (!mPinnedKeysLoaded) {
+            return;
+        }
+        while (mStreamingBytes + requiredBytes > mMaxStreamingBytes && !mStreamingSpans.isEmpty()) {
+            try {
+                cache.removeSpan(mStreamingSpans.first());
+            } catch (Cache.CacheException e) {
+                // Ignore, the span is removed from the evictor in onSpanRemoved either way
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.utilities;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DataSource} which reads from another DataSource no faster than the
+ * {@link BandwidthLimiter} allows.
+ */
+public class ThrottledDataSource implements DataSource {
+
+    private final DataSource mUpstream;
+    private final BandwidthLimiter mLimiter;
+
+    public ThrottledDataSource(DataSource upstream, BandwidthLimiter limiter) {
+        mUpstream = upstream;
+        mLimiter = limiter;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        mUpstream.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        return mUpstream.open(dataSpec);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        int bytesRead = mUpstream.read(buffer, offset, readLength);
+        if (bytesRead != C.RESULT_END_OF_INPUT) {
+            try {
+                mLimiter.acquire(bytesRead);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public Uri getUri() {
+        return mUpstream.getUri();
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return mUpstream.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mUpstream.close();
+    }
+
+    /**
+     * Creates ThrottledDataSources which share one {@link BandwidthLimiter}.
+     */
+    public static class Factory implements DataSource.Factory {
+
+        private final DataSource.Factory mUpstreamFactory;
+        private final BandwidthLimiter mLimiter;
+
+        public Factory(DataSource.Factory upstreamFactory, BandwidthLimiter limiter) {
+            mUpstreamFactory = upstreamFactory;
+            mLimiter = limiter;
+        }
+
+        @Override
+        public DataSource createDataSource() {
+            return new ThrottledDataSource(mUpstreamFactory.createDataSource(), mLimiter);
+        }
+    }
+}
@@ -16,6 +16,8 @@
 
 package com.soojeongshin.candypod.utilities;
 
+import com.soojeongshin.candypod.model.rss.RssFeed;
+
 import org.simpleframework.xml.convert.AnnotationStrategy;
 import org.simpleframework.xml.core.Persister;
 
@@ -29,6 +31,10 @@ import retrofit2.converter.gson.GsonConverterFactory;
 import retrofit2.converter.simplexml.SimpleXmlConverterFactory;
 
 /**
+ * Delegates to Gson for the JSON endpoints and to an XML converter for the RSS feed. The
+ * {@link RssFeed} is parsed with the streaming {@link RssFeedConverter}, other XML types fall
+ * back to SimpleXML.
+ *
  * References: @see "https://speakerdeck.com/jakewharton/making-retrofit-work-for-you-ohio-devfest-2016"
  * @see "https://stackoverflow.com/questions/40824122/android-retrofit-2-multiple-converters-gson-simplexml-error"
  */
@@ -47,6 +53,9 @@ public class XmlOrJsonConverterFactory extends Converter.Factory {
         for (Annotation annotation : annotations) {
 
             if (annotation.annotationType() == ITunesSearchApi.Xml.class) {
+                if (type == RssFeed.class) {
+                    return new RssFeedConverter(getItemLimit(annotations));
+                }
                 return xml.responseBodyConverter(type, annotations, retrofit);
             }
 
@@ -56,4 +65,17 @@ public class XmlOrJsonConverterFactory extends Converter.Factory {
         }
         return null;
     }
+
+    /**
+     * Returns the maximum number of items to parse from the {@link ITunesSearchApi.ItemLimit}
+     * annotation, or {@link RssFeedParser#NO_ITEM_LIMIT} if the method is not annotated.
+     */
+    private static int getItemLimit(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof ITunesSearchApi.ItemLimit) {
+                return ((ITunesSearchApi.ItemLimit) annotation).value();
+            }
+        }
+        return RssFeedParser.NO_ITEM_LIMIT;
+    }
 }
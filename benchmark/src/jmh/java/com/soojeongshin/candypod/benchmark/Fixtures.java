@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.benchmark;
+
+import com.soojeongshin.candypod.model.rss.Item;
+import com.soojeongshin.candypod.model.rss.RssFeed;
+import com.soojeongshin.candypod.utilities.RssFeedParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Loads the feed fixtures in src/jmh/resources/feeds. Each benchmark takes the fixture name
+ * as a parameter, so the results are reported per feed.
+ */
+final class Fixtures {
+
+    static final String LIBSYN = "libsyn_style.xml";
+    static final String MEGAPHONE = "megaphone_style.xml";
+    static final String ANCHOR = "anchor_style.xml";
+
+    private Fixtures() {
+        // Restrict instantiation
+    }
+
+    /**
+     * Returns the bytes of the feed fixture.
+     * @param name The file name of the fixture
+     */
+    static byte[] readFeed(String name) throws IOException {
+        InputStream in = Fixtures.class.getResourceAsStream("/feeds/" + name);
+        if (in == null) {
+            throw new IOException("Missing feed fixture: " + name);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns all items of the feed fixture, parsed the same way the app parses feeds.
+     * @param name The file name of the fixture
+     */
+    static List<Item> readItems(String name) throws IOException {
+        RssFeed rssFeed = new RssFeedParser(RssFeedParser.NO_ITEM_LIMIT)
+                .parse(new ByteArrayInputStream(readFeed(name)), null);
+        return rssFeed.getChannel().getItemList();
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.benchmark;
+
+import com.soojeongshin.candypod.model.rss.Item;
+import com.soojeongshin.candypod.utilities.DurationParser;
+import com.soojeongshin.candypod.utilities.FormatUtils;
+import com.soojeongshin.candypod.utilities.PubDateParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static com.soojeongshin.candypod.utilities.Constants.FORMATTED_PATTERN;
+import static com.soojeongshin.candypod.utilities.Constants.PUB_DATE_PATTERN;
+import static com.soojeongshin.candypod.utilities.Constants.PUB_DATE_PATTERN_TIME_ZONE;
+import static com.soojeongshin.candypod.utilities.Constants.SNIPPET_MAX_LENGTH;
+
+/**
+ * Measures the per-episode formatting which computes the display fields when an episode is
+ * ingested: the publication date, the duration and the plain text snippet of the description.
+ * Each benchmark processes every episode of the feed once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FormatBenchmark {
+
+    @Param({Fixtures.LIBSYN, Fixtures.MEGAPHONE, Fixtures.ANCHOR})
+    public String feed;
+
+    private List<String> mPubDates;
+    private List<String> mDurations;
+    private List<String> mBaselineDurations;
+    private List<String> mDescriptions;
+
+    @Setup
+    public void setUp() throws IOException {
+        mPubDates = new ArrayList<>();
+        mDurations = new ArrayList<>();
+        mBaselineDurations = new ArrayList<>();
+        mDescriptions = new ArrayList<>();
+        for (Item item : Fixtures.readItems(feed)) {
+            mPubDates.add(item.getPubDate());
+            if (item.getDescription() != null) {
+                mDescriptions.add(item.getDescription());
+            }
+            String duration = item.getITunesDuration();
+            mDurations.add(duration);
+            if (isBaselineDuration(duration)) {
+                mBaselineDurations.add(duration);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the duration can be parsed by {@link #parseDurationSecondsBaseline},
+     * which only supports the hh:mm:ss format.
+     */
+    private static boolean isBaselineDuration(String duration) {
+        try {
+            parseDurationSecondsBaseline(duration);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public void parsePubDate(Blackhole blackhole) {
+        for (String pubDate : mPubDates) {
+            blackhole.consume(PubDateParser.parse(pubDate));
+        }
+    }
+
+    @Benchmark
+    public void formatPubDate(Blackhole blackhole) {
+        for (String pubDate : mPubDates) {
+            long millis = PubDateParser.parse(pubDate);
+            if (millis != PubDateParser.UNKNOWN) {
+                blackhole.consume(PubDateParser.format(millis));
+            }
+        }
+    }
+
+    /**
+     * Formats the dates the way the app did before PubDateParser, which creates new
+     * SimpleDateFormats for every date and throws a ParseException for every date which is
+     * not in PUB_DATE_PATTERN. It is kept as the baseline of formatPubDate.
+     */
+    @Benchmark
+    public void formatPubDateBaseline(Blackhole blackhole) {
+        for (String pubDate : mPubDates) {
+            blackhole.consume(formatWithNewFormatters(pubDate));
+        }
+    }
+
+    private static String formatWithNewFormatters(String pubDate) {
+        Date date;
+        try {
+            date = new SimpleDateFormat(PUB_DATE_PATTERN, Locale.US).parse(pubDate);
+        } catch (ParseException e) {
+            try {
+                date = new SimpleDateFormat(PUB_DATE_PATTERN_TIME_ZONE, Locale.US).parse(pubDate);
+            } catch (ParseException e2) {
+                return pubDate;
+            }
+        }
+        return new SimpleDateFormat(FORMATTED_PATTERN, Locale.US).format(date);
+    }
+
+    /**
+     * Parses every duration of the feed, including the mm:ss and seconds formats which the
+     * baseline does not support.
+     */
+    @Benchmark
+    public void parseDuration(Blackhole blackhole) {
+        for (String duration : mDurations) {
+            blackhole.consume(DurationParser.parseMillis(duration));
+        }
+    }
+
+    /**
+     * Parses the durations the way the app did before DurationParser, which splits the string
+     * and parses each token. Only the hh:mm:ss durations are measured, since it throws for the
+     * other formats.
+     */
+    @Benchmark
+    public void parseDurationBaseline(Blackhole blackhole) {
+        for (String duration : mBaselineDurations) {
+            blackhole.consume(parseDurationSecondsBaseline(duration));
+        }
+    }
+
+    private static long parseDurationSecondsBaseline(String duration) {
+        String[] tokens = duration.split(":");
+        int hours = Integer.parseInt(tokens[0]);
+        int minutes = Integer.parseInt(tokens[1]);
+        int seconds = Integer.parseInt(tokens[2]);
+        return TimeUnit.HOURS.toSeconds(hours) + TimeUnit.MINUTES.toSeconds(minutes) + seconds;
+    }
+
+    @Benchmark
+    public void toPlainText(Blackhole blackhole) {
+        for (String description : mDescriptions) {
+            blackhole.consume(FormatUtils.toPlainText(description, SNIPPET_MAX_LENGTH));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 Soojeong Shin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.soojeongshin.candypod.benchmark;
+
+import com.soojeongshin.candypod.model.rss.RssFeed;
+import com.soojeongshin.candypod.utilities.RssFeedParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.simpleframework.xml.convert.AnnotationStrategy;
+import org.simpleframework.xml.core.Persister;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the SimpleXML binding of {@link RssFeed}, which is configured the same way as in
+ * XmlOrJsonConverterFactory, with the streaming {@link RssFeedParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RssFeedParseBenchmark {
+
+    @Param({Fixtures.LIBSYN, Fixtures.MEGAPHONE, Fixtures.ANCHOR})
+    public String feed;
+
+    private byte[] mFeedBytes;
+    private Persister mPersister;
+
+    @Setup
+    public void setUp() throws IOException {
+        mFeedBytes = Fixtures.readFeed(feed);
+        mPersister = new Persister(new AnnotationStrategy());
+    }
+
+    @Benchmark
+    public RssFeed simpleXml() throws Exception {
+        // Non-strict, like SimpleXmlConverterFactory.createNonStrict
+        return mPersister.read(RssFeed.class, new ByteArrayInputStream(mFeedBytes), false);
+    }
+
+    @Benchmark
+    public RssFeed pullParser() throws IOException {
+        return new RssFeedParser(RssFeedParser.NO_ITEM_LIMIT)
+                .parse(new ByteArrayInputStream(mFeedBytes), null);
+    }
+}